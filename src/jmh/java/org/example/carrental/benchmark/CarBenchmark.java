@@ -0,0 +1,41 @@
+package org.example.carrental.benchmark;
+
+import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.entity.Car;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Каталог: поиск с фильтрами и значения фильтров
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dlog.level.app=WARN", "-Dlog.level.pool=WARN"})
+public class CarBenchmark {
+
+    // Марка, кузов и верхняя граница цены - как в форме каталога
+    @Benchmark
+    public List<Car> getCarsWithFilters(DatasetState data) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        CarFilterDTO filters = new CarFilterDTO();
+        filters.setBrand(DatasetState.BRANDS.get(random.nextInt(DatasetState.BRANDS.size())));
+        filters.setBodyType(DatasetState.BODY_TYPES.get(random.nextInt(DatasetState.BODY_TYPES.size())));
+        filters.setMaxPrice(500.0 + random.nextInt(50) * 10);
+        return data.carService.getCarsWithFilters(filters);
+    }
+
+    @Benchmark
+    public Map<String, List<String>> getFilterOptions(DatasetState data) {
+        return data.carService.getFilterOptions();
+    }
+}
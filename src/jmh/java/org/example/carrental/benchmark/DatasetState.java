@@ -0,0 +1,87 @@
+package org.example.carrental.benchmark;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.entity.RentalStatus;
+import org.example.carrental.repository.RentalRepository;
+import org.example.carrental.service.CarFacetService;
+import org.example.carrental.service.CarSearchIndex;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.DatasetGenerator;
+import org.example.carrental.service.RentalService;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Контекст DatabaseConfig (H2 в памяти) с синтетическим набором DatasetGenerator из rentals аренд -
+// один на весь прогон бенчмарка. Seed постоянный: при одной дате запуска прогоны идут на одинаковых данных
+@State(Scope.Benchmark)
+public class DatasetState {
+
+    static final List<String> BRANDS = DatasetGenerator.brands();
+    static final List<String> BODY_TYPES = DatasetGenerator.bodyTypes();
+    static final List<RentalStatus> BLOCKING_STATUSES = List.of(RentalStatus.CONFIRMED, RentalStatus.ACTIVE);
+
+    private static final long SEED = 42;
+
+    @Param({"1000"})
+    public int rentals;
+
+    AnnotationConfigApplicationContext context;
+    RentalService rentalService;
+    RentalRepository rentalRepository;
+    CarService carService;
+
+    long[] managerIds;
+    long[] clientIds;
+    long[] carIds;
+    // Период аренд набора; новые бронирования - после него, каждое в свободный слот
+    LocalDateTime from;
+    int days;
+    LocalDateTime bookingFrom;
+    final AtomicLong bookings = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = new AnnotationConfigApplicationContext(DatabaseConfig.class);
+        rentalService = context.getBean(RentalService.class);
+        rentalRepository = context.getBean(RentalRepository.class);
+        carService = context.getBean(CarService.class);
+
+        DatasetGenerator.Result dataset = new DatasetGenerator(context.getBean(DataSource.class),
+                Runtime.getRuntime().availableProcessors())
+                .generate(DatasetGenerator.Spec.forRentals(SEED, rentals, LocalDateTime.now().truncatedTo(ChronoUnit.DAYS)));
+        context.getBean(CarSearchIndex.class).invalidate();
+        context.getBean(CarFacetService.class).invalidate();
+
+        managerIds = dataset.managerIds();
+        clientIds = dataset.clientIds();
+        carIds = dataset.carIds();
+        from = dataset.from();
+        days = (int) ChronoUnit.DAYS.between(dataset.from(), dataset.to());
+        bookingFrom = dataset.to().plusDays(1);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    long randomCar() {
+        return carIds[ThreadLocalRandom.current().nextInt(carIds.length)];
+    }
+
+    long randomManager() {
+        return managerIds[ThreadLocalRandom.current().nextInt(managerIds.length)];
+    }
+}
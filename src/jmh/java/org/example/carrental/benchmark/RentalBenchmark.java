@@ -0,0 +1,54 @@
+package org.example.carrental.benchmark;
+
+import org.example.carrental.entity.Rental;
+import org.example.carrental.service.RentalService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Аренды: бронирование, проверка наложения в базе, статистика менеджера (из счетчиков и исходный GROUP BY)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx2g", "-Dlog.level.app=WARN", "-Dlog.level.pool=WARN"})
+public class RentalBenchmark {
+
+    // Каждое бронирование - в свой свободный слот после аренд набора: автомобили по кругу, затем следующие 3 дня
+    @Benchmark
+    public Rental createRentalRequest(DatasetState data) {
+        long booking = data.bookings.getAndIncrement();
+        long carId = data.carIds[(int) (booking % data.carIds.length)];
+        long clientId = data.clientIds[(int) (booking % data.clientIds.length)];
+        LocalDateTime start = data.bookingFrom.plusDays(3 * (booking / data.carIds.length));
+        return data.rentalService.createRentalRequest(carId, clientId, start, start.plusDays(2));
+    }
+
+    // Случайные автомобиль и двухдневный период внутри периода аренд набора
+    @Benchmark
+    public boolean existsOverlappingRental(DatasetState data) {
+        LocalDateTime start = data.from.plusHours(ThreadLocalRandom.current().nextInt(data.days * 24));
+        return data.rentalRepository.existsOverlappingRental(data.randomCar(), start, start.plusDays(2), -1L,
+                DatasetState.BLOCKING_STATUSES);
+    }
+
+    @Benchmark
+    public RentalService.ManagerRentalStats getManagerRentalStats(DatasetState data) {
+        return data.rentalService.getManagerRentalStats(data.randomManager());
+    }
+
+    // Запрос, которым счетчики менеджера загружаются при первом обращении
+    @Benchmark
+    public List<Object[]> rentalStatsByManagerQuery(DatasetState data) {
+        return data.rentalRepository.getRentalStatsByManager(data.randomManager());
+    }
+}
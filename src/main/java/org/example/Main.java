@@ -1,25 +1,88 @@
 package org.example;
 
 import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.RequestMetrics;
+import org.example.carrental.config.RequestMetricsFilter;
 import org.example.carrental.config.WebConfig;
 import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
 import org.springframework.web.servlet.DispatcherServlet;
 import org.apache.catalina.Context;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.connector.Connector;
+import org.apache.catalina.core.StandardVirtualThreadExecutor;
 import org.apache.catalina.startup.Tomcat;
 import org.apache.catalina.Wrapper;
+import org.apache.tomcat.util.descriptor.web.FilterDef;
+import org.apache.tomcat.util.descriptor.web.FilterMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.bridge.SLF4JBridgeHandler;
 
 import jakarta.servlet.MultipartConfigElement;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 //Изменено
 public class Main {
+
+    private static final Logger log = LoggerFactory.getLogger(Main.class);
+
     public static void main(String[] args) throws Exception {
+        // Уменьшение фото (ImageDerivativeService) работает без графической среды
+        System.setProperty("java.awt.headless", "true");
+
+        // Сообщения Tomcat (java.util.logging) - в общий журнал
+        SLF4JBridgeHandler.removeHandlersForRootLogger();
+        SLF4JBridgeHandler.install();
+
         // Создаем веб-контекст Spring
         AnnotationConfigWebApplicationContext context = new AnnotationConfigWebApplicationContext();
         context.register(DatabaseConfig.class, WebConfig.class);
+        // Без профиля - демонстрационные автомобили (TestDataConfig);
+        // -Dspring.profiles.active=dataset - синтетический набор данных (DatasetConfig)
+        if (context.getEnvironment().getActiveProfiles().length == 0) {
+            context.getEnvironment().setActiveProfiles("demo");
+        }
+
+        // Режим потоков запросов: -Dserver.threads=virtual (виртуальные потоки) или platform (по умолчанию)
+        int port = Integer.getInteger("server.port", 8080);
+        boolean virtualThreads = "virtual".equalsIgnoreCase(System.getProperty("server.threads", "platform"));
+        Tomcat tomcat = startServer(context, port, virtualThreads);
+
+        log.atInfo()
+                .addKeyValue("url", "http://localhost:" + port)
+                .addKeyValue("threads", virtualThreads ? "virtual" : "platform")
+                .addKeyValue("api", "/api/cars, /api/cars/available")
+                .log("CarRental Web Application запущена");
 
+        tomcat.getServer().await();
+    }
+
+    // Запуск Tomcat с DispatcherServlet поверх переданного контекста (port = 0 - любой свободный порт).
+    // virtualThreads: каждый запрос в своем виртуальном потоке, число одновременных запросов
+    // ограничено только maxConnections; иначе - пул из server.max-threads обычных потоков.
+    // Работу с базой в обоих режимах ограничивает BoundedDataSource, а не число потоков
+    public static Tomcat startServer(AnnotationConfigWebApplicationContext context, int port,
+                                     boolean virtualThreads) throws LifecycleException {
         // Создаем и настраиваем Tomcat
         Tomcat tomcat = new Tomcat();
-        tomcat.setPort(8080);
-        tomcat.getConnector(); // Активируем коннектор
+        String baseDir = System.getProperty("server.base-dir");
+        if (baseDir != null) {
+            tomcat.setBaseDir(baseDir);
+        }
+        tomcat.setPort(port);
+        Connector connector = tomcat.getConnector(); // Активируем коннектор
+        if (virtualThreads) {
+            StandardVirtualThreadExecutor executor = new StandardVirtualThreadExecutor();
+            executor.setName("virtualThreadExecutor");
+            executor.setNamePrefix("http-virtual-");
+            tomcat.getService().addExecutor(executor);
+            connector.getProtocolHandler().setExecutor(executor);
+        } else {
+            connector.setProperty("maxThreads", System.getProperty("server.max-threads", "200"));
+        }
 
         // Создаем контекст Tomcat
         String contextPath = "";
@@ -33,23 +96,38 @@ public class Main {
         Wrapper dispatcherWrapper = Tomcat.addServlet(tomcatContext, "dispatcher", dispatcherServlet);
 
         // НАСТРАИВАЕМ MULTIPART CONFIG - это ключевое!
+        // Большие файлы Tomcat сбрасывает во временную папку хранилища загрузок:
+        // FileStorageService потом переименовывает их на место, а не копирует
+        Path uploadStaging = Paths.get(System.getProperty("upload.dir", "uploads"), ".staging").toAbsolutePath();
+        try {
+            Files.createDirectories(uploadStaging);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
         dispatcherWrapper.setMultipartConfigElement(new MultipartConfigElement(
-                "", // временная директория
+                uploadStaging.toString(), // временная директория
                 10 * 1024 * 1024, // maxFileSize - 10MB
                 50 * 1024 * 1024, // maxRequestSize - 50MB
                 1 * 1024 * 1024 // fileSizeThreshold - 1MB
         ));
 
         tomcatContext.addServletMappingDecoded("/*", "dispatcher");
+        // Контекст Spring поднимается при старте Tomcat, а не на первом запросе:
+        // к первому запросу метрики для RequestMetricsFilter уже есть
+        dispatcherWrapper.setLoadOnStartup(1);
+
+        // Задержки и SQL каждого запроса по обработчикам (/admin/metrics)
+        FilterDef metricsFilter = new FilterDef();
+        metricsFilter.setFilterName("requestMetrics");
+        metricsFilter.setFilter(new RequestMetricsFilter(() -> context.getBean(RequestMetrics.class)));
+        tomcatContext.addFilterDef(metricsFilter);
+        FilterMap metricsMapping = new FilterMap();
+        metricsMapping.setFilterName("requestMetrics");
+        metricsMapping.addURLPatternDecoded("/*");
+        tomcatContext.addFilterMap(metricsMapping);
 
         // Запускаем сервер
         tomcat.start();
-        System.out.println("🚗 CarRental Web Application запущена на http://localhost:8080");
-        System.out.println("📋 API доступно по адресам:");
-        System.out.println("   GET  http://localhost:8080/api/cars");
-        System.out.println("   GET  http://localhost:8080/api/cars/available");
-        System.out.println("✅ Загрузка файлов настроена!");
-
-        tomcat.getServer().await();
+        return tomcat;
     }
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package org.example.carrental.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.dto.SessionUser;
+import org.example.carrental.entity.Car;
+import org.example.carrental.service.CarVersionRegistry;
+import org.thymeleaf.context.Context;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+// Готовый HTML карточек автомобилей и фильтров каталога (templates/fragments/catalog.html).
+// Страница собирается из кэшированных фрагментов, шаблон каждого запроса рендерит только шапку.
+// Карточка зависит от автомобиля и вида посетителя: ключ - id, номер изменения автомобиля (CarVersionRegistry)
+// и вид; после изменения автомобиля в CarService у него новый номер, и старые карточки больше не находятся
+// (их вытесняет ограничение размера). Фильтры зависят только от значений в ключе.
+// enabled = false - фрагменты рендерятся каждый раз (для сравнения и отладки шаблонов)
+public class CatalogFragmentCache {
+
+    private static final String TEMPLATE = "fragments/catalog";
+
+    private final SpringTemplateEngine templateEngine;
+    private final CarVersionRegistry carVersions;
+    private final boolean enabled;
+    private final Cache<Object, String> fragments;
+
+    public CatalogFragmentCache(SpringTemplateEngine templateEngine, CarVersionRegistry carVersions,
+                                boolean enabled, long maxEntries) {
+        this.templateEngine = templateEngine;
+        this.carVersions = carVersions;
+        this.enabled = enabled;
+        this.fragments = Caffeine.newBuilder().maximumSize(maxEntries).build();
+    }
+
+    // Отметка до загрузки автомобилей: передается в catalogCards/homeCards
+    public long stamp() {
+        return carVersions.changes();
+    }
+
+    public List<String> catalogCards(List<Car> cars, SessionUser user, long stamp) {
+        return cards("catalog-card", cars, Viewer.of(user), stamp);
+    }
+
+    public List<String> homeCards(List<Car> cars, SessionUser user, long stamp) {
+        return cards("home-card", cars, Viewer.of(user), stamp);
+    }
+
+    public String catalogFilters(Map<String, List<String>> filterOptions, Map<String, Map<String, Long>> facetCounts,
+                                 CarFilterDTO filters) {
+        FiltersKey key = new FiltersKey(filterOptions, facetCounts, filters.getBrand(), filters.getBodyType(),
+                filters.getMinPrice(), filters.getMaxPrice());
+        if (!enabled) {
+            return renderFilters(key);
+        }
+        return fragments.get(key, k -> renderFilters((FiltersKey) k));
+    }
+
+    public long size() {
+        return fragments.estimatedSize();
+    }
+
+    // Автомобиль, загруженный до изменения, не должен попасть в кэш под номером после изменения:
+    // новые карточки сохраняются, только если с отметки (до загрузки) ни один автомобиль не менялся
+    private List<String> cards(String fragment, List<Car> cars, Viewer viewer, long stamp) {
+        List<String> html = new ArrayList<>(cars.size());
+        for (Car car : cars) {
+            if (!enabled) {
+                html.add(renderCard(fragment, car, viewer));
+                continue;
+            }
+            CardKey key = new CardKey(fragment, car.getId(), carVersions.currentVersion(car.getId()), car.getVersion(),
+                    viewer);
+            String card = fragments.getIfPresent(key);
+            if (card == null) {
+                card = renderCard(fragment, car, viewer);
+                if (carVersions.changes() == stamp) {
+                    fragments.put(key, card);
+                }
+            }
+            html.add(card);
+        }
+        return html;
+    }
+
+    private String renderCard(String fragment, Car car, Viewer viewer) {
+        Context context = new Context(Locale.getDefault());
+        context.setVariable("car", car);
+        context.setVariable("guest", viewer == Viewer.GUEST);
+        context.setVariable("client", viewer == Viewer.CLIENT);
+        context.setVariable("staff", viewer == Viewer.STAFF);
+        return templateEngine.process(TEMPLATE, Set.of(fragment), context);
+    }
+
+    private String renderFilters(FiltersKey key) {
+        // В шаблон - только то, что входит в ключ
+        CarFilterDTO selected = new CarFilterDTO();
+        selected.setBrand(key.brand());
+        selected.setBodyType(key.bodyType());
+        selected.setMinPrice(key.minPrice());
+        selected.setMaxPrice(key.maxPrice());
+
+        Context context = new Context(Locale.getDefault());
+        context.setVariable("filterOptions", key.filterOptions());
+        context.setVariable("facetCounts", key.facetCounts());
+        context.setVariable("filters", selected);
+        return templateEngine.process(TEMPLATE, Set.of("catalog-filters"), context);
+    }
+
+    // Чем карточки отличаются для разных посетителей: кнопки аренды и управления
+    private enum Viewer {
+        GUEST, CLIENT, STAFF;
+
+        static Viewer of(SessionUser user) {
+            if (user == null) {
+                return GUEST;
+            }
+            return user.isClient() ? CLIENT : STAFF;
+        }
+    }
+
+    // entityVersion - версия загруженной строки (@Version): автомобиль с отстающей реплики
+    // не попадет в кэш под номером изменения, которого в нем еще нет
+    private record CardKey(String fragment, Long carId, long version, Long entityVersion, Viewer viewer) {
+    }
+
+    private record FiltersKey(Map<String, List<String>> filterOptions, Map<String, Map<String, Long>> facetCounts,
+                              String brand, String bodyType, Double minPrice, Double maxPrice) {
+    }
+}
@@ -0,0 +1,106 @@
+package org.example.carrental.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import com.zaxxer.hikari.metrics.IMetricsTracker;
+import com.zaxxer.hikari.metrics.MetricsTrackerFactory;
+import com.zaxxer.hikari.metrics.PoolStats;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Метрики пула соединений: сколько ждали соединение, сколько держали, сколько раз не дождались.
+// Текущее состояние (активные/свободные/ожидающие) берется у самого пула и у ограничителя перед ним.
+public class ConnectionPoolMetrics implements MetricsTrackerFactory {
+
+    private final LongAdder acquired = new LongAdder();
+    private final LongAdder waitNanos = new LongAdder();
+    private final LongAccumulator maxWaitNanos = new LongAccumulator(Long::max, 0);
+    private final LongAdder usageMillis = new LongAdder();
+    private final LongAccumulator maxUsageMillis = new LongAccumulator(Long::max, 0);
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder created = new LongAdder();
+
+    private volatile HikariDataSource dataSource;
+    private volatile BoundedDataSource limiter;
+
+    @Override
+    public IMetricsTracker create(String poolName, PoolStats poolStats) {
+        return new IMetricsTracker() {
+            @Override
+            public void recordConnectionCreatedMillis(long connectionCreatedMillis) {
+                created.increment();
+            }
+
+            @Override
+            public void recordConnectionAcquiredNanos(long elapsedAcquiredNanos) {
+                acquired.increment();
+                waitNanos.add(elapsedAcquiredNanos);
+                maxWaitNanos.accumulate(elapsedAcquiredNanos);
+            }
+
+            @Override
+            public void recordConnectionUsageMillis(long elapsedBorrowedMillis) {
+                usageMillis.add(elapsedBorrowedMillis);
+                maxUsageMillis.accumulate(elapsedBorrowedMillis);
+            }
+
+            @Override
+            public void recordConnectionTimeout() {
+                timeouts.increment();
+            }
+        };
+    }
+
+    // Вызывается после создания пула, чтобы в снимок попадало его текущее состояние
+    public void attach(HikariDataSource dataSource, BoundedDataSource limiter) {
+        this.dataSource = dataSource;
+        this.limiter = limiter;
+    }
+
+    public Snapshot snapshot() {
+        HikariDataSource pool = dataSource;
+        HikariPoolMXBean state = pool == null ? null : pool.getHikariPoolMXBean();
+        BoundedDataSource bounded = limiter;
+        long count = acquired.sum();
+        return new Snapshot(
+                pool == null ? null : pool.getPoolName(),
+                state == null ? 0 : state.getActiveConnections(),
+                state == null ? 0 : state.getIdleConnections(),
+                state == null ? 0 : state.getTotalConnections(),
+                state == null ? 0 : state.getThreadsAwaitingConnection(),
+                pool == null ? 0 : pool.getMaximumPoolSize(),
+                count,
+                count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(waitNanos.sum()) / 1000.0 / count,
+                TimeUnit.NANOSECONDS.toMicros(maxWaitNanos.get()) / 1000.0,
+                count == 0 ? 0 : (double) usageMillis.sum() / count,
+                maxUsageMillis.get(),
+                timeouts.sum(),
+                created.sum(),
+                bounded == null ? 0 : bounded.getMaxInFlight(),
+                bounded == null ? 0 : bounded.getInFlight(),
+                bounded == null ? 0 : bounded.getThreadsAwaitingPermit(),
+                bounded == null ? 0 : bounded.getPermitTimeouts());
+    }
+
+    // Состояние пула и накопленные с запуска показатели (время - в миллисекундах)
+    public record Snapshot(String poolName,
+                           int activeConnections,
+                           int idleConnections,
+                           int totalConnections,
+                           int threadsAwaitingConnection,
+                           int maximumPoolSize,
+                           long connectionsAcquired,
+                           double averageWaitMs,
+                           double maxWaitMs,
+                           double averageUsageMs,
+                           long maxUsageMs,
+                           long connectionTimeouts,
+                           long connectionsCreated,
+                           int maxInFlight,
+                           int inFlight,
+                           int threadsAwaitingPermit,
+                           long permitTimeouts) {
+    }
+}
@@ -1,31 +1,185 @@
 package org.example.carrental.config;
 
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.FilterType;
+import org.springframework.context.annotation.PropertySource;
+import org.springframework.core.env.Environment;
 import org.springframework.data.jpa.repository.config.EnableJpaRepositories;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
 import org.springframework.orm.jpa.JpaTransactionManager;
 import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
 import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.stereotype.Controller;
 import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.EnableTransactionManagement;
+import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 
+import javax.cache.CacheManager;
+import javax.cache.Caching;
 import javax.sql.DataSource;
+import java.net.URI;
+import java.sql.SQLException;
+import java.util.OptionalLong;
 import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
 
 @Configuration
-@ComponentScan("org.example.carrental")
+// Веб-слой (WebConfig и контроллеры) подключается отдельно в Main,
+// чтобы контекст с базой данных можно было поднять без ServletContext (в тестах)
+@ComponentScan(basePackages = "org.example.carrental",
+        excludeFilters = @ComponentScan.Filter(type = FilterType.ANNOTATION,
+                classes = {EnableWebMvc.class, Controller.class}))
 @EnableJpaRepositories(basePackages = "org.example.carrental.repository")
 @EnableTransactionManagement
+// Настройки подключения и пула (переопределяются системными свойствами)
+@PropertySource("classpath:database.properties")
 public class DatabaseConfig {
 
+    @Autowired
+    private Environment env;
+
+    @Bean
+    public ConnectionPoolMetrics connectionPoolMetrics() {
+        return new ConnectionPoolMetrics();
+    }
+
+    // Метрики запросов (RequestMetricsFilter): задержки, SQL-запросы, строки и время JDBC по обработчикам
+    @Bean
+    public RequestMetrics requestMetrics() {
+        return new RequestMetrics(env.getProperty("metrics.request.sql-budget", Integer.class, 20));
+    }
+
+    // Пул соединений: физические соединения переиспользуются между транзакциями,
+    // вместе с ними - кэш подготовленных запросов каждого соединения.
+    // Перед пулом - ограничение одновременной работы с базой (BoundedDataSource):
+    // размер пула не зависит от числа потоков запросов (в том числе виртуальных).
+    // Между ними - замер времени JDBC и числа строк для RequestMetrics (SqlMetricsDataSource).
+    // С репликой (db.replica.url) чтения каталога и панелей менеджера идут в ее пул (ReplicaRoutingDataSource)
     @Bean
     public DataSource dataSource() {
-        org.h2.jdbcx.JdbcDataSource dataSource = new org.h2.jdbcx.JdbcDataSource();
-        dataSource.setURL("jdbc:h2:mem:carrental;DB_CLOSE_DELAY=-1");
-        dataSource.setUser("sa");
-        dataSource.setPassword("");
-        return dataSource;
+        HikariConfig config = poolConfig("carrental", env.getRequiredProperty("db.url"),
+                env.getProperty("db.pool.maximum-size", Integer.class, 10));
+
+        // Метрики: в ConnectionPoolMetrics (для /admin/pool) и в JMX (com.zaxxer.hikari:type=Pool)
+        config.setMetricsTrackerFactory(connectionPoolMetrics());
+
+        HikariDataSource pool = new HikariDataSource(config);
+        BoundedDataSource dataSource = new BoundedDataSource(new SqlMetricsDataSource(pool),
+                env.getProperty("db.pool.max-in-flight", Integer.class, config.getMaximumPoolSize()),
+                config.getConnectionTimeout());
+        connectionPoolMetrics().attach(pool, dataSource);
+
+        String replicaUrl = env.getProperty("db.replica.url", "");
+        if (replicaUrl.isBlank()) {
+            return dataSource;
+        }
+        HikariConfig replicaConfig = poolConfig("carrental-replica", replicaUrl,
+                env.getProperty("db.replica.pool.maximum-size", Integer.class, config.getMaximumPoolSize()));
+        BoundedDataSource replica = new BoundedDataSource(new SqlMetricsDataSource(new HikariDataSource(replicaConfig)),
+                replicaConfig.getMaximumPoolSize(), replicaConfig.getConnectionTimeout());
+        // Соединение берется у реплики или основной базы только к первому SQL-запросу,
+        // когда признак readOnly транзакции уже известен
+        return new LazyConnectionDataSourceProxy(new ReplicaRoutingDataSource(dataSource, replica, replicaRouting()));
+    }
+
+    private HikariConfig poolConfig(String poolName, String url, int maximumPoolSize) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName(poolName);
+        config.setJdbcUrl(withStatementCache(url));
+        config.setUsername(env.getProperty("db.username", "sa"));
+        config.setPassword(env.getProperty("db.password", ""));
+
+        config.setMaximumPoolSize(maximumPoolSize);
+        config.setMinimumIdle(env.getProperty("db.pool.minimum-idle", Integer.class, 2));
+        config.setConnectionTimeout(env.getProperty("db.pool.connection-timeout-ms", Long.class, 30000L));
+        config.setIdleTimeout(env.getProperty("db.pool.idle-timeout-ms", Long.class, 600000L));
+        config.setMaxLifetime(env.getProperty("db.pool.max-lifetime-ms", Long.class, 1800000L));
+        config.setLeakDetectionThreshold(env.getProperty("db.pool.leak-detection-threshold-ms", Long.class, 0L));
+
+        // Для драйвера PostgreSQL кэш задается свойством соединения
+        if (!config.getJdbcUrl().startsWith("jdbc:h2:")) {
+            config.addDataSourceProperty("preparedStatementCacheQueries", statementCacheSize());
+        }
+        // Имя MBean - по имени пула: зарегистрировать его может только один контекст в процессе (в тестах выключено)
+        config.setRegisterMbeans(env.getProperty("db.pool.register-mbeans", Boolean.class, true));
+        return config;
+    }
+
+    // Чтения readOnly из сервисов - на реплику, пока она не отстает от записей пользователя и не дольше max-lag-ms
+    @Bean
+    public ReplicaRouting replicaRouting() {
+        return new ReplicaRouting("org.example.carrental.service.",
+                env.getProperty("db.replica.max-lag-ms", Long.class, 1000L));
+    }
+
+    // Локальная реплика H2 (две базы в памяти): копии основной базы вместо репликации СУБД.
+    // Запускается после создания схемы Hibernate; без db.replica.url ничего не делает
+    @Bean
+    public ReplicationStandIn replicationStandIn() throws SQLException {
+        String replicaUrl = env.getProperty("db.replica.url", "");
+        ReplicationStandIn standIn = new ReplicationStandIn(withStatementCache(env.getRequiredProperty("db.url")),
+                withStatementCache(replicaUrl), env.getProperty("db.username", "sa"), env.getProperty("db.password", ""),
+                replicaRouting(), env.getProperty("db.replica.stand-in.interval-ms", Long.class, 200L));
+        if (!replicaUrl.isBlank() && env.getProperty("db.replica.stand-in.enabled", Boolean.class,
+                replicaUrl.startsWith("jdbc:h2:"))) {
+            entityManagerFactory().getObject();
+            standIn.start();
+        }
+        return standIn;
+    }
+
+    // H2 кэширует разобранные запросы на соединение, размер задается в URL
+    private String withStatementCache(String url) {
+        if (url.startsWith("jdbc:h2:") && !url.toUpperCase().contains("QUERY_CACHE_SIZE")) {
+            return url + ";QUERY_CACHE_SIZE=" + statementCacheSize();
+        }
+        return url;
+    }
+
+    private int statementCacheSize() {
+        return env.getProperty("db.statement-cache-size", Integer.class, 128);
+    }
+
+    // Хранилище кэша второго уровня: ограниченные по размеру кэши в куче со сроком жизни записей.
+    // Свой CacheManager на каждый контекст (тесты поднимают несколько контекстов в одной JVM).
+    @Bean
+    public CacheManager hibernateCacheManager() {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName())
+                .getCacheManager(URI.create("carrental-" + UUID.randomUUID()), getClass().getClassLoader());
+
+        long entityEntries = env.getProperty("db.cache.entity.max-entries", Long.class, 10000L);
+        long entityTtl = env.getProperty("db.cache.entity.ttl-seconds", Long.class, 600L);
+        cacheManager.createCache("car", cacheConfiguration(entityEntries, entityTtl));
+        cacheManager.createCache("user", cacheConfiguration(entityEntries, entityTtl));
+        cacheManager.createCache("default-query-results-region", cacheConfiguration(
+                env.getProperty("db.cache.query.max-entries", Long.class, 1000L),
+                env.getProperty("db.cache.query.ttl-seconds", Long.class, 300L)));
+        // Время последнего изменения таблиц - по нему отбрасываются устаревшие результаты запросов,
+        // поэтому записи здесь не должны вытесняться
+        cacheManager.createCache("default-update-timestamps-region", cacheConfiguration(0, 0));
+        return cacheManager;
+    }
+
+    // maxEntries/ttlSeconds = 0 - без ограничения
+    private static CaffeineConfiguration<Object, Object> cacheConfiguration(long maxEntries, long ttlSeconds) {
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setStoreByValue(false);
+        configuration.setStatisticsEnabled(true);
+        if (maxEntries > 0) {
+            configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        }
+        if (ttlSeconds > 0) {
+            configuration.setExpireAfterWrite(OptionalLong.of(TimeUnit.SECONDS.toNanos(ttlSeconds)));
+        }
+        return configuration;
     }
 
     @Bean
@@ -37,14 +191,37 @@ public class DatabaseConfig {
 
         Properties props = new Properties();
         props.put("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
-        props.put("hibernate.show_sql", "true");
-        props.put("hibernate.format_sql", "true");
-        props.put("hibernate.hbm2ddl.auto", "create");
+        // SQL в журнал не выводится (show_sql писал каждый запрос в System.out);
+        // при необходимости - логгер org.hibernate.SQL, см. logback.xml
+        props.put("hibernate.hbm2ddl.auto", env.getProperty("db.hbm2ddl", "create"));
+        // Пакетная вставка/обновление: одинаковые INSERT/UPDATE группируются и уходят одним пакетом
+        props.put("hibernate.jdbc.batch_size", env.getProperty("db.jdbc.batch-size", "50"));
+        props.put("hibernate.order_inserts", "true");
+        props.put("hibernate.order_updates", "true");
+        // Счетчики Hibernate: SQL-запросы, попадания в кэш (/admin/cache); без журнала метрик каждой сессии
+        props.put("hibernate.generate_statistics", env.getProperty("hibernate.generate_statistics", "false"));
+        props.put("hibernate.session.events.log", "false");
 
+        // Кэш второго уровня (сущности с @Cacheable) и кэш запросов (запросы с подсказкой cacheable)
+        boolean cacheEnabled = env.getProperty("db.cache.enabled", Boolean.class, true);
+        props.put("hibernate.cache.use_second_level_cache", String.valueOf(cacheEnabled));
+        props.put("hibernate.cache.use_query_cache", String.valueOf(cacheEnabled));
         em.setJpaProperties(props);
+        // Число SQL-запросов в каждом HTTP-запросе (RequestMetrics)
+        em.getJpaPropertyMap().put("hibernate.session_factory.statement_inspector", new SqlStatementInspector());
+        if (cacheEnabled) {
+            em.getJpaPropertyMap().put("hibernate.cache.region.factory_class", "jcache");
+            em.getJpaPropertyMap().put("hibernate.javax.cache.cache_manager", hibernateCacheManager());
+            em.getJpaPropertyMap().put("hibernate.javax.cache.missing_cache_strategy", "fail");
+        }
         return em;
     }
 
+    @Bean
+    public HibernateCacheMetrics hibernateCacheMetrics() {
+        return new HibernateCacheMetrics(entityManagerFactory().getObject(), hibernateCacheManager());
+    }
+
     @Bean
     public PlatformTransactionManager transactionManager() {
         JpaTransactionManager transactionManager = new JpaTransactionManager();
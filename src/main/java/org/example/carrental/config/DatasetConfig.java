@@ -0,0 +1,56 @@
+package org.example.carrental.config;
+
+import jakarta.annotation.PostConstruct;
+import org.example.carrental.service.CarFacetService;
+import org.example.carrental.service.CarSearchIndex;
+import org.example.carrental.service.DatasetGenerator;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+
+// Профиль dataset (-Dspring.profiles.active=dataset): вместо демонстрационных автомобилей TestDataConfig (профиль demo)
+// база заполняется синтетическим набором DatasetGenerator. Размер и seed - свойства dataset.* (database.properties).
+// Учетные записи admin/manager/client из UserService остаются: UserService создает их только в пустой таблице,
+// поэтому он инициализируется раньше генерации
+@Configuration
+@Profile("dataset")
+@DependsOn("userService")
+public class DatasetConfig {
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private Environment env;
+
+    @Autowired
+    private CarSearchIndex carSearchIndex;
+
+    @Autowired
+    private CarFacetService carFacetService;
+
+    @PostConstruct
+    public void generateDataset() {
+        // Потоков не больше, чем соединений в пуле
+        int threads = env.getProperty("dataset.threads", Integer.class, Math.min(
+                Runtime.getRuntime().availableProcessors(), env.getProperty("db.pool.maximum-size", Integer.class, 10)));
+        DatasetGenerator.Spec spec = new DatasetGenerator.Spec(
+                env.getProperty("dataset.seed", Long.class, 42L),
+                env.getProperty("dataset.managers", Integer.class, 20),
+                env.getProperty("dataset.clients", Integer.class, 10000),
+                env.getProperty("dataset.cars", Integer.class, 2000),
+                env.getProperty("dataset.rentals", Integer.class, 100000),
+                LocalDateTime.now().truncatedTo(ChronoUnit.DAYS));
+        new DatasetGenerator(dataSource, threads).generate(spec);
+
+        // Строки записаны в обход Hibernate - индекс каталога и фильтры перечитаются из базы
+        carSearchIndex.invalidate();
+        carFacetService.invalidate();
+    }
+}
@@ -0,0 +1,65 @@
+package org.example.carrental.config;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Попадания/промахи кэша второго уровня по регионам (по статистике Hibernate)
+// и число записей в каждом регионе (по хранилищу Caffeine)
+public class HibernateCacheMetrics {
+
+    private static final List<String> ENTITY_REGIONS = List.of("car", "user");
+    private static final String QUERY_REGION = "default-query-results-region";
+
+    private final EntityManagerFactory entityManagerFactory;
+    private final CacheManager cacheManager;
+
+    public HibernateCacheMetrics(EntityManagerFactory entityManagerFactory, CacheManager cacheManager) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.cacheManager = cacheManager;
+    }
+
+    public Snapshot snapshot() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        Map<String, RegionSnapshot> regions = new LinkedHashMap<>();
+        if (statistics.isStatisticsEnabled()) {
+            for (String region : ENTITY_REGIONS) {
+                CacheRegionStatistics stats = statistics.getDomainDataRegionStatistics(region);
+                if (stats != null) {
+                    regions.put(region, region(stats.getHitCount(), stats.getMissCount(), stats.getPutCount(), region));
+                }
+            }
+            regions.put("query", region(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount(),
+                    statistics.getQueryCachePutCount(), QUERY_REGION));
+        }
+        return new Snapshot(statistics.isStatisticsEnabled(), regions);
+    }
+
+    private RegionSnapshot region(long hits, long misses, long puts, String cacheName) {
+        long lookups = hits + misses;
+        return new RegionSnapshot(hits, misses, puts, lookups == 0 ? 0 : (double) hits / lookups, size(cacheName));
+    }
+
+    // Число записей в регионе; -1, если кэш выключен
+    private long size(String cacheName) {
+        Cache<Object, Object> cache = cacheManager.isClosed() ? null : cacheManager.getCache(cacheName);
+        if (cache == null) {
+            return -1;
+        }
+        return cache.unwrap(com.github.benmanes.caffeine.cache.Cache.class).estimatedSize();
+    }
+
+    // statisticsEnabled = false - hibernate.generate_statistics выключен, счетчиков нет
+    public record Snapshot(boolean statisticsEnabled, Map<String, RegionSnapshot> regions) {
+    }
+
+    public record RegionSnapshot(long hits, long misses, long puts, double hitRatio, long size) {
+    }
+}
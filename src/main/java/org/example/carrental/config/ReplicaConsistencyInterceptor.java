@@ -0,0 +1,33 @@
+package org.example.carrental.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// Пользователь видит свои изменения сразу: номер его последней записи хранится в сессии,
+// и пока реплика не дошла до этого номера, его чтения идут на основную базу (ReplicaRouting)
+public class ReplicaConsistencyInterceptor implements HandlerInterceptor {
+
+    static final String LAST_WRITE = "replicaLastWrite";
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        HttpSession session = request.getSession(false);
+        ReplicaRouting.beginRequest(session != null && session.getAttribute(LAST_WRITE) instanceof Long position
+                ? position : 0);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        long position = ReplicaRouting.requiredPosition();
+        ReplicaRouting.clearRequired();
+        HttpSession session = request.getSession(false);
+        if (position > 0 && session != null
+                && !(session.getAttribute(LAST_WRITE) instanceof Long stored && stored >= position)) {
+            session.setAttribute(LAST_WRITE, position);
+        }
+    }
+}
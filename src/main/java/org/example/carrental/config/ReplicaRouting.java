@@ -0,0 +1,123 @@
+package org.example.carrental.config;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Когда чтение можно отдать реплике. Каждая запись в основную базу получает номер (как LSN журнала),
+// реплика сообщает номер, до которого она догнала основную базу (ReplicationStandIn).
+// На реплику идут только транзакции readOnly из readOnlyScope (сервисы каталога и панелей менеджера),
+// и только если:
+//  - реплика уже содержит последнюю запись этого пользователя (номер из сессии или из этого же потока);
+//  - реплика отстает не дольше maxLagMs (отставание - с последней проверки, когда она была догнавшей).
+// Иначе чтение уходит на основную базу
+public class ReplicaRouting {
+
+    // Задан только внутри HTTP-запроса (beginRequest ... clearRequired): фоновые потоки
+    // (обработка фото, дозаполнение копий, генератор данных) свои записи не отслеживают
+    private static final ThreadLocal<Long> REQUIRED = new ThreadLocal<>();
+
+    private final String readOnlyScope;
+    private final long maxLagNanos;
+
+    private final AtomicLong committed = new AtomicLong();
+    private final AtomicLong applied = new AtomicLong();
+    private volatile long caughtUpAtNanos = System.nanoTime();
+
+    private final LongAdder replicaReads = new LongAdder();
+    private final LongAdder ownWriteFallbacks = new LongAdder();
+    private final LongAdder lagFallbacks = new LongAdder();
+
+    public ReplicaRouting(String readOnlyScope, long maxLagMs) {
+        this.readOnlyScope = readOnlyScope;
+        this.maxLagNanos = TimeUnit.MILLISECONDS.toNanos(maxLagMs);
+    }
+
+    // Начало запроса: position - последняя запись пользователя из сессии, 0 - записей не было
+    public static void beginRequest(long position) {
+        REQUIRED.set(position);
+    }
+
+    // Номер, который реплика должна содержать для чтений текущего потока (из сессии пользователя)
+    public static void requireApplied(long position) {
+        Long required = REQUIRED.get();
+        if (required == null || required < position) {
+            REQUIRED.set(position);
+        }
+    }
+
+    // Номер последней записи, сделанной или увиденной текущим потоком; 0 - записей не было
+    public static long requiredPosition() {
+        Long required = REQUIRED.get();
+        return required == null ? 0 : required;
+    }
+
+    public static void clearRequired() {
+        REQUIRED.remove();
+    }
+
+    // Транзакция readOnly с именем transactionName (класс.метод): на реплику или на основную базу
+    boolean useReplica(String transactionName) {
+        if (transactionName == null || !transactionName.startsWith(readOnlyScope)) {
+            return false;
+        }
+        if (requiredPosition() > applied.get()) {
+            ownWriteFallbacks.increment();
+            return false;
+        }
+        if (lagNanos() > maxLagNanos) {
+            lagFallbacks.increment();
+            return false;
+        }
+        replicaReads.increment();
+        return true;
+    }
+
+    // Соединение основной базы, через которое могли писать, закрыто: запись получает номер,
+    // а чтения этого потока до конца запроса идут туда, где она уже есть
+    long recordWrite() {
+        long position = committed.incrementAndGet();
+        if (REQUIRED.get() != null) {
+            requireApplied(position);
+        }
+        return position;
+    }
+
+    public long committedPosition() {
+        return committed.get();
+    }
+
+    public long appliedPosition() {
+        return applied.get();
+    }
+
+    // Реплика содержит все записи до position, проверка начиналась в startedAtNanos
+    public void markApplied(long position, long startedAtNanos) {
+        applied.accumulateAndGet(position, Math::max);
+        caughtUpAtNanos = startedAtNanos;
+    }
+
+    // Сколько реплика может не содержать последних записей; 0 - догнала основную базу
+    public long lagNanos() {
+        if (committed.get() <= applied.get()) {
+            return 0;
+        }
+        return Math.max(0, System.nanoTime() - caughtUpAtNanos);
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(committed.get(), applied.get(), TimeUnit.NANOSECONDS.toMillis(lagNanos()),
+                TimeUnit.NANOSECONDS.toMillis(maxLagNanos), replicaReads.sum(), ownWriteFallbacks.sum(),
+                lagFallbacks.sum());
+    }
+
+    // Номера записей, отставание и куда ушли чтения readOnly с запуска
+    public record Snapshot(long committedPosition,
+                           long appliedPosition,
+                           long lagMs,
+                           long maxLagMs,
+                           long replicaReads,
+                           long ownWriteFallbacks,
+                           long lagFallbacks) {
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.carrental.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Чтение каталога и панелей менеджера - с реплики, бронирование и одобрение - в основную базу.
+// Решение принимается при получении соединения, поэтому перед этим источником нужен
+// LazyConnectionDataSourceProxy: Hibernate берет соединение в начале транзакции, когда признак readOnly
+// еще не выставлен, а настоящее соединение нужно только к первому SQL-запросу.
+// Соединения основной базы вне транзакций readOnly отмечают запись (ReplicaRouting), когда фиксируют изменения
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica";
+    private static final Set<String> READ_KEYWORDS = Set.of("SELECT", "WITH", "VALUES", "TABLE", "SHOW", "EXPLAIN");
+
+    private final ReplicaRouting routing;
+
+    public ReplicaRoutingDataSource(DataSource primary, DataSource replica, ReplicaRouting routing) {
+        this.routing = routing;
+        setTargetDataSources(Map.of(PRIMARY, primary, REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                && routing.useReplica(TransactionSynchronizationManager.getCurrentTransactionName())) {
+            return REPLICA;
+        }
+        return PRIMARY;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return super.getConnection();
+        }
+        return recordingWrite(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return super.getConnection(username, password);
+        }
+        return recordingWrite(super.getConnection(username, password));
+    }
+
+    // Соединение, которое отмечает запись, когда изменяющие запросы зафиксированы: при commit(),
+    // при включении autoCommit или при закрытии в режиме autoCommit. Транзакции, которые только читали,
+    // и откаченные изменения записью не считаются
+    private Connection recordingWrite(Connection target) {
+        AtomicBoolean modified = new AtomicBoolean();
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    boolean committing = switch (name) {
+                        case "commit" -> true;
+                        case "setAutoCommit" -> (Boolean) args[0] && !target.getAutoCommit();
+                        case "close" -> !target.isClosed() && target.getAutoCommit();
+                        default -> false;
+                    };
+                    Object result = invoke(target, method, args);
+                    if ((name.equals("prepareStatement") || name.equals("prepareCall")) && isModifying((String) args[0])) {
+                        modified.set(true);
+                    } else if (name.equals("createStatement")) {
+                        result = recordingModifications((Statement) result, modified);
+                    } else if (name.equals("rollback") && method.getParameterCount() == 0) {
+                        modified.set(false);
+                    } else if (committing && modified.compareAndSet(true, false)) {
+                        routing.recordWrite();
+                    }
+                    return result;
+                });
+    }
+
+    // Statement без текста запроса заранее: изменение видно по выполняемому SQL
+    private static Statement recordingModifications(Statement target, AtomicBoolean modified) {
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{Statement.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.equals("executeUpdate") || name.equals("executeLargeUpdate")
+                            || ((name.equals("execute") || name.equals("addBatch")) && isModifying((String) args[0]))) {
+                        modified.set(true);
+                    }
+                    return invoke(target, method, args);
+                });
+    }
+
+    // Все, кроме чтения (SELECT, WITH, VALUES), считается изменением; блокировки SELECT ... FOR UPDATE - чтение
+    static boolean isModifying(String sql) {
+        String statement = sql.stripLeading();
+        while (statement.startsWith("/*") && statement.contains("*/")) {
+            statement = statement.substring(statement.indexOf("*/") + 2).stripLeading();
+        }
+        while (statement.startsWith("(")) {
+            statement = statement.substring(1).stripLeading();
+        }
+        String keyword = statement.split("[\\s(]", 2)[0].toUpperCase(Locale.ROOT);
+        return !READ_KEYWORDS.contains(keyword);
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,167 @@
+package org.example.carrental.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Замена репликации для локального запуска и тестов: две базы H2, реплика раз в intervalMs
+// получает копию основной (только если с прошлой копии были записи). Копия таблиц делается
+// в одной транзакции реплики: читатели видят либо прежние данные, либо новые целиком.
+// Каждая проверка (и с копированием, и без) сообщает ReplicaRouting, до какой записи реплика догнала
+// основную базу - по этому считается отставание. Копируется база целиком: для больших наборов данных
+// это дорого, для настоящей репликации нужен журнал изменений СУБД
+public class ReplicationStandIn implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicationStandIn.class);
+    private static final int BATCH_SIZE = 1000;
+
+    private final String primaryUrl;
+    private final String replicaUrl;
+    private final String username;
+    private final String password;
+    private final ReplicaRouting routing;
+    private final long intervalMs;
+    private ScheduledExecutorService scheduler;
+
+    public ReplicationStandIn(String primaryUrl, String replicaUrl, String username, String password,
+                              ReplicaRouting routing, long intervalMs) {
+        this.primaryUrl = primaryUrl;
+        this.replicaUrl = replicaUrl;
+        this.username = username;
+        this.password = password;
+        this.routing = routing;
+        this.intervalMs = intervalMs;
+    }
+
+    // Схема реплики - по основной базе (после создания схемы Hibernate), затем периодическое копирование.
+    // intervalMs = 0 - только по вызову sync()
+    public synchronized void start() throws SQLException {
+        try (Connection primary = DriverManager.getConnection(primaryUrl, username, password);
+             Connection replica = DriverManager.getConnection(replicaUrl, username, password)) {
+            copySchema(primary, replica);
+        }
+        sync();
+        if (intervalMs > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "replication-stand-in");
+                thread.setDaemon(true);
+                return thread;
+            });
+            scheduler.scheduleWithFixedDelay(this::syncQuietly, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Довести реплику до последней записи, отмеченной к началу вызова
+    public synchronized void sync() throws SQLException {
+        long startedAt = System.nanoTime();
+        long target = routing.committedPosition();
+        if (target > routing.appliedPosition()) {
+            try (Connection primary = DriverManager.getConnection(primaryUrl, username, password);
+                 Connection replica = DriverManager.getConnection(replicaUrl, username, password)) {
+                copyData(primary, replica);
+            }
+        }
+        routing.markApplied(target, startedAt);
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (SQLException | RuntimeException e) {
+            // Реплика отстает, чтения уходят на основную базу; следующая попытка - через intervalMs
+            log.atWarn().setCause(e).log("Не удалось обновить реплику");
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static void copySchema(Connection primary, Connection replica) throws SQLException {
+        try (Statement source = primary.createStatement();
+             Statement target = replica.createStatement();
+             ResultSet script = source.executeQuery("SCRIPT NODATA NOPASSWORDS NOSETTINGS")) {
+            target.execute("DROP ALL OBJECTS");
+            while (script.next()) {
+                String sql = script.getString(1);
+                if (!sql.startsWith("--") && !sql.startsWith("CREATE USER")) {
+                    target.execute(sql);
+                }
+            }
+            // Порядок копирования таблиц не важен: внешние ключи проверены в основной базе
+            target.execute("SET REFERENTIAL_INTEGRITY FALSE");
+        }
+    }
+
+    private static void copyData(Connection primary, Connection replica) throws SQLException {
+        primary.setAutoCommit(false);
+        primary.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+        replica.setAutoCommit(false);
+        try {
+            for (String table : tables(primary)) {
+                copyTable(primary, replica, table);
+            }
+            replica.commit();
+        } catch (SQLException | RuntimeException e) {
+            replica.rollback();
+            throw e;
+        } finally {
+            primary.rollback();
+        }
+    }
+
+    private static List<String> tables(Connection primary) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (Statement statement = primary.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT TABLE_NAME FROM INFORMATION_SCHEMA.TABLES "
+                     + "WHERE TABLE_SCHEMA = 'PUBLIC' AND TABLE_TYPE = 'BASE TABLE' ORDER BY TABLE_NAME")) {
+            while (rows.next()) {
+                tables.add('"' + rows.getString(1).replace("\"", "\"\"") + '"');
+            }
+        }
+        return tables;
+    }
+
+    private static void copyTable(Connection primary, Connection replica, String table) throws SQLException {
+        try (Statement clear = replica.createStatement()) {
+            clear.executeUpdate("DELETE FROM " + table);
+        }
+        try (Statement source = primary.createStatement();
+             ResultSet rows = source.executeQuery("SELECT * FROM " + table)) {
+            int columns = rows.getMetaData().getColumnCount();
+            String placeholders = String.join(", ", Collections.nCopies(columns, "?"));
+            try (PreparedStatement insert = replica.prepareStatement(
+                    "INSERT INTO " + table + " VALUES (" + placeholders + ")")) {
+                int batched = 0;
+                while (rows.next()) {
+                    for (int i = 1; i <= columns; i++) {
+                        insert.setObject(i, rows.getObject(i));
+                    }
+                    insert.addBatch();
+                    if (++batched % BATCH_SIZE == 0) {
+                        insert.executeBatch();
+                    }
+                }
+                if (batched % BATCH_SIZE != 0) {
+                    insert.executeBatch();
+                }
+            }
+        }
+    }
+}
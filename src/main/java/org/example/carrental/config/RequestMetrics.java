@@ -0,0 +1,188 @@
+package org.example.carrental.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Метрики запросов по обработчикам ("GET /cars/{id}"): гистограмма задержек, число SQL-запросов,
+// прочитанных/измененных строк и время JDBC. SQL текущего запроса копится в счетчике потока
+// (его пополняют SqlStatementInspector и SqlMetricsDataSource), в общие счетчики попадает по окончании.
+// Запрос, выполнивший больше sqlBudget SQL-запросов, отмечается в журнале и в счетчике превышений
+public class RequestMetrics {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestMetrics.class);
+
+    private static final ThreadLocal<RequestSql> CURRENT = new ThreadLocal<>();
+    private static final double[] QUANTILES = {0.5, 0.95, 0.99};
+
+    private final Map<String, HandlerStats> handlers = new ConcurrentHashMap<>();
+    private final int sqlBudget;
+
+    // sqlBudget = 0 - без ограничения
+    public RequestMetrics(int sqlBudget) {
+        this.sqlBudget = sqlBudget;
+    }
+
+    // Начало запроса в текущем потоке; вложенный вызов (уже идет запрос) возвращает null
+    public RequestSql begin() {
+        if (CURRENT.get() != null) {
+            return null;
+        }
+        RequestSql sql = new RequestSql();
+        CURRENT.set(sql);
+        return sql;
+    }
+
+    // Конец запроса, начатого begin(): handler - шаблон адреса с методом, status - код ответа
+    public void end(RequestSql sql, String handler, int status, long elapsedNanos) {
+        CURRENT.remove();
+        HandlerStats stats = handlers.computeIfAbsent(handler, key -> new HandlerStats());
+        stats.latency.record(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+        stats.statements.add(sql.statements);
+        stats.rows.add(sql.rows);
+        stats.jdbcNanos.add(sql.jdbcNanos);
+        if (status >= 500) {
+            stats.errors.increment();
+        }
+        if (sqlBudget > 0 && sql.statements > sqlBudget) {
+            stats.overBudget.increment();
+            log.atWarn()
+                    .addKeyValue("handler", handler)
+                    .addKeyValue("statements", sql.statements)
+                    .addKeyValue("budget", sqlBudget)
+                    .addKeyValue("rows", sql.rows)
+                    .addKeyValue("jdbcMs", TimeUnit.NANOSECONDS.toMillis(sql.jdbcNanos))
+                    .addKeyValue("elapsedMs", TimeUnit.NANOSECONDS.toMillis(elapsedNanos))
+                    .log("Запрос превысил бюджет SQL-запросов");
+        }
+    }
+
+    // SQL текущего запроса; null - поток не обслуживает запрос (фоновые задачи, тесты без веб-слоя)
+    static RequestSql current() {
+        return CURRENT.get();
+    }
+
+    public int getSqlBudget() {
+        return sqlBudget;
+    }
+
+    public Map<String, HandlerSnapshot> snapshot() {
+        Map<String, HandlerSnapshot> result = new TreeMap<>();
+        handlers.forEach((handler, stats) -> result.put(handler, stats.snapshot()));
+        return result;
+    }
+
+    // Текстовый формат Prometheus (text/plain; version=0.0.4)
+    public String prometheus() {
+        Map<String, HandlerSnapshot> snapshot = snapshot();
+        StringBuilder out = new StringBuilder(256 + snapshot.size() * 1024);
+
+        header(out, "carrental_http_request_duration_seconds", "summary", "Время обработки запроса");
+        snapshot.forEach((handler, stats) -> {
+            for (int i = 0; i < QUANTILES.length; i++) {
+                out.append("carrental_http_request_duration_seconds{handler=\"").append(escape(handler))
+                        .append("\",quantile=\"").append(QUANTILES[i]).append("\"} ")
+                        .append(seconds(stats.quantileMicros()[i])).append('\n');
+            }
+            sample(out, "carrental_http_request_duration_seconds_sum", handler, seconds(stats.sumMicros()));
+            sample(out, "carrental_http_request_duration_seconds_count", handler, stats.requests());
+        });
+        header(out, "carrental_http_request_duration_max_seconds", "gauge", "Самый долгий запрос с запуска");
+        snapshot.forEach((handler, stats) ->
+                sample(out, "carrental_http_request_duration_max_seconds", handler, seconds(stats.maxMicros())));
+        header(out, "carrental_http_request_errors_total", "counter", "Запросы с ответом 5xx");
+        snapshot.forEach((handler, stats) ->
+                sample(out, "carrental_http_request_errors_total", handler, stats.errors()));
+        header(out, "carrental_http_request_sql_statements_total", "counter", "SQL-запросы, подготовленные Hibernate");
+        snapshot.forEach((handler, stats) ->
+                sample(out, "carrental_http_request_sql_statements_total", handler, stats.statements()));
+        header(out, "carrental_http_request_sql_rows_total", "counter", "Строки, прочитанные и измененные SQL-запросами");
+        snapshot.forEach((handler, stats) ->
+                sample(out, "carrental_http_request_sql_rows_total", handler, stats.rows()));
+        header(out, "carrental_http_request_jdbc_seconds_total", "counter", "Время выполнения SQL-запросов в JDBC");
+        snapshot.forEach((handler, stats) ->
+                sample(out, "carrental_http_request_jdbc_seconds_total", handler, stats.jdbcNanos() / 1e9));
+        header(out, "carrental_http_request_sql_budget_exceeded_total", "counter",
+                "Запросы, выполнившие больше SQL-запросов, чем разрешено бюджетом");
+        snapshot.forEach((handler, stats) ->
+                sample(out, "carrental_http_request_sql_budget_exceeded_total", handler, stats.overBudget()));
+        header(out, "carrental_http_request_sql_budget", "gauge", "Бюджет SQL-запросов на один запрос (0 - без ограничения)");
+        out.append("carrental_http_request_sql_budget ").append(sqlBudget).append('\n');
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String handler, Object value) {
+        out.append(name).append("{handler=\"").append(escape(handler)).append("\"} ").append(value).append('\n');
+    }
+
+    private static double seconds(long micros) {
+        return micros / 1e6;
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    // SQL одного запроса; меняется только потоком, который его обслуживает
+    public static final class RequestSql {
+        private int statements;
+        private long rows;
+        private long jdbcNanos;
+
+        void statement() {
+            statements++;
+        }
+
+        void rows(long count) {
+            rows += count;
+        }
+
+        void jdbcTime(long nanos) {
+            jdbcNanos += nanos;
+        }
+
+        public int getStatements() {
+            return statements;
+        }
+    }
+
+    private static final class HandlerStats {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder statements = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder jdbcNanos = new LongAdder();
+        private final LongAdder overBudget = new LongAdder();
+
+        HandlerSnapshot snapshot() {
+            long[] quantiles = new long[QUANTILES.length];
+            for (int i = 0; i < QUANTILES.length; i++) {
+                quantiles[i] = latency.percentileMicros(QUANTILES[i] * 100);
+            }
+            return new HandlerSnapshot(latency.count(), latency.sumMicros(), latency.maxMicros(), quantiles,
+                    errors.sum(), statements.sum(), rows.sum(), jdbcNanos.sum(), overBudget.sum());
+        }
+    }
+
+    // Накопленные с запуска показатели обработчика; quantileMicros - p50, p95, p99
+    public record HandlerSnapshot(long requests,
+                                  long sumMicros,
+                                  long maxMicros,
+                                  long[] quantileMicros,
+                                  long errors,
+                                  long statements,
+                                  long rows,
+                                  long jdbcNanos,
+                                  long overBudget) {
+    }
+}
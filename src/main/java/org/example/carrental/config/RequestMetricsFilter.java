@@ -0,0 +1,61 @@
+package org.example.carrental.config;
+
+import jakarta.servlet.Filter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+// Замер каждого запроса для RequestMetrics. Обработчик - метод и шаблон адреса из Spring MVC
+// ("GET /cars/{id}", "GET /images/**"), а не сам адрес: число рядов метрик не растет с числом автомобилей.
+// Метрики берутся из контекста при первом запросе (фильтр создается в Main раньше, чем контекст поднят)
+public class RequestMetricsFilter implements Filter {
+
+    private static final String UNMAPPED = "unmapped";
+
+    private final Supplier<RequestMetrics> metricsSource;
+    private volatile RequestMetrics metrics;
+
+    public RequestMetricsFilter(Supplier<RequestMetrics> metricsSource) {
+        this.metricsSource = metricsSource;
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        RequestMetrics target = metrics();
+        RequestMetrics.RequestSql sql = target.begin();
+        if (sql == null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long start = System.nanoTime();
+        int status = HttpServletResponse.SC_INTERNAL_SERVER_ERROR;
+        try {
+            chain.doFilter(request, response);
+            status = ((HttpServletResponse) response).getStatus();
+        } finally {
+            target.end(sql, handler((HttpServletRequest) request), status, System.nanoTime() - start);
+        }
+    }
+
+    private RequestMetrics metrics() {
+        RequestMetrics current = metrics;
+        if (current == null) {
+            current = metricsSource.get();
+            metrics = current;
+        }
+        return current;
+    }
+
+    private static String handler(HttpServletRequest request) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return request.getMethod() + " " + (pattern != null ? pattern : UNMAPPED);
+    }
+}
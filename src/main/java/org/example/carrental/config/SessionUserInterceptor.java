@@ -0,0 +1,33 @@
+package org.example.carrental.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpSession;
+import org.example.carrental.dto.SessionUser;
+import org.example.carrental.service.UserService;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+// Перед каждым запросом: если пользователь изменился после входа, снимок в сессии заменяется свежим.
+// Пока пользователь не менялся - только сравнение номеров в памяти, без обращения к базе
+public class SessionUserInterceptor implements HandlerInterceptor {
+
+    private final UserService userService;
+
+    public SessionUserInterceptor(UserService userService) {
+        this.userService = userService;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        HttpSession session = request.getSession(false);
+        if (session != null && session.getAttribute("user") instanceof SessionUser sessionUser) {
+            SessionUser current = userService.refreshSessionUser(sessionUser);
+            if (current == null) {
+                session.removeAttribute("user");
+            } else if (current != sessionUser) {
+                session.setAttribute("user", current);
+            }
+        }
+        return true;
+    }
+}
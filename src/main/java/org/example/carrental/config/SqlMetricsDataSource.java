@@ -0,0 +1,102 @@
+package org.example.carrental.config;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Время JDBC и число строк для RequestMetrics: у запросов, подготовленных во время обработки
+// HTTP-запроса, замеряются вызовы execute* и считаются измененные строки и строки,
+// прочитанные из результата (ResultSet.next). Вне запроса соединения и запросы не оборачиваются
+public class SqlMetricsDataSource extends DelegatingDataSource {
+
+    public SqlMetricsDataSource(DataSource target) {
+        super(target);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return measured(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return measured(super.getConnection(username, password));
+    }
+
+    private Connection measured(Connection target) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    if (result instanceof Statement statement && RequestMetrics.current() != null) {
+                        return measured(statement);
+                    }
+                    return result;
+                });
+    }
+
+    private static Statement measured(Statement target) {
+        Class<?> type = target instanceof CallableStatement ? CallableStatement.class
+                : target instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+        return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (!name.startsWith("execute") && !name.equals("getResultSet")) {
+                        return invoke(target, method, args);
+                    }
+                    RequestMetrics.RequestSql current = RequestMetrics.current();
+                    long start = System.nanoTime();
+                    Object result = invoke(target, method, args);
+                    if (current == null) {
+                        return result;
+                    }
+                    if (name.startsWith("execute")) {
+                        current.jdbcTime(System.nanoTime() - start);
+                    }
+                    if (result instanceof ResultSet resultSet) {
+                        return counted(resultSet, current);
+                    }
+                    if (result instanceof Integer updated && name.startsWith("executeUpdate")) {
+                        current.rows(Math.max(0, updated));
+                    } else if (result instanceof Long updated && name.startsWith("executeLargeUpdate")) {
+                        current.rows(Math.max(0, updated));
+                    } else if (result instanceof int[] batch) {
+                        for (int updated : batch) {
+                            current.rows(Math.max(0, updated));
+                        }
+                    } else if (result instanceof long[] batch) {
+                        for (long updated : batch) {
+                            current.rows(Math.max(0, updated));
+                        }
+                    }
+                    return result;
+                });
+    }
+
+    private static ResultSet counted(ResultSet target, RequestMetrics.RequestSql current) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    Object result = invoke(target, method, args);
+                    if (Boolean.TRUE.equals(result) && method.getName().equals("next")) {
+                        current.rows(1);
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.carrental.config;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.Marker;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Выборочный журнал SQL: из сообщений логгера loggerName (и его потомков) пропускается
+// только каждое sampleEvery-е, остальные отбрасываются до форматирования и очереди вывода.
+// Подключается в logback.xml; сам журнал SQL по умолчанию выключен (уровень OFF)
+public class SqlSamplingFilter extends TurboFilter {
+
+    private final AtomicLong counter = new AtomicLong();
+    private String loggerName = "org.hibernate.SQL";
+    private int sampleEvery = 1;
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format,
+                              Object[] params, Throwable t) {
+        // format == null - это проверка isDebugEnabled() перед записью, ее не считаем
+        if (sampleEvery <= 1 || format == null || !logger.getName().startsWith(loggerName)) {
+            return FilterReply.NEUTRAL;
+        }
+        return counter.getAndIncrement() % sampleEvery == 0 ? FilterReply.NEUTRAL : FilterReply.DENY;
+    }
+
+    public void setLoggerName(String loggerName) {
+        this.loggerName = loggerName;
+    }
+
+    public void setSampleEvery(int sampleEvery) {
+        this.sampleEvery = sampleEvery;
+    }
+}
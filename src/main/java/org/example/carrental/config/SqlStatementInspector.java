@@ -0,0 +1,17 @@
+package org.example.carrental.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Считает SQL-запросы, которые Hibernate подготавливает в текущем запросе (RequestMetrics).
+// Текст запроса не меняется; ответы из кэша второго уровня и кэша запросов сюда не доходят
+public class SqlStatementInspector implements StatementInspector {
+
+    @Override
+    public String inspect(String sql) {
+        RequestMetrics.RequestSql current = RequestMetrics.current();
+        if (current != null) {
+            current.statement();
+        }
+        return sql;
+    }
+}
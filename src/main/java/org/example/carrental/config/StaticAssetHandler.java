@@ -0,0 +1,232 @@
+package org.example.carrental.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+import org.springframework.web.HttpRequestHandler;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Отдача файлов из каталога на диске (загруженные фото, статика) с кэшированием в браузере:
+// - ETag по содержимому и Last-Modified, ответ 304 на If-None-Match / If-Modified-Since;
+// - файлы с хэшем содержимого в имени (<sha256>.jpg, <sha256>-640w.jpg) неизменяемы - кэшируются на год,
+//   остальные браузер перепроверяет при каждом показе (обычно это 304 без тела);
+// - один диапазон байтов (Range, 206 / 416), несколько диапазонов - весь файл целиком;
+// - тело файлов от 48 КБ в Tomcat отдает sendfile, без копирования через память приложения;
+//   маленькие файлы и контейнеры без sendfile - обычная запись через буфер (transferTo в поток ответа)
+public class StaticAssetHandler implements HttpRequestHandler {
+
+    // <sha256>.<ext> - исходное фото, <sha256>-<ширина>w.jpg - его копия (FileStorageService, ImageVariants)
+    private static final Pattern HASHED_NAME = Pattern.compile("([0-9a-f]{64}(?:-\\d+w)?)\\.[A-Za-z0-9]+");
+    private static final Pattern RANGE = Pattern.compile("bytes=(\\d*)-(\\d*)");
+
+    private static final String CACHE_IMMUTABLE = "public, max-age=31536000, immutable";
+    private static final String CACHE_REVALIDATE = "no-cache";
+
+    // Атрибуты запроса Tomcat для sendfile (org.apache.catalina.Globals): файл отправляет сам коннектор
+    // после выхода из сервлета. Маленькие файлы быстрее отдать обычной записью, как в DefaultServlet
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+    private static final long SENDFILE_MIN_SIZE = 48 * 1024;
+
+    private final Path root;
+    // ETag файлов без хэша в имени: считается один раз на версию файла (размер + время изменения)
+    private final Cache<FileVersion, String> etags = Caffeine.newBuilder().maximumSize(10_000).build();
+
+    public StaticAssetHandler(Path root) {
+        this.root = root.toAbsolutePath().normalize();
+    }
+
+    @Override
+    public void handleRequest(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String method = request.getMethod();
+        if (!"GET".equals(method) && !"HEAD".equals(method)) {
+            response.setHeader(HttpHeaders.ALLOW, "GET, HEAD");
+            response.sendError(HttpServletResponse.SC_METHOD_NOT_ALLOWED);
+            return;
+        }
+        Path file = resolve((String) request.getAttribute(HandlerMapping.PATH_WITHIN_HANDLER_MAPPING_ATTRIBUTE));
+        BasicFileAttributes attributes = file == null ? null : readAttributes(file);
+        if (attributes == null || !attributes.isRegularFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        long size = attributes.size();
+        // HTTP-даты - с точностью до секунды
+        long lastModified = attributes.lastModifiedTime().toMillis() / 1000 * 1000;
+        Matcher hashed = HASHED_NAME.matcher(file.getFileName().toString());
+        String etag = hashed.matches() ? '"' + hashed.group(1) + '"'
+                : etags.get(new FileVersion(file, size, lastModified), StaticAssetHandler::contentEtag);
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, lastModified);
+        response.setHeader(HttpHeaders.CACHE_CONTROL, hashed.matches() ? CACHE_IMMUTABLE : CACHE_REVALIDATE);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setContentType(MediaTypeFactory.getMediaType(file.getFileName().toString())
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+
+        long start = 0;
+        long length = size;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        if (range != null && rangeApplies(request, etag, lastModified)) {
+            Matcher matcher = RANGE.matcher(range.trim());
+            if (matcher.matches() && !(matcher.group(1).isEmpty() && matcher.group(2).isEmpty())) {
+                long[] bounds = bounds(matcher.group(1), matcher.group(2), size);
+                if (bounds == null) {
+                    response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                start = bounds[0];
+                length = bounds[1] - bounds[0] + 1;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + bounds[0] + "-" + bounds[1] + "/" + size);
+            }
+        }
+        response.setContentLengthLong(length);
+        if ("HEAD".equals(method) || length == 0) {
+            return;
+        }
+
+        if (length >= SENDFILE_MIN_SIZE && Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toString());
+            request.setAttribute(SENDFILE_START, start);
+            request.setAttribute(SENDFILE_END, start + length);
+            return;
+        }
+        // Поток ответа - не файловый и не сокетный канал: transferTo читает файл в буфер
+        // и пишет его в ServletOutputStream, то есть копирует через память приложения
+        try (FileChannel channel = FileChannel.open(file)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long sent = channel.transferTo(position, end - position, out);
+                if (sent <= 0) {
+                    break; // файл укоротили во время отдачи
+                }
+                position += sent;
+            }
+        }
+    }
+
+    // null - путь вне каталога или служебный файл (.staging, <фото>.variants, недописанные *.tmp)
+    private Path resolve(String relativePath) {
+        if (relativePath == null || relativePath.isEmpty() || relativePath.contains("\\")) {
+            return null;
+        }
+        for (String segment : relativePath.split("/")) {
+            if (segment.startsWith(".")) {
+                return null;
+            }
+        }
+        if (relativePath.endsWith(".variants") || relativePath.endsWith(".tmp")) {
+            return null;
+        }
+        Path file = root.resolve(relativePath).normalize();
+        return file.startsWith(root) ? file : null;
+    }
+
+    private static BasicFileAttributes readAttributes(Path file) {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // If-None-Match главнее If-Modified-Since; для 304 достаточно слабого совпадения
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String candidate : ifNoneMatch.split(",")) {
+                String tag = candidate.trim();
+                if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, HttpHeaders.IF_MODIFIED_SINCE);
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    // If-Range: диапазон только от той же версии файла (строгое сравнение ETag или точная дата), иначе весь файл
+    private static boolean rangeApplies(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            return ifRange.trim().equals(etag);
+        }
+        return dateHeader(request, HttpHeaders.IF_RANGE) == lastModified;
+    }
+
+    // [первый, последний] байт; null - диапазон вне файла (416)
+    private static long[] bounds(String first, String last, long size) {
+        try {
+            if (first.isEmpty()) {
+                // "-N" - последние N байт
+                long suffix = Long.parseLong(last);
+                return suffix == 0 || size == 0 ? null : new long[]{Math.max(0, size - suffix), size - 1};
+            }
+            long start = Long.parseLong(first);
+            long end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            return start >= size || start > end ? null : new long[]{start, end};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    // -1 - заголовка нет или это не дата
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    // Первые 128 бит SHA-256 содержимого
+    private static String contentEtag(FileVersion version) {
+        try (InputStream input = Files.newInputStream(version.file())) {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = input.read(buffer)) > 0) {
+                sha256.update(buffer, 0, read);
+            }
+            return '"' + HexFormat.of().formatHex(sha256.digest(), 0, 16) + '"';
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new RuntimeException("Ошибка чтения файла " + version.file().getFileName(), e);
+        }
+    }
+
+    private record FileVersion(Path file, long size, long lastModified) {
+    }
+}
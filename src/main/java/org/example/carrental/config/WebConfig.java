@@ -3,23 +3,42 @@ package org.example.carrental.config;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import jakarta.servlet.Filter;
+import org.example.carrental.service.CarVersionRegistry;
+import org.example.carrental.service.UserService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.io.ClassPathResource;
 import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.HttpRequestHandler;
 import org.springframework.web.filter.CharacterEncodingFilter;
 import org.springframework.web.multipart.MultipartResolver;
 import org.springframework.web.multipart.support.StandardServletMultipartResolver;
 import org.springframework.web.servlet.config.annotation.*;
+import org.springframework.web.servlet.handler.SimpleUrlHandlerMapping;
+import org.springframework.web.servlet.resource.ResourceHttpRequestHandler;
 import org.thymeleaf.spring6.SpringTemplateEngine;
 import org.thymeleaf.spring6.templateresolver.SpringResourceTemplateResolver;
 import org.thymeleaf.spring6.view.ThymeleafViewResolver;
 
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @Configuration
 @EnableWebMvc
 @ComponentScan(basePackages = "org.example.carrental.controller")
 public class WebConfig implements WebMvcConfigurer {
 
+    @Autowired
+    private UserService userService;
+
+    // Корень загруженных файлов (как в FileStorageService)
+    @Value("${upload.dir:uploads}")
+    private String uploadDir;
 
     @Bean
     public ObjectMapper objectMapper() {
@@ -35,6 +54,9 @@ public class WebConfig implements WebMvcConfigurer {
         resolver.setSuffix(".html");
         resolver.setTemplateMode("HTML");
         resolver.setCharacterEncoding("UTF-8");
+        // Разобранные шаблоны кэшируются без срока (меняются только с выпуском приложения)
+        resolver.setCacheable(true);
+        resolver.setCacheTTLMs(null);
         return resolver;
     }
 
@@ -45,6 +67,14 @@ public class WebConfig implements WebMvcConfigurer {
         return engine;
     }
 
+    // Карточки автомобилей и фильтры каталога - из кэша готового HTML
+    @Bean
+    public CatalogFragmentCache catalogFragmentCache(CarVersionRegistry carVersions,
+                                                     @Value("${catalog.fragment-cache.enabled:true}") boolean enabled,
+                                                     @Value("${catalog.fragment-cache.max-entries:20000}") long maxEntries) {
+        return new CatalogFragmentCache(templateEngine(), carVersions, enabled, maxEntries);
+    }
+
     @Bean
     public ThymeleafViewResolver viewResolver() {
         ThymeleafViewResolver resolver = new ThymeleafViewResolver();
@@ -70,15 +100,39 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowCredentials(true);
     }
 
+    // Фото и статика - через StaticAssetHandler (ETag, 304, Range, sendfile), а не ResourceHttpRequestHandler.
+    // Порядок после контроллеров; перехватчики Spring MVC к этим путям не применяются
+    @Bean
+    public SimpleUrlHandlerMapping staticAssetHandlerMapping() throws Exception {
+        Map<String, Object> handlers = new LinkedHashMap<>();
+        // Только загруженные изображения; временная папка загрузок (.staging) наружу не отдается
+        handlers.put("/uploads/images/**", new StaticAssetHandler(Paths.get(uploadDir, "images")));
+        handlers.put("/images/**", classpathAssets("static/images"));
+        handlers.put("/css/**", classpathAssets("static/css"));
+        handlers.put("/js/**", classpathAssets("static/js"));
+        return new SimpleUrlHandlerMapping(handlers, 1);
+    }
+
+    // Статика из classpath отдается с диска, когда приложение запущено из каталога классов;
+    // из jar (или если каталога нет) - стандартным обработчиком Spring, без sendfile и ETag
+    private HttpRequestHandler classpathAssets(String location) throws Exception {
+        ClassPathResource resource = new ClassPathResource(location + "/");
+        if (resource.isFile()) {
+            return new StaticAssetHandler(resource.getFile().toPath());
+        }
+        ResourceHttpRequestHandler handler = new ResourceHttpRequestHandler();
+        handler.setLocations(List.of(resource));
+        handler.afterPropertiesSet();
+        return handler;
+    }
+
+    // Снимок пользователя в сессии обновляется, только если пользователь изменился
     @Override
-    public void addResourceHandlers(ResourceHandlerRegistry registry) {
-        registry.addResourceHandler("/images/**")
-                .addResourceLocations("classpath:/static/images/");
-        registry.addResourceHandler("/uploads/**")
-                .addResourceLocations("file:uploads/");
-        registry.addResourceHandler("/css/**")
-                .addResourceLocations("classpath:/static/css/");
-        registry.addResourceHandler("/js/**")
-                .addResourceLocations("classpath:/static/js/");
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new SessionUserInterceptor(userService))
+                .excludePathPatterns("/images/**", "/uploads/**", "/css/**", "/js/**");
+        // Номер последней записи пользователя - из сессии и обратно (чтение своих изменений с реплики)
+        registry.addInterceptor(new ReplicaConsistencyInterceptor())
+                .excludePathPatterns("/images/**", "/uploads/**", "/css/**", "/js/**");
     }
-}
\ No newline at end of file
+}
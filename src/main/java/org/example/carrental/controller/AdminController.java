@@ -1,15 +1,30 @@
 package org.example.carrental.controller;
 
+import org.example.carrental.config.ConnectionPoolMetrics;
+import org.example.carrental.config.HibernateCacheMetrics;
+import org.example.carrental.config.ReplicaRouting;
+import org.example.carrental.config.RequestMetrics;
+import org.example.carrental.dto.CursorPage;
+import org.example.carrental.dto.SessionUser;
 import org.example.carrental.entity.Car;
 import org.example.carrental.entity.User;
 import org.example.carrental.service.CarService;
+import org.example.carrental.service.ImageBackfillJob;
+import org.example.carrental.service.OptimisticRetry;
 import org.example.carrental.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import jakarta.servlet.http.HttpSession;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.List;
 
 @Controller
@@ -22,23 +37,44 @@ public class AdminController {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private ConnectionPoolMetrics connectionPoolMetrics;
+
+    @Autowired
+    private HibernateCacheMetrics hibernateCacheMetrics;
+
+    @Autowired
+    private RequestMetrics requestMetrics;
+
+    @Autowired
+    private ReplicaRouting replicaRouting;
+
+    // Доступ к /admin/metrics для сборщика метрик без сессии; пусто - только администратору
+    @Value("${metrics.token:}")
+    private String metricsToken;
+
+    @Autowired
+    private ImageBackfillJob imageBackfillJob;
+
+    @Autowired
+    private OptimisticRetry optimisticRetry;
+
     // АДМИНСКАЯ СТАТИСТИКА - просмотр ВСЕХ данных системы
     @GetMapping("/dashboard")
     public String adminDashboard(HttpSession session, Model model) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isAdmin()) {
             return "redirect:/login";
         }
 
-        List<Car> allCars = carService.getAllCars();
         List<User> allUsers = userService.getAllUsers(); // нужно добавить этот метод в UserService
         List<User> managers = userService.getAllManagers();
         List<User> clients = userService.getAllClients();
 
         // Общая статистика системы
-        long totalCars = allCars.size();
-        long availableCars = allCars.stream().filter(Car::getAvailable).count();
+        long totalCars = carService.countCars();
+        long availableCars = carService.countAvailableCars();
         long totalUsers = allUsers.size();
         long pendingManagers = managers.stream().filter(m -> !m.isApproved()).count();
 
@@ -56,7 +92,7 @@ public class AdminController {
     // УПРАВЛЕНИЕ ПОЛЬЗОВАТЕЛЯМИ - главная функция админа
     @GetMapping("/users")
     public String manageUsers(HttpSession session, Model model) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isAdmin()) {
             return "redirect:/login";
@@ -79,14 +115,14 @@ public class AdminController {
     public String approveManager(@PathVariable Long managerId,
                                  HttpSession session,
                                  RedirectAttributes redirectAttributes) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isAdmin()) {
             return "redirect:/login";
         }
 
         try {
-            User approvedManager = userService.approveManager(managerId, currentUser);
+            User approvedManager = userService.approveManager(managerId, userService.getUserById(currentUser.getId()));
             redirectAttributes.addFlashAttribute("success",
                     "Менеджер " + approvedManager.getFullName() + " одобрен!");
         } catch (Exception e) {
@@ -98,23 +134,140 @@ public class AdminController {
 
     // ПРОСМОТР ВСЕХ АВТОМОБИЛЕЙ (только чтение для админа)
     @GetMapping("/cars")
-    public String viewAllCars(HttpSession session, Model model) {
-        User currentUser = (User) session.getAttribute("user");
+    public String viewAllCars(@RequestParam(required = false) String after,
+                              @RequestParam(required = false) Integer size,
+                              HttpSession session, Model model) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isAdmin()) {
             return "redirect:/login";
         }
 
-        List<Car> allCars = carService.getAllCars();
-        long availableCount = allCars.stream().filter(Car::getAvailable).count();
-        long occupiedCount = allCars.stream().filter(c -> !c.getAvailable()).count();
+        // Автомобили - постранично, счетчики - запросами COUNT
+        CursorPage<Car> page = carService.getCarsPage(after, size);
+        long totalCount = carService.countCars();
+        long availableCount = carService.countAvailableCars();
 
         model.addAttribute("currentUser", currentUser);
-        model.addAttribute("cars", allCars);
+        model.addAttribute("cars", page.getItems());
+        model.addAttribute("nextCursor", page.getNextCursor());
         model.addAttribute("availableCount", availableCount);
-        model.addAttribute("occupiedCount", occupiedCount);
-        model.addAttribute("totalCount", allCars.size());
+        model.addAttribute("occupiedCount", totalCount - availableCount);
+        model.addAttribute("totalCount", totalCount);
 
         return "admin-cars-view"; // шаблон только для просмотра
     }
-}
\ No newline at end of file
+
+    // Метрики пула соединений (JSON)
+    @GetMapping("/pool")
+    @ResponseBody
+    public ResponseEntity<ConnectionPoolMetrics.Snapshot> connectionPool(HttpSession session) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
+
+        if (currentUser == null || !currentUser.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok(connectionPoolMetrics.snapshot());
+    }
+
+    // Попадания и промахи кэша второго уровня (JSON)
+    @GetMapping("/cache")
+    @ResponseBody
+    public ResponseEntity<HibernateCacheMetrics.Snapshot> secondLevelCache(HttpSession session) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
+
+        if (currentUser == null || !currentUser.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok(hibernateCacheMetrics.snapshot());
+    }
+
+    // Отставание реплики и куда уходят чтения каталога и панелей менеджера (JSON)
+    @GetMapping("/replica")
+    @ResponseBody
+    public ResponseEntity<ReplicaRouting.Snapshot> replica(HttpSession session) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
+
+        if (currentUser == null || !currentUser.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok(replicaRouting.snapshot());
+    }
+
+    // Конфликты версий и повторы по операциям (JSON): где изменения чаще всего сталкиваются
+    @GetMapping("/optimistic-locks")
+    @ResponseBody
+    public ResponseEntity<OptimisticRetry.Snapshot> optimisticLocks(HttpSession session) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
+
+        if (currentUser == null || !currentUser.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok(optimisticRetry.snapshot());
+    }
+
+    // Задержки и SQL запросов по обработчикам - в текстовом формате Prometheus
+    @GetMapping("/metrics")
+    @ResponseBody
+    public ResponseEntity<String> requestMetrics(HttpSession session,
+                                                 @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false)
+                                                 String authorization) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
+        // Сравнение за одинаковое время: по времени ответа нельзя подобрать токен посимвольно
+        boolean tokenAccepted = !metricsToken.isEmpty() && authorization != null
+                && MessageDigest.isEqual(("Bearer " + metricsToken).getBytes(StandardCharsets.UTF_8),
+                        authorization.getBytes(StandardCharsets.UTF_8));
+
+        if (!tokenAccepted && (currentUser == null || !currentUser.isAdmin())) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("text/plain; version=0.0.4; charset=utf-8"))
+                .body(requestMetrics.prometheus());
+    }
+
+    // Уменьшенные копии для старых фото: запуск/остановка фонового задания и его состояние (JSON)
+    @GetMapping("/images/backfill")
+    @ResponseBody
+    public ResponseEntity<ImageBackfillJob.Status> imageBackfillStatus(HttpSession session) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
+
+        if (currentUser == null || !currentUser.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        return ResponseEntity.ok(imageBackfillJob.status());
+    }
+
+    @PostMapping("/images/backfill")
+    @ResponseBody
+    public ResponseEntity<ImageBackfillJob.Status> startImageBackfill(HttpSession session) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
+
+        if (currentUser == null || !currentUser.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        // Уже идет - 409 с текущим состоянием
+        boolean started = imageBackfillJob.start();
+        return ResponseEntity.status(started ? HttpStatus.ACCEPTED : HttpStatus.CONFLICT).body(imageBackfillJob.status());
+    }
+
+    @PostMapping("/images/backfill/stop")
+    @ResponseBody
+    public ResponseEntity<ImageBackfillJob.Status> stopImageBackfill(HttpSession session) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
+
+        if (currentUser == null || !currentUser.isAdmin()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+
+        imageBackfillJob.stop();
+        return ResponseEntity.ok(imageBackfillJob.status());
+    }
+}
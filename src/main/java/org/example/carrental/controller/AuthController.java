@@ -40,7 +40,7 @@ public class AuthController {
                         Model model) {
         try {
             User user = userService.authenticate(email, password);
-            session.setAttribute("user", user);
+            session.setAttribute("user", userService.toSessionUser(user));
 
             // Если был запрос на бронирование, редиректим на страницу бронирования
             if (carId != null) {
@@ -97,7 +97,7 @@ public class AuthController {
                 throw new RuntimeException("Неизвестная роль: " + role);
             }
 
-            session.setAttribute("user", newUser);
+            session.setAttribute("user", userService.toSessionUser(newUser));
 
             // Если был запрос на бронирование, редиректим на страницу бронирования
             if (carId != null) {
@@ -1,43 +1,97 @@
 package org.example.carrental.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.servlet.http.HttpSession;
 import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.dto.CursorPage;
+import org.example.carrental.dto.SessionUser;
 import org.example.carrental.entity.Car;
+import org.example.carrental.service.CarImportReader;
 import org.example.carrental.service.CarService;
+import org.example.carrental.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 @RestController
 @RequestMapping("/api/cars")
 public class CarController {
 
+    // Сколько строк NDJSON писать в ответ между сбросами буфера
+    private static final int STREAM_FLUSH_ROWS = 100;
+
     private final CarService carService;
+    private final UserService userService;
+    private final ObjectMapper objectMapper;
 
     @Autowired
-    public CarController(CarService carService) {
+    public CarController(CarService carService, UserService userService, ObjectMapper objectMapper) {
         this.carService = carService;
+        this.userService = userService;
+        this.objectMapper = objectMapper;
     }
 
-    // 1. Получить все автомобили
+    // 1. Получить все автомобили (постранично: ?after=<курсор>&size=<до 500>)
     @GetMapping
-    public List<Car> getAllCars() {
-        return carService.getAllCars();
+    public ResponseEntity<List<Car>> getAllCars(@RequestParam(required = false) String after,
+                                                @RequestParam(required = false) Integer size) {
+        CursorPage<Car> page = carService.getCarsPage(after, size);
+        return pageResponse(page.getItems(), page.getNextCursor());
+    }
+
+    // 1а. Все автомобили одним потоком NDJSON (Accept: application/x-ndjson):
+    // по одному JSON-объекту на строку, строки пишутся по мере чтения из базы
+    @GetMapping(produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void streamAllCars(HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setCharacterEncoding("UTF-8");
+        OutputStream out = response.getOutputStream();
+        int[] rows = {0};
+        try {
+            carService.streamAllCars(car -> {
+                try {
+                    out.write(objectMapper.writeValueAsBytes(car));
+                    out.write('\n');
+                    if (++rows[0] % STREAM_FLUSH_ROWS == 0) {
+                        out.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            // Клиент закрыл соединение - прекращаем чтение
+            throw e.getCause();
+        }
+        out.flush();
     }
 
-    // 2. Получить доступные автомобили
+    // 2. Получить доступные автомобили (постранично)
     @GetMapping("/available")
-    public List<Car> getAvailableCars() {
-        return carService.getAvailableCars();
+    public ResponseEntity<List<Car>> getAvailableCars(@RequestParam(required = false) String after,
+                                                      @RequestParam(required = false) Integer size) {
+        CursorPage<Car> page = carService.getAvailableCarsPage(after, size);
+        return pageResponse(page.getItems(), page.getNextCursor());
     }
 
     // 3. Получить автомобиль по ID - ИСПРАВЛЕНО
     @GetMapping("/{id}")
     public Car getCarById(@PathVariable("id") Long id) {
-        return carService.getCarById(id);
+        return carService.getCarWithManagerById(id);
     }
 
     // 4. Поиск по марке - ИСПРАВЛЕНО
@@ -63,25 +117,79 @@ public class CarController {
             return ResponseEntity.badRequest().body(e.getMessage());
         }
     }
+    // 7. Массовый импорт автомобилей текущего менеджера: CSV с заголовком (brand,model,year,pricePerDay,vin,...)
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<?> importCarsCsv(HttpServletRequest request, HttpSession session) throws IOException {
+        return importCars(() -> CarImportReader.csv(request.getReader()), session);
+    }
+
+    // 7а. То же для JSON-массива автомобилей (поля как в ответе GET /api/cars)
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<?> importCarsJson(HttpServletRequest request, HttpSession session) throws IOException {
+        return importCars(() -> CarImportReader.json(request.getInputStream(), objectMapper), session);
+    }
+
     // Добавить в CarController.java
     @GetMapping("/filter")
-    public List<Car> getCarsWithFilters(@ModelAttribute CarFilterDTO filters) {
-        return carService.getCarsWithFilters(filters);
+    public ResponseEntity<List<Car>> getCarsWithFilters(@ModelAttribute CarFilterDTO filters,
+                                                        @RequestParam(required = false) String after,
+                                                        @RequestParam(required = false) Integer size) {
+        CarService.CarSearchResult result = carService.searchCarsWithManager(filters, after, size);
+        return pageResponse(result.cars(), result.nextCursor());
+    }
+
+    // Количество автомобилей по значениям фильтров для текущего набора фильтров
+    @GetMapping("/filter/facets")
+    public Map<String, Map<String, Long>> getFilterFacets(@ModelAttribute CarFilterDTO filters) {
+        return carService.searchCars(filters).facetCounts();
     }
 
     // Для веб-версии (Thymeleaf)
     @GetMapping("/cars/filter")
     public String getFilteredCars(@ModelAttribute CarFilterDTO filters,
+                                  @RequestParam(required = false) String after,
+                                  @RequestParam(required = false) Integer size,
                                   HttpSession session,
                                   Model model) {
-        List<Car> filteredCars = carService.getCarsWithFilters(filters);
+        CarService.CarSearchResult result = carService.searchCars(filters, after, size);
         Map<String, List<String>> filterOptions = carService.getFilterOptions();
 
-        model.addAttribute("cars", filteredCars);
+        model.addAttribute("cars", result.cars());
         model.addAttribute("filterOptions", filterOptions);
+        model.addAttribute("facetCounts", result.facetCounts());
+        model.addAttribute("nextCursor", result.nextCursor());
         model.addAttribute("filters", filters);
         model.addAttribute("currentUser", session.getAttribute("user"));
 
         return "cars"; // тот же шаблон, но с фильтрами
     }
-}
\ No newline at end of file
+
+    private ResponseEntity<?> importCars(CarSource source, HttpSession session) throws IOException {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
+        if (currentUser == null) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).body("Импорт доступен только менеджерам");
+        }
+        try {
+            return ResponseEntity.ok(carService.importCars(source.open(), userService.getUserById(currentUser.getId())));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
+    private interface CarSource {
+        Stream<Car> open() throws IOException;
+    }
+
+    // Страница в теле - JSON-массив, как и раньше; курсор следующей страницы - в заголовках
+    private ResponseEntity<List<Car>> pageResponse(List<Car> cars, String nextCursor) {
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (nextCursor != null) {
+            String next = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .replaceQueryParam("after", nextCursor)
+                    .toUriString();
+            response.header("X-Next-Cursor", nextCursor);
+            response.header(HttpHeaders.LINK, "<" + next + ">; rel=\"next\"");
+        }
+        return response.body(cars);
+    }
+}
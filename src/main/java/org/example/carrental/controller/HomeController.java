@@ -1,8 +1,8 @@
 package org.example.carrental.controller;
 
 import jakarta.servlet.http.HttpSession;
-import org.example.carrental.entity.Car;
-import org.example.carrental.entity.User;
+import org.example.carrental.config.CatalogFragmentCache;
+import org.example.carrental.dto.SessionUser;
 import org.example.carrental.service.CarService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
@@ -10,6 +10,7 @@ import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.example.carrental.dto.CarFilterDTO;
 import org.springframework.web.bind.annotation.ModelAttribute;
+import org.springframework.web.bind.annotation.RequestParam;
 
 import java.util.List;
 import java.util.Map;
@@ -20,56 +21,47 @@ public class HomeController {
     @Autowired
     private CarService carService;
 
+    @Autowired
+    private CatalogFragmentCache catalogFragmentCache;
+
     @GetMapping("/")
     public String homePage(Model model, HttpSession session) {
-        model.addAttribute("cars", carService.getAvailableCars());
-
         // Добавляем пользователя в модель
-        User user = (User) session.getAttribute("user");
+        SessionUser user = (SessionUser) session.getAttribute("user");
         model.addAttribute("currentUser", user);
 
+        // Отметка - до загрузки автомобилей (см. CatalogFragmentCache)
+        long stamp = catalogFragmentCache.stamp();
+        model.addAttribute("carCards", catalogFragmentCache.homeCards(carService.getAvailableCars(), user, stamp));
+
         return "index";
     }
 
     @GetMapping("/cars")
     public String allCarsPage(@ModelAttribute CarFilterDTO filters, // Добавьте эту аннотацию
+                              @RequestParam(required = false) String after,
+                              @RequestParam(required = false) Integer size,
                               HttpSession session,
                               Model model) {
 
-        // Если фильтры не заданы, показываем все автомобили
-        List<Car> cars;
-        if (areFiltersEmpty(filters)) {
-            cars = carService.getAllCars();
-        } else {
-            cars = carService.getCarsWithFilters(filters);
-        }
+        SessionUser user = (SessionUser) session.getAttribute("user");
 
+        // Поиск по индексу каталога (без фильтров - все автомобили); отметка кэша - до загрузки автомобилей
+        long stamp = catalogFragmentCache.stamp();
+        CarService.CarSearchResult result = carService.searchCars(filters, after, size);
         Map<String, List<String>> filterOptions = carService.getFilterOptions();
 
-        model.addAttribute("cars", cars);
-        model.addAttribute("filterOptions", filterOptions);
+        // Карточки и фильтры - готовым HTML из кэша фрагментов
+        model.addAttribute("carCards", catalogFragmentCache.catalogCards(result.cars(), user, stamp));
+        model.addAttribute("filtersHtml",
+                catalogFragmentCache.catalogFilters(filterOptions, result.facetCounts(), filters));
+        model.addAttribute("nextCursor", result.nextCursor());
         model.addAttribute("filters", filters);
-
-        User user = (User) session.getAttribute("user");
         model.addAttribute("currentUser", user);
 
         return "cars";
     }
 
-    // Вспомогательный метод для проверки пустых фильтров
-    private boolean areFiltersEmpty(CarFilterDTO filters) {
-        return filters.getBrand() == null &&
-                filters.getMinPrice() == null &&
-                filters.getMaxPrice() == null &&
-                filters.getBodyType() == null &&
-                filters.getFuelType() == null &&
-                filters.getTransmission() == null &&
-                filters.getMinYear() == null &&
-                filters.getMaxYear() == null &&
-                filters.getAvailable() == null;
-    }
-
-
     @GetMapping("/test-images")
     public String testImages() {
         return "test-images";
@@ -1,5 +1,7 @@
 package org.example.carrental.controller;
 
+import org.example.carrental.dto.CursorPage;
+import org.example.carrental.dto.SessionUser;
 import org.example.carrental.entity.Car;
 import org.example.carrental.entity.Rental;
 import org.example.carrental.entity.User;
@@ -35,48 +37,53 @@ public class ManagerController {
     // Главная страница менеджера - его автомобили и аренды
     @GetMapping("/dashboard")
     public String managerDashboard(HttpSession session, Model model) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
         }
 
         // Автомобили менеджера
-        List<Car> myCars = carService.getCarsByManager(currentUser);
+        List<Car> myCars = carService.getCarsByManagerId(currentUser.getId());
 
-        // Аренды для автомобилей менеджера
-        List<Rental> pendingRentals = rentalService.getPendingRentalsByManager(currentUser.getId());
-        List<Rental> activeRentals = rentalService.getActiveRentalsByManager(currentUser.getId());
+        // Аренды для автомобилей менеджера (одним запросом)
+        RentalService.ManagerRentalBoard board = rentalService.getManagerRentalBoard(currentUser.getId());
 
         model.addAttribute("currentUser", currentUser);
         model.addAttribute("cars", myCars);
-        model.addAttribute("pendingRentals", pendingRentals);
-        model.addAttribute("activeRentals", activeRentals);
-        model.addAttribute("pendingCount", pendingRentals.size());
-        model.addAttribute("activeCount", activeRentals.size());
+        model.addAttribute("pendingRentals", board.pendingRentals);
+        model.addAttribute("activeRentals", board.activeRentals);
+        // Счетчики - из статистики менеджера (без повторного чтения аренд)
+        RentalService.ManagerRentalStats stats = rentalService.getManagerRentalStats(currentUser.getId());
+        model.addAttribute("stats", stats);
+        model.addAttribute("pendingCount", stats.pendingCount);
+        model.addAttribute("activeCount", stats.activeCount);
 
         return "manager-dashboard";
     }
 
     // Страница управления арендами
     @GetMapping("/rentals")
-    public String managerRentalsPage(HttpSession session, Model model) {
-        User currentUser = (User) session.getAttribute("user");
+    public String managerRentalsPage(@RequestParam(required = false) String after,
+                                     @RequestParam(required = false) Integer size,
+                                     HttpSession session, Model model) {
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
         }
 
-        List<Rental> pendingRentals = rentalService.getPendingRentalsByManager(currentUser.getId());
-        List<Rental> activeRentals = rentalService.getActiveRentalsByManager(currentUser.getId());
-        List<Rental> allRentals = rentalService.getAllRentalsByManager(currentUser.getId());
+        // Ожидающие и активные аренды - одним запросом, все аренды - постранично
+        RentalService.ManagerRentalBoard board = rentalService.getManagerRentalBoard(currentUser.getId());
+        CursorPage<Rental> allRentals = rentalService.getRentalsByManagerPage(currentUser.getId(), after, size);
 
         model.addAttribute("currentUser", currentUser);
-        model.addAttribute("pendingRentals", pendingRentals);
-        model.addAttribute("activeRentals", activeRentals);
-        model.addAttribute("allRentals", allRentals);
+        model.addAttribute("pendingRentals", board.pendingRentals);
+        model.addAttribute("activeRentals", board.activeRentals);
+        model.addAttribute("allRentals", allRentals.getItems());
+        model.addAttribute("nextCursor", allRentals.getNextCursor());
 
-        return "manager-rentals";
+        return "manager-rental";
     }
 
     // Одобрение аренды
@@ -84,7 +91,7 @@ public class ManagerController {
     public String approveRental(@PathVariable Long rentalId,
                                 HttpSession session,
                                 RedirectAttributes redirectAttributes) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
@@ -107,7 +114,7 @@ public class ManagerController {
                                @RequestParam(required = false) String reason,
                                HttpSession session,
                                RedirectAttributes redirectAttributes) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
@@ -129,7 +136,7 @@ public class ManagerController {
     public String completeRental(@PathVariable Long rentalId,
                                  HttpSession session,
                                  RedirectAttributes redirectAttributes) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
@@ -151,7 +158,7 @@ public class ManagerController {
     public String rentalDetails(@PathVariable Long rentalId,
                                 HttpSession session,
                                 Model model) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
@@ -176,13 +183,13 @@ public class ManagerController {
     // Остальные методы для управления автомобилями (оставляем без изменений)
     @GetMapping("/cars")
     public String managerCarsPage(HttpSession session, Model model) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
         }
 
-        List<Car> myCars = carService.getCarsByManager(currentUser);
+        List<Car> myCars = carService.getCarsByManagerId(currentUser.getId());
         long availableCount = myCars.stream().filter(Car::getAvailable).count();
         long occupiedCount = myCars.stream().filter(c -> !c.getAvailable()).count();
 
@@ -197,7 +204,7 @@ public class ManagerController {
 
     @GetMapping("/cars/add")
     public String addCarForm(HttpSession session, Model model) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
@@ -210,7 +217,7 @@ public class ManagerController {
 
     @GetMapping("/cars/upload-photo/{id}")
     public String uploadPhotoForm(@PathVariable Long id, HttpSession session, Model model) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
@@ -241,7 +248,7 @@ public class ManagerController {
                          HttpSession session,
                          RedirectAttributes redirectAttributes) {
 
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
         if (currentUser == null || !currentUser.isManager()) {
             return "redirect:/login";
         }
@@ -278,8 +285,9 @@ public class ManagerController {
                 car.setImageUrl("/images/cars/default-car.jpg");
             }
 
-            car.setManager(currentUser);
-            Car savedCar = carService.addCar(car, currentUser);
+            User manager = userService.getUserById(currentUser.getId());
+            car.setManager(manager);
+            Car savedCar = carService.addCar(car, manager);
             redirectAttributes.addFlashAttribute("success", "Автомобиль успешно добавлен!");
             return "redirect:/manager/cars";
 
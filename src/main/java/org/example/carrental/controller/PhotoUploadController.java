@@ -1,7 +1,7 @@
 package org.example.carrental.controller;
 
 import org.example.carrental.entity.Car;
-import org.example.carrental.entity.User;
+import org.example.carrental.dto.SessionUser;
 import org.example.carrental.service.CarService;
 import org.example.carrental.service.FileStorageService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -27,7 +27,7 @@ public class PhotoUploadController {
     public String uploadPhotoForm(@PathVariable Long carId,
                                   HttpSession session,
                                   Model model) {
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         if (currentUser == null || (!currentUser.isManager() && !currentUser.isAdmin())) {
             return "redirect:/login";
@@ -46,7 +46,7 @@ public class PhotoUploadController {
                               HttpSession session,
                               RedirectAttributes redirectAttributes) {
 
-        User currentUser = (User) session.getAttribute("user");
+        SessionUser currentUser = (SessionUser) session.getAttribute("user");
 
         try {
             if (currentUser == null || (!currentUser.isManager() && !currentUser.isAdmin())) {
@@ -1,12 +1,13 @@
 package org.example.carrental.controller;
 
 import org.example.carrental.dto.RentalRequest;
+import org.example.carrental.dto.SessionUser;
 import org.example.carrental.entity.Car;
 import org.example.carrental.entity.Rental;
-import org.example.carrental.entity.User;
 import org.example.carrental.service.CarService;
 import org.example.carrental.service.RentalService;
-import org.example.carrental.service.UserService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -20,15 +21,14 @@ import java.time.LocalDateTime;
 @RequestMapping("/rentals")
 public class RentalController {
 
+    private static final Logger log = LoggerFactory.getLogger(RentalController.class);
+
     @Autowired
     private RentalService rentalService;
 
     @Autowired
     private CarService carService;
 
-    @Autowired
-    private UserService userService;
-
     // ЕДИНСТВЕННЫЙ метод для страницы бронирования
     @GetMapping("/book/{carId}")
     public String bookCarPage(@PathVariable Long carId,
@@ -36,16 +36,12 @@ public class RentalController {
                               Model model,
                               @RequestParam(value = "error", required = false) String error) {
         try {
-            System.out.println("=== DEBUG БРОНИРОВАНИЕ ===");
-            System.out.println("1. Car ID: " + carId);
-
             // Получаем пользователя из сессии
-            User user = (User) session.getAttribute("user");
-            System.out.println("2. User from session: " + (user != null ? user.getEmail() : "null"));
+            SessionUser user = (SessionUser) session.getAttribute("user");
 
             // Проверяем аутентификацию
             if (user == null) {
-                System.out.println("3. User not authenticated - redirecting to login");
+                log.atDebug().addKeyValue("carId", carId).log("Бронирование без входа, переход на страницу входа");
                 return "redirect:/login?booking=true&carId=" + carId;
             }
 
@@ -54,15 +50,15 @@ public class RentalController {
             if (car == null) {
                 return "redirect:/cars?error=Car+not+found";
             }
-            System.out.println("4. Car found: " + car.getBrand() + " " + car.getModel());
-
-            // Шаг 2: Обновляем данные пользователя из базы
-            User currentUser = userService.findByEmail(user.getEmail());
-            System.out.println("5. User found: " + currentUser.getFullName() + " (Role: " + currentUser.getRole() + ")");
+            log.atDebug()
+                    .addKeyValue("carId", carId)
+                    .addKeyValue("userId", user.getId())
+                    .addKeyValue("role", user.getRole())
+                    .log("Страница бронирования");
 
-            // Шаг 3: Добавляем в модель
+            // Шаг 2: Добавляем в модель
             model.addAttribute("car", car);
-            model.addAttribute("user", currentUser);
+            model.addAttribute("user", user);
             model.addAttribute("rentalRequest", new RentalRequest());
 
             // Добавляем ошибку, если есть (из параметра или flash атрибута)
@@ -70,13 +66,13 @@ public class RentalController {
                 model.addAttribute("error", error);
             }
 
-            System.out.println("6. SUCCESS - Redirecting to book-car.html");
             return "book-car";
 
         } catch (Exception e) {
-            System.out.println("=== DEBUG ERROR ===");
-            System.out.println("Error message: " + e.getMessage());
-            e.printStackTrace();
+            log.atWarn()
+                    .addKeyValue("carId", carId)
+                    .setCause(e)
+                    .log("Ошибка открытия страницы бронирования");
             return "redirect:/cars?error=Booking+error";
         }
     }
@@ -88,17 +84,15 @@ public class RentalController {
                           Model model) {
         try {
             // Получаем пользователя из сессии
-            User user = (User) session.getAttribute("user");
+            SessionUser user = (SessionUser) session.getAttribute("user");
             if (user == null) {
                 return "redirect:/login?booking=true&carId=" + request.getCarId();
             }
 
-            // Обновляем данные пользователя из базы
-            User currentUser = userService.findByEmail(user.getEmail());
 
             Rental rental = rentalService.createRentalRequest(
                     request.getCarId(),
-                    currentUser.getId(),
+                    user.getId(),
                     request.getStartDate(),
                     request.getEndDate()
             );
@@ -117,17 +111,15 @@ public class RentalController {
                                      Model model) {
         try {
             // Получаем пользователя из сессии
-            User user = (User) session.getAttribute("user");
+            SessionUser user = (SessionUser) session.getAttribute("user");
             if (user == null) {
                 return "redirect:/login?booking=true&carId=" + request.getCarId();
             }
 
-            // Обновляем данные пользователя из базы
-            User currentUser = userService.findByEmail(user.getEmail());
 
             Rental rental = rentalService.createRentalRequest(
                     request.getCarId(),
-                    currentUser.getId(),
+                    user.getId(),
                     request.getStartDate(),
                     request.getEndDate()
             );
@@ -136,13 +128,12 @@ public class RentalController {
 
         } catch (Exception e) {
             // Вместо редиректа возвращаем ту же страницу с ошибкой
-            User user = (User) session.getAttribute("user");
+            SessionUser user = (SessionUser) session.getAttribute("user");
             if (user != null) {
-                User currentUser = userService.findByEmail(user.getEmail());
                 Car car = carService.getCarById(request.getCarId());
 
                 model.addAttribute("car", car);
-                model.addAttribute("user", currentUser);
+                model.addAttribute("user", user);
                 model.addAttribute("rentalRequest", request); // Сохраняем введенные данные
                 model.addAttribute("error", e.getMessage()); // Русский текст ошибки
             }
@@ -158,17 +149,15 @@ public class RentalController {
                                         RedirectAttributes redirectAttributes) {
         try {
             // Получаем пользователя из сессии
-            User user = (User) session.getAttribute("user");
+            SessionUser user = (SessionUser) session.getAttribute("user");
             if (user == null) {
                 return "redirect:/login?booking=true&carId=" + request.getCarId();
             }
 
-            // Обновляем данные пользователя из базы
-            User currentUser = userService.findByEmail(user.getEmail());
 
             Rental rental = rentalService.createRentalRequest(
                     request.getCarId(),
-                    currentUser.getId(),
+                    user.getId(),
                     request.getStartDate(),
                     request.getEndDate()
             );
@@ -189,15 +178,14 @@ public class RentalController {
                                    HttpSession session,
                                    Model model) {
         try {
-            User user = (User) session.getAttribute("user");
+            SessionUser user = (SessionUser) session.getAttribute("user");
             if (user == null) {
                 return "redirect:/login";
             }
 
             Rental rental = rentalService.getRentalById(rentalId);
-            User currentUser = userService.findByEmail(user.getEmail());
 
-            if (!rental.getUser().getId().equals(currentUser.getId())) {
+            if (!rental.getUser().getId().equals(user.getId())) {
                 model.addAttribute("error", "Доступ запрещен");
                 return "redirect:/cars";
             }
@@ -213,13 +201,12 @@ public class RentalController {
     @GetMapping("/my-rentals")
     public String myRentals(HttpSession session, Model model) {
         try {
-            User user = (User) session.getAttribute("user");
+            SessionUser user = (SessionUser) session.getAttribute("user");
             if (user == null) {
                 return "redirect:/login";
             }
 
-            User currentUser = userService.findByEmail(user.getEmail());
-            var rentals = rentalService.getUserRentals(currentUser.getId());
+            var rentals = rentalService.getUserRentals(user.getId());
 
             model.addAttribute("rentals", rentals);
             return "my-rentals";
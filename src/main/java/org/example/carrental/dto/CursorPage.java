@@ -0,0 +1,39 @@
+package org.example.carrental.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.function.Function;
+
+// Страница списка с курсором (keyset): следующая страница запрашивается
+// по значению nextCursor, а не по номеру страницы. nextCursor = null - это последняя страница.
+@Data
+public class CursorPage<T> {
+
+    public static final int DEFAULT_SIZE = 50;
+    public static final int MAX_SIZE = 500;
+
+    private final List<T> items;
+    private final String nextCursor;
+
+    public boolean isHasNext() {
+        return nextCursor != null;
+    }
+
+    // Размер страницы из параметра запроса: по умолчанию DEFAULT_SIZE, не больше MAX_SIZE
+    public static int pageSize(Integer size) {
+        if (size == null || size <= 0) {
+            return DEFAULT_SIZE;
+        }
+        return Math.min(size, MAX_SIZE);
+    }
+
+    // fetched - результат запроса с лимитом size + 1: лишняя строка означает, что есть следующая страница
+    public static <T> CursorPage<T> of(List<T> fetched, int size, Function<T, String> cursorOf) {
+        if (fetched.size() <= size) {
+            return new CursorPage<>(fetched, null);
+        }
+        List<T> items = fetched.subList(0, size);
+        return new CursorPage<>(items, cursorOf.apply(items.get(size - 1)));
+    }
+}
@@ -0,0 +1,37 @@
+package org.example.carrental.dto;
+
+import lombok.Value;
+import org.example.carrental.entity.User;
+import org.example.carrental.entity.UserRole;
+
+import java.io.Serializable;
+
+// Пользователь в HTTP-сессии вместо сущности: id и роль для проверки прав, имя для шапки страниц.
+// Неизменяемый снимок; version - номер изменения пользователя (UserVersionRegistry) на момент снимка,
+// при расхождении снимок заменяется свежим (SessionUserInterceptor)
+@Value
+public class SessionUser implements Serializable {
+    Long id;
+    String email;
+    String fullName;
+    UserRole role;
+    boolean approved;
+    long version;
+
+    public static SessionUser of(User user, long version) {
+        return new SessionUser(user.getId(), user.getEmail(), user.getFullName(), user.getRole(),
+                user.isApproved(), version);
+    }
+
+    public boolean isAdmin() {
+        return UserRole.ADMIN.equals(role);
+    }
+
+    public boolean isManager() {
+        return UserRole.MANAGER.equals(role);
+    }
+
+    public boolean isClient() {
+        return UserRole.CLIENT.equals(role);
+    }
+}
@@ -5,16 +5,29 @@ import lombok.NoArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 @Entity
-@Table(name = "cars")
+// Автомобили менеджера - с них начинаются все выборки аренд менеджера
+@Table(name = "cars", indexes = @Index(name = "idx_cars_manager", columnList = "manager_id"))
+// Автомобиль вместе с менеджером (для REST, где менеджер сериализуется в JSON)
+@NamedEntityGraph(name = "car-with-manager", attributeNodes = @NamedAttributeNode("manager"))
+// Кэш второго уровня: изменения через Hibernate сразу обновляют кэш (READ_WRITE)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "car")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 
 public class Car {
+    // Id из последовательности с шагом 50: Hibernate выдает id без обращения к базе
+    // и может отправлять вставки пакетами (с IDENTITY пакетная вставка отключается)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cars_seq")
+    @SequenceGenerator(name = "cars_seq", sequenceName = "cars_seq", allocationSize = 50)
     private Long id;
 
     @Column(nullable = false, length = 50)
@@ -59,11 +72,24 @@ public class Car {
     @Column(name = "image_url")
     private String imageUrl;        // URL фотографии автомобиля
 
+    // Ширины готовых уменьшенных копий фото через запятую ("320,640,1280"), см. ImageVariants;
+    // null - копии еще не делались, "" - копий нет (используется исходное фото)
+    @Column(name = "image_variants", length = 100)
+    private String imageVariants;
+
     @Column(name = "description", length = 1000)
     private String description;     // Описание автомобиля
 
-    @ManyToOne
+    // Номер версии для оптимистической блокировки: сохранение устаревшей копии автомобиля
+    // отклоняется (OptimisticRetry в сервисах перечитывает автомобиль и повторяет изменение)
+    @Version
+    private Long version;
+
+    // Загружается только там, где нужен (граф car-with-manager)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "manager_id")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private User manager;
 
     // Конструктор для удобного создания
@@ -83,4 +109,41 @@ public class Car {
     public String getFullName() {
         return brand + " " + model + " (" + year + ")";
     }
+
+    // Фото для показа в ширину width: самая маленькая копия не уже width, иначе исходное фото
+    public String imageUrlFor(int width) {
+        if (imageVariants == null || imageVariants.isEmpty()) {
+            return imageUrl;
+        }
+        for (String variant : imageVariants.split(",")) {
+            int variantWidth = Integer.parseInt(variant);
+            if (variantWidth >= width) {
+                return imageVariantUrl(imageUrl, variantWidth);
+            }
+        }
+        return imageUrl;
+    }
+
+    // Копия шириной width для фото /uploads/images/cars/<имя>.<ext> - /uploads/images/cars/<имя>-<width>w.jpg
+    public static String imageVariantUrl(String imageUrl, int width) {
+        int dot = imageUrl.lastIndexOf('.');
+        String base = dot > imageUrl.lastIndexOf('/') ? imageUrl.substring(0, dot) : imageUrl;
+        return base + "-" + width + "w.jpg";
+    }
+
+    // Атрибут srcset для <img>: браузер сам выбирает копию под размер экрана; null - копий нет
+    public String getImageSrcset() {
+        if (imageVariants == null || imageVariants.isEmpty()) {
+            return null;
+        }
+        StringBuilder srcset = new StringBuilder();
+        for (String variant : imageVariants.split(",")) {
+            if (!srcset.isEmpty()) {
+                srcset.append(", ");
+            }
+            srcset.append(imageVariantUrl(imageUrl, Integer.parseInt(variant))).append(' ')
+                    .append(variant).append('w');
+        }
+        return srcset.toString();
+    }
 }
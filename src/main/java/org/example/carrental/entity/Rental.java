@@ -2,12 +2,30 @@ package org.example.carrental.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 import java.time.LocalDateTime;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "rentals")
+// Индексы под запросы RentalRepository (проверяются в QueryPlanTest):
+// занятость и наложение аренд автомобиля - по car_id, статусам и датам; выборки по статусу - по status и end_date;
+// аренды за период - по датам; аренды клиента - по user_id (PostgreSQL, в отличие от H2, сам не индексирует внешние ключи)
+@Table(name = "rentals", indexes = {
+        @Index(name = "idx_rentals_car_status_dates", columnList = "car_id, status, start_date, end_date"),
+        @Index(name = "idx_rentals_status_end_date", columnList = "status, end_date"),
+        @Index(name = "idx_rentals_dates", columnList = "start_date, end_date"),
+        @Index(name = "idx_rentals_user", columnList = "user_id")
+})
+// Графы загрузки: что подтягивать вместе с арендой для конкретной страницы
+@NamedEntityGraphs({
+        @NamedEntityGraph(name = "rental-with-car", attributeNodes = @NamedAttributeNode("car")),
+        @NamedEntityGraph(name = "rental-with-car-and-user", attributeNodes = {
+                @NamedAttributeNode("car"),
+                @NamedAttributeNode("user")
+        })
+})
 @Data
 @NoArgsConstructor
 public class Rental {
@@ -17,13 +35,17 @@ public class Rental {
     private Long id;
 
     // Кто арендует
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private User user;
 
     // Какой автомобиль
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "car_id", nullable = false)
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
     private Car car;
 
     // Даты аренды
@@ -72,6 +94,10 @@ public class Rental {
     @Column(name = "manager_notes", length = 1000)
     private String managerNotes;
 
+    // Номер версии для оптимистической блокировки (см. Car.version)
+    @Version
+    private Long version;
+
     // Простой конструктор
     public Rental(User user, Car car, LocalDateTime startDate, LocalDateTime endDate, BigDecimal totalPrice) {
         this.user = user;
@@ -1,13 +1,20 @@
 package org.example.carrental.repository;
 
 import org.example.carrental.entity.Car;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.repository.query.Param;
 import org.example.carrental.entity.User;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface CarRepository extends JpaRepository<Car, Long> {
 
@@ -17,20 +24,54 @@ public interface CarRepository extends JpaRepository<Car, Long> {
     List<Car> findByAvailableTrue();
 
     // 2. Найти автомобили по марке
+    @EntityGraph("car-with-manager")
     List<Car> findByBrand(String brand);
 
     // 3. Найти автомобили по марке и модели
     List<Car> findByBrandAndModel(String brand, String model);
 
     // 4. Найти автомобили в ценовом диапазоне
+    @EntityGraph("car-with-manager")
     List<Car> findByPricePerDayBetween(Double minPrice, Double maxPrice);
 
     // 5. Найти автомобиль по VIN
     Optional<Car> findByVin(String vin);
 
+    // VIN из списка, которые уже есть в базе (проверка уникальности для пачки автомобилей)
+    @Query("SELECT c.vin FROM Car c WHERE c.vin IN :vins")
+    List<String> findExistingVins(@Param("vins") Collection<String> vins);
+
+    // Постраничная выборка по id (keyset): автомобили с id больше курсора
+    @EntityGraph("car-with-manager")
+    List<Car> findByIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+    @EntityGraph("car-with-manager")
+    List<Car> findByAvailableTrueAndIdGreaterThanOrderByIdAsc(Long afterId, Limit limit);
+
+    // Автомобиль/автомобили вместе с менеджером (для ответов REST)
+    @EntityGraph("car-with-manager")
+    Optional<Car> findWithManagerById(Long id);
+    @EntityGraph("car-with-manager")
+    List<Car> findWithManagerByIdIn(Collection<Long> ids);
+
+    long countByAvailableTrue();
+
+    List<Car> findByImageUrl(String imageUrl);
+
+    // Загруженные фото без уменьшенных копий (для фонового дозаполнения), по id после курсора
+    @Query("SELECT c FROM Car c WHERE c.id > :afterId AND c.imageVariants IS NULL"
+            + " AND c.imageUrl LIKE '/uploads/images/cars/%' ORDER BY c.id")
+    List<Car> findPhotosWithoutVariants(@Param("afterId") Long afterId, Limit limit);
+
+    // Все автомобили потоком - строки читаются из курсора JDBC по мере обработки
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "200"))
+    @Query("SELECT c FROM Car c LEFT JOIN FETCH c.manager ORDER BY c.id")
+    Stream<Car> streamAllOrderById();
+
     // Методы для менеджеров (по владельцу)
     List<Car> findByManager(User manager);
-    List<Car> findByManagerId(Long managerId);
+    // Явный запрос: производный findByManagerId соединяет users через LEFT JOIN, и H2 начинает с перебора cars
+    @Query("SELECT c FROM Car c WHERE c.manager.id = :managerId")
+    List<Car> findByManagerId(@Param("managerId") Long managerId);
 
     // Поиск доступных машин по марке и цене
     List<Car> findByBrandAndAvailableTrueAndPricePerDayLessThanEqual(String brand, Double maxPrice);
@@ -38,25 +79,16 @@ public interface CarRepository extends JpaRepository<Car, Long> {
     // Кастомный запрос: машины определенного менеджера
     @Query("SELECT c FROM Car c WHERE c.manager.id = :managerId AND c.available = true")
     List<Car> findAvailableCarsByManager(@Param("managerId") Long managerId);
-    @Query("SELECT c FROM Car c WHERE " +
-            "(:brand IS NULL OR :brand = '' OR c.brand LIKE %:brand%) AND " +
-            "(:minPrice IS NULL OR c.pricePerDay >= :minPrice) AND " +
-            "(:maxPrice IS NULL OR c.pricePerDay <= :maxPrice) AND " +
-            "(:bodyType IS NULL OR :bodyType = '' OR c.bodyType = :bodyType) AND " +
-            "(:fuelType IS NULL OR :fuelType = '' OR c.fuelType = :fuelType) AND " +
-            "(:transmission IS NULL OR :transmission = '' OR c.transmission = :transmission) AND " +
-            "(:minYear IS NULL OR c.year >= :minYear) AND " +
-            "(:maxYear IS NULL OR c.year <= :maxYear) AND " +
-            "(:available IS NULL OR c.available = :available)")
-    List<Car> findWithFilters(@Param("brand") String brand,
-                              @Param("minPrice") Double minPrice,
-                              @Param("maxPrice") Double maxPrice,
-                              @Param("bodyType") String bodyType,
-                              @Param("fuelType") String fuelType,
-                              @Param("transmission") String transmission,
-                              @Param("minYear") Integer minYear,
-                              @Param("maxYear") Integer maxYear,
-                              @Param("available") Boolean available);
+    // Количество автомобилей по каждой комбинации значений фильтров (один проход по таблице)
+    @Query("SELECT c.brand, c.bodyType, c.fuelType, c.transmission, c.available, COUNT(c) FROM Car c " +
+            "GROUP BY c.brand, c.bodyType, c.fuelType, c.transmission, c.available")
+    List<Object[]> countFacetCombinations();
+
+    // Атрибуты всех автомобилей для поискового индекса (без загрузки сущностей)
+    @Query("SELECT c.id, c.brand, c.bodyType, c.fuelType, c.transmission, c.available, c.pricePerDay, c.year, " +
+            "c.version FROM Car c")
+    List<Object[]> findSearchAttributes();
+
     // Кастомный запрос: поиск по типу кузова и топливу
     @Query("SELECT c FROM Car c WHERE c.bodyType = :bodyType AND c.fuelType = :fuelType AND c.available = true")
     List<Car> findAvailableCarsByBodyTypeAndFuelType(@Param("bodyType") String bodyType,
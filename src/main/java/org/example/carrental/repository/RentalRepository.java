@@ -4,15 +4,19 @@ import org.example.carrental.entity.Rental;
 import org.example.carrental.entity.RentalStatus;
 import org.example.carrental.entity.User;
 import org.example.carrental.entity.Car;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 public interface RentalRepository extends JpaRepository<Rental, Long> {
 
     // === СУЩЕСТВУЮЩИЕ МЕТОДЫ ===
+    @EntityGraph("rental-with-car")
     List<Rental> findByUser(User user);
     List<Rental> findByCar(Car car);
     List<Rental> findByStatus(RentalStatus status);
@@ -33,15 +37,44 @@ public interface RentalRepository extends JpaRepository<Rental, Long> {
     @Query("SELECT r FROM Rental r WHERE r.status = 'ACTIVE' AND r.endDate >= :now")
     List<Rental> findCurrentlyActiveRentals(@Param("now") LocalDateTime now);
 
+    // Аренда вместе с автомобилем и клиентом (страницы аренды, смена статуса)
+    @EntityGraph("rental-with-car-and-user")
+    Optional<Rental> findWithCarAndUserById(Long id);
+
     // === НОВЫЕ МЕТОДЫ ДЛЯ МЕНЕДЖЕРА ===
 
     // Найти все аренды для автомобилей менеджера
-    List<Rental> findByCar_Manager(User manager);
+    // (явный запрос: в производном cars и users соединяются через LEFT JOIN, и H2 перебирает все аренды)
+    @EntityGraph("rental-with-car-and-user")
+    @Query("SELECT r FROM Rental r WHERE r.car.manager = :manager")
+    List<Rental> findByCar_Manager(@Param("manager") User manager);
+
+    // Аренды менеджера в заданных статусах вместе с автомобилем и клиентом - одним запросом
+    @Query("SELECT r FROM Rental r JOIN FETCH r.car c JOIN FETCH r.user " +
+            "WHERE c.manager.id = :managerId AND r.status IN :statuses ORDER BY r.startDate, r.id")
+    List<Rental> findBoardByManager(@Param("managerId") Long managerId,
+                                    @Param("statuses") List<RentalStatus> statuses);
+
+    // Постраничная выборка аренд менеджера (keyset по startDate, id), автомобиль и клиент - в том же запросе
+    @Query("SELECT r FROM Rental r JOIN FETCH r.car c JOIN FETCH r.user " +
+            "WHERE c.manager.id = :managerId ORDER BY r.startDate, r.id")
+    List<Rental> findFirstPageByManager(@Param("managerId") Long managerId, Limit limit);
+
+    @Query("SELECT r FROM Rental r JOIN FETCH r.car c JOIN FETCH r.user " +
+            "WHERE c.manager.id = :managerId AND " +
+            "(r.startDate > :afterStart OR (r.startDate = :afterStart AND r.id > :afterId)) " +
+            "ORDER BY r.startDate, r.id")
+    List<Rental> findPageByManagerAfter(@Param("managerId") Long managerId,
+                                        @Param("afterStart") LocalDateTime afterStart,
+                                        @Param("afterId") Long afterId,
+                                        Limit limit);
 
     // Найти аренды по менеджеру и статусу
+    @EntityGraph("rental-with-car-and-user")
     List<Rental> findByCar_ManagerAndStatus(User manager, RentalStatus status);
 
     // Найти аренды по менеджеру и списку статусов
+    @EntityGraph("rental-with-car-and-user")
     List<Rental> findByCar_ManagerAndStatusIn(User manager, List<RentalStatus> statuses);
 
     // Проверить наложение аренд с исключением текущей аренды
@@ -58,7 +91,19 @@ public interface RentalRepository extends JpaRepository<Rental, Long> {
                                     @Param("excludeRentalId") Long excludeRentalId,
                                     @Param("activeStatuses") List<RentalStatus> activeStatuses);
 
+    // Id автомобиля аренды без загрузки самой аренды
+    @Query("SELECT r.car.id FROM Rental r WHERE r.id = :rentalId")
+    Optional<Long> findCarIdByRentalId(@Param("rentalId") Long rentalId);
+
+    // Периоды аренд автомобиля в заданных статусах (id, startDate, endDate) - для индекса занятости
+    @Query("SELECT r.id, r.startDate, r.endDate FROM Rental r WHERE " +
+            "r.car.id = :carId AND " +
+            "r.status IN :statuses")
+    List<Object[]> findRentalPeriodsByCarAndStatusIn(@Param("carId") Long carId,
+                                                     @Param("statuses") List<RentalStatus> statuses);
+
     // Найти аренды по менеджеру и периоду времени
+    @EntityGraph("rental-with-car-and-user")
     @Query("SELECT r FROM Rental r WHERE " +
             "r.car.manager = :manager AND " +
             "((r.startDate BETWEEN :startDate AND :endDate) OR " +
@@ -68,11 +113,13 @@ public interface RentalRepository extends JpaRepository<Rental, Long> {
                                         @Param("startDate") LocalDateTime startDate,
                                         @Param("endDate") LocalDateTime endDate);
 
-    // Статистика по статусам для менеджера
-    @Query("SELECT r.status, COUNT(r) FROM Rental r WHERE r.car.manager = :manager GROUP BY r.status")
-    List<Object[]> getRentalStatsByManager(@Param("manager") User manager);
+    // Статистика по статусам для менеджера: статус, количество, сумма фактической стоимости
+    @Query("SELECT r.status, COUNT(r), COALESCE(SUM(r.actualPrice), 0) FROM Rental r " +
+            "WHERE r.car.manager.id = :managerId GROUP BY r.status")
+    List<Object[]> getRentalStatsByManager(@Param("managerId") Long managerId);
 
     // Найти ближайшие аренды для менеджера
+    @EntityGraph("rental-with-car-and-user")
     @Query("SELECT r FROM Rental r WHERE " +
             "r.car.manager = :manager AND " +
             "r.startDate >= :startDate AND " +
@@ -83,6 +130,7 @@ public interface RentalRepository extends JpaRepository<Rental, Long> {
                                                @Param("endDate") LocalDateTime endDate);
 
     // Найти просроченные аренды для менеджера
+    @EntityGraph("rental-with-car-and-user")
     @Query("SELECT r FROM Rental r WHERE " +
             "r.car.manager = :manager AND " +
             "r.status = 'ACTIVE' AND " +
@@ -91,6 +139,7 @@ public interface RentalRepository extends JpaRepository<Rental, Long> {
                                               @Param("now") LocalDateTime now);
 
     // Найти аренды требующие внимания (ожидающие подтверждения + активные сегодня)
+    @EntityGraph("rental-with-car-and-user")
     @Query("SELECT r FROM Rental r WHERE " +
             "r.car.manager = :manager AND " +
             "(r.status = 'PENDING' OR " +
@@ -107,6 +156,7 @@ public interface RentalRepository extends JpaRepository<Rental, Long> {
     Double getTotalRevenueByManager(@Param("manager") User manager);
 
     // Найти аренды по клиенту для менеджера
+    @EntityGraph("rental-with-car-and-user")
     @Query("SELECT r FROM Rental r WHERE " +
             "r.car.manager = :manager AND " +
             "r.user.id = :userId")
@@ -114,6 +164,7 @@ public interface RentalRepository extends JpaRepository<Rental, Long> {
                                       @Param("userId") Long userId);
 
     // Найти аренды по автомобилю для менеджера
+    @EntityGraph("rental-with-car-and-user")
     @Query("SELECT r FROM Rental r WHERE " +
             "r.car.manager = :manager AND " +
             "r.car.id = :carId")
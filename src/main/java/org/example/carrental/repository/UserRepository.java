@@ -2,13 +2,18 @@ package org.example.carrental.repository;
 
 import org.example.carrental.entity.User;
 import org.example.carrental.entity.UserRole;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.QueryHints;
 import java.util.List;
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Long> {
 
-    // Найти пользователя по email
+    // Найти пользователя по email (вызывается почти в каждом запросе - результат в кэше запросов,
+    // сбрасывается при любом изменении таблицы users)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"))
     Optional<User> findByEmail(String email);
 
     // Проверить существует ли пользователь с таким email
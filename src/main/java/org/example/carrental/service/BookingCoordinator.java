@@ -0,0 +1,39 @@
+package org.example.carrental.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+// Координатор бронирований: отдельная блокировка на каждый автомобиль.
+// Операции с одним автомобилем выполняются строго по очереди (проверка + запись),
+// операции с разными автомобилями друг друга не ждут. Таблицы в базе не блокируются.
+@Component
+public class BookingCoordinator {
+
+    // Сколько ждать освобождения автомобиля, прежде чем вернуть ошибку пользователю
+    private static final long LOCK_TIMEOUT_SECONDS = 10;
+
+    // carId -> блокировка автомобиля (количество автомобилей ограничено, поэтому не вычищаем)
+    private final ConcurrentHashMap<Long, ReentrantLock> carLocks = new ConcurrentHashMap<>();
+
+    public <T> T withCarLock(Long carId, Supplier<T> action) {
+        ReentrantLock lock = carLocks.computeIfAbsent(carId, id -> new ReentrantLock());
+        try {
+            if (!lock.tryLock(LOCK_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                throw new RuntimeException("Автомобиль сейчас бронируется другим пользователем, попробуйте еще раз");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Бронирование прервано", e);
+        }
+
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package org.example.carrental.service;
+
+import org.example.carrental.entity.Car;
+import org.example.carrental.repository.CarRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+// Значения фильтров каталога (марки, кузова, топливо, коробки) с количеством автомобилей.
+// Считается одним GROUP BY запросом, хранится в памяти и обновляется
+// по месту при добавлении/изменении автомобилей в CarService (beginChange/endChange вокруг сохранения).
+@Service
+public class CarFacetService {
+
+    public static final String BRANDS = "brands";
+    public static final String BODY_TYPES = "bodyTypes";
+    public static final String FUEL_TYPES = "fuelTypes";
+    public static final String TRANSMISSIONS = "transmissions";
+    public static final String AVAILABILITY = "available";
+
+    private final CarRepository carRepository;
+    private final PrimaryReads primaryReads;
+
+    // null - еще не загружено из базы
+    private volatile Map<String, Map<String, Long>> snapshot;
+
+    // Сохранения автомобилей, которые уже начались, но еще не учтены в счетчиках,
+    // и общее число учтенных изменений (под this)
+    private int changesInFlight;
+    private long changesApplied;
+
+    @Autowired
+    public CarFacetService(CarRepository carRepository, PrimaryReads primaryReads) {
+        this.carRepository = carRepository;
+        this.primaryReads = primaryReads;
+    }
+
+    // Значения для выпадающих списков (в алфавитном порядке)
+    public Map<String, List<String>> getFilterOptions() {
+        Map<String, Map<String, Long>> counts = getFacetCounts();
+        Map<String, List<String>> options = new HashMap<>();
+        options.put(BRANDS, new ArrayList<>(counts.get(BRANDS).keySet()));
+        options.put(BODY_TYPES, new ArrayList<>(counts.get(BODY_TYPES).keySet()));
+        options.put(FUEL_TYPES, new ArrayList<>(counts.get(FUEL_TYPES).keySet()));
+        options.put(TRANSMISSIONS, new ArrayList<>(counts.get(TRANSMISSIONS).keySet()));
+        return options;
+    }
+
+    // Количество автомобилей по каждому значению каждого фильтра
+    public Map<String, Map<String, Long>> getFacetCounts() {
+        Map<String, Map<String, Long>> current = snapshot;
+        return current != null ? current : load();
+    }
+
+    // Вызывается перед сохранением автомобиля
+    public synchronized void beginChange() {
+        changesInFlight++;
+    }
+
+    // Вызывается после сохранения автомобиля: before == null - автомобиль добавлен,
+    // after == null - сохранение не удалось
+    public synchronized void endChange(CarFacets before, CarFacets after) {
+        try {
+            Map<String, Map<String, Long>> current = snapshot;
+            if (current == null || after == null || after.equals(before)) {
+                // Не загружено - при загрузке будет прочитано актуальное состояние из базы
+                return;
+            }
+
+            Map<String, TreeMap<String, Long>> updated = mutableCopy(current);
+            if (before != null) {
+                before.apply(updated, -1);
+            }
+            after.apply(updated, 1);
+            snapshot = freeze(updated);
+        } finally {
+            changesInFlight--;
+            changesApplied++;
+        }
+    }
+
+    // Перечитать из базы при следующем обращении (после импорта, изменившего много автомобилей)
+    public synchronized void invalidate() {
+        snapshot = null;
+        changesApplied++;
+    }
+
+    private Map<String, Map<String, Long>> load() {
+        long appliedBefore;
+        synchronized (this) {
+            if (snapshot != null) {
+                return snapshot;
+            }
+            appliedBefore = changesInFlight == 0 ? changesApplied : -1;
+        }
+
+        Map<String, TreeMap<String, Long>> counts = mutableCopy(Collections.emptyMap());
+        for (Object[] row : primaryReads.load(carRepository::countFacetCombinations)) {
+            CarFacets facets = new CarFacets((String) row[0], (String) row[1], (String) row[2],
+                    (String) row[3], (Boolean) row[4]);
+            facets.apply(counts, (Long) row[5]);
+        }
+        Map<String, Map<String, Long>> loaded = freeze(counts);
+
+        // Если во время загрузки сохранялись автомобили, запрос мог увидеть изменение,
+        // которое потом будет прибавлено еще раз - такой снимок не кэшируем
+        synchronized (this) {
+            if (snapshot == null && appliedBefore == changesApplied && changesInFlight == 0) {
+                snapshot = loaded;
+            }
+        }
+        return loaded;
+    }
+
+    private static Map<String, TreeMap<String, Long>> mutableCopy(Map<String, Map<String, Long>> source) {
+        Map<String, TreeMap<String, Long>> copy = new HashMap<>();
+        for (String facet : List.of(BRANDS, BODY_TYPES, FUEL_TYPES, TRANSMISSIONS, AVAILABILITY)) {
+            copy.put(facet, new TreeMap<>(source.getOrDefault(facet, Collections.emptyMap())));
+        }
+        return copy;
+    }
+
+    private static Map<String, Map<String, Long>> freeze(Map<String, TreeMap<String, Long>> counts) {
+        Map<String, Map<String, Long>> frozen = new HashMap<>();
+        counts.forEach((facet, values) -> frozen.put(facet, Collections.unmodifiableMap(values)));
+        return Collections.unmodifiableMap(frozen);
+    }
+
+    // Значения фильтров одного автомобиля
+    public record CarFacets(String brand, String bodyType, String fuelType, String transmission, Boolean available) {
+
+        public static CarFacets of(Car car) {
+            return new CarFacets(car.getBrand(), car.getBodyType(), car.getFuelType(),
+                    car.getTransmission(), car.getAvailable());
+        }
+
+        private void apply(Map<String, TreeMap<String, Long>> counts, long delta) {
+            add(counts.get(BRANDS), brand, delta);
+            add(counts.get(BODY_TYPES), bodyType, delta);
+            add(counts.get(FUEL_TYPES), fuelType, delta);
+            add(counts.get(TRANSMISSIONS), transmission, delta);
+            add(counts.get(AVAILABILITY), available == null ? null : available.toString(), delta);
+        }
+
+        private static void add(TreeMap<String, Long> values, String value, long delta) {
+            if (value == null) {
+                return;
+            }
+            long count = values.getOrDefault(value, 0L) + delta;
+            if (count > 0) {
+                values.put(value, count);
+            } else {
+                values.remove(value);
+            }
+        }
+    }
+}
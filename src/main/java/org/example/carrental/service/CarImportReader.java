@@ -0,0 +1,188 @@
+package org.example.carrental.service;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.example.carrental.entity.Car;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Чтение автомобилей для импорта (CarService.importCars) потоком, без загрузки файла в память
+public final class CarImportReader {
+
+    // Колонки CSV: имя поля Car или колонки таблицы, регистр и "_" не важны (pricePerDay = price_per_day)
+    private static final Map<String, BiConsumer<Car, String>> COLUMNS = Map.ofEntries(
+            Map.entry("brand", Car::setBrand),
+            Map.entry("model", Car::setModel),
+            Map.entry("year", (car, value) -> car.setYear(parseInt(value))),
+            Map.entry("manufactureyear", (car, value) -> car.setYear(parseInt(value))),
+            Map.entry("priceperday", (car, value) -> car.setPricePerDay(parseDouble(value))),
+            Map.entry("vin", Car::setVin),
+            Map.entry("color", Car::setColor),
+            Map.entry("fueltype", Car::setFuelType),
+            Map.entry("transmission", Car::setTransmission),
+            Map.entry("transmissiontype", Car::setTransmission),
+            Map.entry("bodytype", Car::setBodyType),
+            Map.entry("horsepower", (car, value) -> car.setHorsePower(parseInt(value))),
+            Map.entry("mileage", (car, value) -> car.setMileage(parseInt(value))),
+            Map.entry("enginecapacity", (car, value) -> car.setEngineCapacity(parseDouble(value))),
+            Map.entry("imageurl", Car::setImageUrl),
+            Map.entry("description", Car::setDescription));
+
+    private CarImportReader() {
+    }
+
+    // CSV с заголовком; разделитель - запятая или точка с запятой (определяется по заголовку).
+    // Значения в кавычках могут содержать разделитель и "" (но не перевод строки).
+    // Ошибка в строке - InvalidRowException, после нее чтение можно продолжить.
+    public static Stream<Car> csv(Reader source) {
+        BufferedReader reader = source instanceof BufferedReader buffered ? buffered : new BufferedReader(source);
+        String header = readLine(reader);
+        if (header == null) {
+            return Stream.empty();
+        }
+        if (header.startsWith("\uFEFF")) {
+            header = header.substring(1);
+        }
+        char separator = header.indexOf(';') >= 0 && header.indexOf(',') < 0 ? ';' : ',';
+
+        List<BiConsumer<Car, String>> setters = new ArrayList<>();
+        for (String column : split(header, separator)) {
+            BiConsumer<Car, String> setter = COLUMNS.get(column.trim().replace("_", "").toLowerCase());
+            if (setter == null) {
+                throw new RuntimeException("Неизвестная колонка в CSV: " + column.trim());
+            }
+            setters.add(setter);
+        }
+
+        Iterator<Car> rows = new Iterator<>() {
+            private String line;
+            private int lineNumber = 1;
+
+            @Override
+            public boolean hasNext() {
+                while (line == null) {
+                    line = readLine(reader);
+                    if (line == null) {
+                        return false;
+                    }
+                    lineNumber++;
+                    if (line.isBlank()) {
+                        line = null;
+                    }
+                }
+                return true;
+            }
+
+            @Override
+            public Car next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String current = line;
+                line = null;
+
+                List<String> values = split(current, separator);
+                if (values.size() != setters.size()) {
+                    throw new InvalidRowException("Строка " + lineNumber + ": ожидалось колонок " + setters.size()
+                            + ", получено " + values.size());
+                }
+                Car car = new Car();
+                for (int i = 0; i < values.size(); i++) {
+                    String value = values.get(i).trim();
+                    try {
+                        setters.get(i).accept(car, value.isEmpty() ? null : value);
+                    } catch (NumberFormatException e) {
+                        throw new InvalidRowException("Строка " + lineNumber + ": некорректное число '" + value + "'");
+                    }
+                }
+                return car;
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(rows, Spliterator.ORDERED), false)
+                .onClose(() -> close(reader));
+    }
+
+    // JSON-массив автомобилей (или объекты подряд) - разбирается по одному объекту
+    public static Stream<Car> json(InputStream source, ObjectMapper objectMapper) {
+        try {
+            MappingIterator<Car> cars = objectMapper.readerFor(Car.class).readValues(source);
+            return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cars, Spliterator.ORDERED), false)
+                    .onClose(() -> close(cars));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static List<String> split(String line, char separator) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == separator) {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static Integer parseInt(String value) {
+        return value == null ? null : Integer.valueOf(value);
+    }
+
+    private static Double parseDouble(String value) {
+        return value == null ? null : Double.valueOf(value.replace(',', '.'));
+    }
+
+    private static String readLine(BufferedReader reader) {
+        try {
+            return reader.readLine();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void close(AutoCloseable resource) {
+        try {
+            resource.close();
+        } catch (Exception e) {
+            // Источник уже прочитан - ошибка закрытия не влияет на импорт
+        }
+    }
+
+    // Строку файла не удалось разобрать: она пропускается, импорт продолжается
+    public static class InvalidRowException extends RuntimeException {
+        public InvalidRowException(String message) {
+            super(message);
+        }
+    }
+}
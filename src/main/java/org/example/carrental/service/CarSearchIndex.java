@@ -0,0 +1,358 @@
+package org.example.carrental.service;
+
+import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.entity.Car;
+import org.example.carrental.repository.CarRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Поисковый индекс каталога в памяти.
+// Каждому автомобилю выделяется слот; для марки, кузова, топлива, коробки и доступности
+// хранятся битовые карты слотов, для цены и года - отсортированные массивы.
+// Запрос CarFilterDTO - пересечение битовых карт, в том же проходе считаются
+// количества по значениям каждого фильтра.
+@Component
+public class CarSearchIndex {
+
+    private final CarRepository carRepository;
+    private final PrimaryReads primaryReads;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Содержимое индекса (под lock); loaded = false - еще не загружено из базы
+    private boolean loaded;
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private Doc[] docs = new Doc[64];
+    private int slotCount;
+    private final BitSet live = new BitSet();
+    private final Map<String, BitSet> byBrand = new HashMap<>();
+    private final Map<String, BitSet> byBodyType = new HashMap<>();
+    private final Map<String, BitSet> byFuelType = new HashMap<>();
+    private final Map<String, BitSet> byTransmission = new HashMap<>();
+    private final Map<String, BitSet> byAvailability = new HashMap<>();
+    private final SortedColumn prices = new SortedColumn();
+    private final SortedColumn years = new SortedColumn();
+
+    @Autowired
+    public CarSearchIndex(CarRepository carRepository, PrimaryReads primaryReads) {
+        this.carRepository = carRepository;
+        this.primaryReads = primaryReads;
+    }
+
+    public SearchResult search(CarFilterDTO filters) {
+        ensureLoaded();
+        lock.readLock().lock();
+        try {
+            BitSet brand = brandMatches(normalize(filters.getBrand()));
+            BitSet bodyType = exact(byBodyType, normalize(filters.getBodyType()));
+            BitSet fuelType = exact(byFuelType, normalize(filters.getFuelType()));
+            BitSet transmission = exact(byTransmission, normalize(filters.getTransmission()));
+            BitSet available = filters.getAvailable() == null ? null
+                    : exact(byAvailability, filters.getAvailable().toString());
+            BitSet price = prices.range(filters.getMinPrice(), filters.getMaxPrice());
+            BitSet year = years.range(toDouble(filters.getMinYear()), toDouble(filters.getMaxYear()));
+
+            BitSet[] all = {brand, bodyType, fuelType, transmission, available, price, year};
+            BitSet matches = intersect(all, -1);
+
+            // Для каждого фильтра считаем без учета его собственного значения,
+            // чтобы в списке оставались альтернативы выбранному значению
+            Map<String, Map<String, Long>> facets = new HashMap<>();
+            facets.put(CarFacetService.BRANDS, count(byBrand, intersect(all, 0)));
+            facets.put(CarFacetService.BODY_TYPES, count(byBodyType, intersect(all, 1)));
+            facets.put(CarFacetService.FUEL_TYPES, count(byFuelType, intersect(all, 2)));
+            facets.put(CarFacetService.TRANSMISSIONS, count(byTransmission, intersect(all, 3)));
+            facets.put(CarFacetService.AVAILABILITY, count(byAvailability, intersect(all, 4)));
+
+            long[] ids = new long[matches.cardinality()];
+            int i = 0;
+            for (int slot = matches.nextSetBit(0); slot >= 0; slot = matches.nextSetBit(slot + 1)) {
+                ids[i++] = docs[slot].id;
+            }
+            Arrays.sort(ids);
+            return new SearchResult(Arrays.stream(ids).boxed().toList(), facets);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Добавить или обновить автомобиль после сохранения.
+    // Параллельные сохранения одного автомобиля могут прийти сюда в обратном порядке:
+    // копия с версией старше уже проиндексированной пропускается
+    public void upsert(Car car) {
+        lock.writeLock().lock();
+        try {
+            if (!loaded) {
+                // При загрузке будет прочитано актуальное состояние из базы
+                return;
+            }
+            Integer existing = slotById.get(car.getId());
+            if (existing != null && isOlder(car.getVersion(), docs[existing].version)) {
+                return;
+            }
+            index(new Doc(car.getId(), car.getVersion(), car.getBrand(), car.getBodyType(), car.getFuelType(),
+                    car.getTransmission(), car.getAvailable(), car.getPricePerDay(),
+                    car.getYear() == null ? null : car.getYear().doubleValue()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            loaded = false;
+            slotById.clear();
+            docs = new Doc[64];
+            slotCount = 0;
+            live.clear();
+            byBrand.clear();
+            byBodyType.clear();
+            byFuelType.clear();
+            byTransmission.clear();
+            byAvailability.clear();
+            prices.clear();
+            years.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void ensureLoaded() {
+        lock.readLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        lock.writeLock().lock();
+        try {
+            if (loaded) {
+                return;
+            }
+            for (Object[] row : primaryReads.load(carRepository::findSearchAttributes)) {
+                Integer year = (Integer) row[7];
+                index(new Doc((Long) row[0], (Long) row[8], (String) row[1], (String) row[2], (String) row[3],
+                        (String) row[4], (Boolean) row[5], (Double) row[6],
+                        year == null ? null : year.doubleValue()));
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void index(Doc doc) {
+        Integer existing = slotById.get(doc.id);
+        int slot;
+        if (existing != null) {
+            slot = existing;
+            unindex(slot, docs[slot]);
+        } else {
+            slot = slotCount++;
+            if (slot == docs.length) {
+                docs = Arrays.copyOf(docs, docs.length * 2);
+            }
+            slotById.put(doc.id, slot);
+        }
+
+        docs[slot] = doc;
+        live.set(slot);
+        bits(byBrand, doc.brand).set(slot);
+        bits(byBodyType, doc.bodyType).set(slot);
+        bits(byFuelType, doc.fuelType).set(slot);
+        bits(byTransmission, doc.transmission).set(slot);
+        bits(byAvailability, doc.available == null ? null : doc.available.toString()).set(slot);
+        prices.insert(doc.price, slot);
+        years.insert(doc.year, slot);
+    }
+
+    private void unindex(int slot, Doc doc) {
+        clear(byBrand, doc.brand, slot);
+        clear(byBodyType, doc.bodyType, slot);
+        clear(byFuelType, doc.fuelType, slot);
+        clear(byTransmission, doc.transmission, slot);
+        clear(byAvailability, doc.available == null ? null : doc.available.toString(), slot);
+        prices.remove(doc.price, slot);
+        years.remove(doc.year, slot);
+    }
+
+    // Поведение как у LIKE %brand%: объединяем все марки, содержащие подстроку
+    private BitSet brandMatches(String brand) {
+        if (brand == null) {
+            return null;
+        }
+        BitSet result = new BitSet();
+        byBrand.forEach((value, slots) -> {
+            if (value.contains(brand)) {
+                result.or(slots);
+            }
+        });
+        return result;
+    }
+
+    private static BitSet exact(Map<String, BitSet> values, String value) {
+        if (value == null) {
+            return null;
+        }
+        BitSet slots = values.get(value);
+        return slots == null ? new BitSet() : slots;
+    }
+
+    // Пересечение всех заданных фильтров, кроме фильтра с индексом skip
+    private BitSet intersect(BitSet[] filters, int skip) {
+        BitSet result = (BitSet) live.clone();
+        for (int i = 0; i < filters.length; i++) {
+            if (i != skip && filters[i] != null) {
+                result.and(filters[i]);
+            }
+        }
+        return result;
+    }
+
+    private static Map<String, Long> count(Map<String, BitSet> values, BitSet base) {
+        Map<String, Long> counts = new TreeMap<>();
+        values.forEach((value, slots) -> {
+            if (value == null) {
+                return;
+            }
+            BitSet hits = (BitSet) slots.clone();
+            hits.and(base);
+            if (!hits.isEmpty()) {
+                counts.put(value, (long) hits.cardinality());
+            }
+        });
+        return Collections.unmodifiableMap(counts);
+    }
+
+    private static BitSet bits(Map<String, BitSet> values, String value) {
+        return values.computeIfAbsent(value, v -> new BitSet());
+    }
+
+    private static void clear(Map<String, BitSet> values, String value, int slot) {
+        BitSet slots = values.get(value);
+        if (slots != null) {
+            slots.clear(slot);
+            if (slots.isEmpty()) {
+                values.remove(value);
+            }
+        }
+    }
+
+    private static String normalize(String value) {
+        return (value == null || value.trim().isEmpty()) ? null : value.trim();
+    }
+
+    private static Double toDouble(Integer value) {
+        return value == null ? null : value.doubleValue();
+    }
+
+    private static boolean isOlder(Long version, Long indexed) {
+        return version != null && indexed != null && version < indexed;
+    }
+
+    // Результат поиска: id автомобилей по возрастанию и количества по значениям фильтров
+    public record SearchResult(List<Long> carIds, Map<String, Map<String, Long>> facetCounts) {
+    }
+
+    private record Doc(Long id, Long version, String brand, String bodyType, String fuelType, String transmission,
+                       Boolean available, Double price, Double year) {
+    }
+
+    // Отсортированная по значению колонка (значение -> слот) для диапазонных фильтров
+    private static final class SortedColumn {
+        private double[] values = new double[64];
+        private int[] slots = new int[64];
+        private int size;
+
+        void insert(Double value, int slot) {
+            if (value == null) {
+                return;
+            }
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+                slots = Arrays.copyOf(slots, size * 2);
+            }
+            int position = lowerBound(value);
+            System.arraycopy(values, position, values, position + 1, size - position);
+            System.arraycopy(slots, position, slots, position + 1, size - position);
+            values[position] = value;
+            slots[position] = slot;
+            size++;
+        }
+
+        void remove(Double value, int slot) {
+            if (value == null) {
+                return;
+            }
+            for (int i = lowerBound(value); i < size && values[i] == value; i++) {
+                if (slots[i] == slot) {
+                    System.arraycopy(values, i + 1, values, i, size - i - 1);
+                    System.arraycopy(slots, i + 1, slots, i, size - i - 1);
+                    size--;
+                    return;
+                }
+            }
+        }
+
+        // Слоты со значением в [min, max]; null - фильтр не задан
+        BitSet range(Double min, Double max) {
+            if (min == null && max == null) {
+                return null;
+            }
+            int from = min == null ? 0 : lowerBound(min);
+            int to = max == null ? size : upperBound(max);
+            BitSet result = new BitSet();
+            for (int i = from; i < to; i++) {
+                result.set(slots[i]);
+            }
+            return result;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        // Первая позиция со значением >= value
+        private int lowerBound(double value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Первая позиция со значением > value
+        private int upperBound(double value) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (values[mid] <= value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
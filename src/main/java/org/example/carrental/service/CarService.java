@@ -3,21 +3,58 @@ package org.example.carrental.service;
 import org.example.carrental.entity.Car;
 import org.example.carrental.entity.User;
 import org.example.carrental.repository.CarRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.dto.CursorPage;
 
 import java.util.*;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 @Service
 public class CarService {
 
+    private static final Logger log = LoggerFactory.getLogger(CarService.class);
+
     private final CarRepository carRepository;
+    private final CarFacetService carFacetService;
+    private final CarSearchIndex carSearchIndex;
+    private final ImageVariants imageVariants;
+    private final CarVersionRegistry carVersions;
+    private final OptimisticRetry optimisticRetry;
+    private final TransactionTemplate transactionTemplate;
+    private final int importChunkSize;
+
+    // Сколько ошибок импорта возвращать в отчете (остальные только считаются)
+    private static final int MAX_IMPORT_ERRORS = 100;
+
+    @PersistenceContext
+    private EntityManager entityManager;
 
     @Autowired
-    public CarService(CarRepository carRepository) {
+    public CarService(CarRepository carRepository, CarFacetService carFacetService, CarSearchIndex carSearchIndex,
+                      ImageVariants imageVariants, CarVersionRegistry carVersions, OptimisticRetry optimisticRetry,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${db.import.chunk-size:500}") int importChunkSize) {
         this.carRepository = carRepository;
+        this.carFacetService = carFacetService;
+        this.carSearchIndex = carSearchIndex;
+        this.imageVariants = imageVariants;
+        this.carVersions = carVersions;
+        this.optimisticRetry = optimisticRetry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.importChunkSize = importChunkSize;
     }
 
     public Car addCar(Car car, User manager) {
@@ -41,9 +78,127 @@ public class CarService {
         car.setManager(manager);
         car.setAvailable(true);
 
-        return carRepository.save(car);
+        return saveAndReindex(null, () -> withReadyImageVariants(carRepository.save(car)));
+    }
+
+    // Массовый импорт автомобилей менеджера (парк целиком). Автомобили читаются из потока
+    // пачками по db.import.chunk-size: VIN пачки проверяются одним запросом, пачка сохраняется
+    // в своей транзакции, INSERT уходят пакетами (hibernate.jdbc.batch_size).
+    // Сохраненные пачки остаются, даже если следующая не сохранилась.
+    public CarImportResult importCars(Stream<Car> cars, User manager) {
+        if (!manager.isManager() && !manager.isAdmin()) {
+            throw new RuntimeException("Только менеджеры и администраторы могут добавлять автомобили!");
+        }
+
+        ImportReport report = new ImportReport();
+        Set<String> seenVins = new HashSet<>();
+        List<Car> chunk = new ArrayList<>();
+        int position = 0;
+        try (cars) {
+            Iterator<Car> iterator = cars.iterator();
+            while (true) {
+                Car car;
+                try {
+                    // Строка разбирается уже в hasNext() - ошибка разбора может прийти из обоих вызовов
+                    if (!iterator.hasNext()) {
+                        break;
+                    }
+                    car = iterator.next();
+                } catch (CarImportReader.InvalidRowException e) {
+                    report.reject(e.getMessage());
+                    continue;
+                }
+                position++;
+
+                String error = validateImportedCar(car, seenVins);
+                if (error != null) {
+                    report.reject("Автомобиль #" + position + ": " + error);
+                    continue;
+                }
+                chunk.add(car);
+                if (chunk.size() >= importChunkSize) {
+                    saveImportChunk(chunk, manager, report);
+                    chunk = new ArrayList<>();
+                }
+            }
+            if (!chunk.isEmpty()) {
+                saveImportChunk(chunk, manager, report);
+            }
+        } finally {
+            if (report.imported > 0) {
+                // Индекс и счетчики фильтров перечитаются из базы при следующем поиске
+                carSearchIndex.invalidate();
+                carFacetService.invalidate();
+            }
+        }
+        return new CarImportResult(report.imported, report.rejected, report.errors);
+    }
+
+    private String validateImportedCar(Car car, Set<String> seenVins) {
+        if (car == null || isBlank(car.getBrand()) || isBlank(car.getModel())) {
+            return "не указаны марка или модель";
+        }
+        if (car.getPricePerDay() == null || car.getPricePerDay() <= 0) {
+            return "не указана цена за день";
+        }
+        if (car.getPricePerDay() > 1000) {
+            return "слишком высокая цена для аренды (максимум 1000 руб/день)";
+        }
+        if (car.getVin() != null) {
+            if (car.getVin().length() > 17) {
+                return "VIN длиннее 17 символов";
+            }
+            if (!seenVins.add(car.getVin())) {
+                return "VIN " + car.getVin() + " повторяется в импорте";
+            }
+        }
+        return null;
+    }
+
+    // Одна пачка - одна транзакция: проверка VIN по базе и вставка
+    private void saveImportChunk(List<Car> chunk, User manager, ImportReport report) {
+        List<String> duplicates = new ArrayList<>();
+        try {
+            int saved = transactionTemplate.execute(status -> {
+                Set<String> vins = new HashSet<>();
+                for (Car car : chunk) {
+                    if (car.getVin() != null) {
+                        vins.add(car.getVin());
+                    }
+                }
+                Set<String> existing = vins.isEmpty()
+                        ? Collections.emptySet()
+                        : new HashSet<>(carRepository.findExistingVins(vins));
+
+                User owner = entityManager.getReference(User.class, manager.getId());
+                int count = 0;
+                for (Car car : chunk) {
+                    if (car.getVin() != null && existing.contains(car.getVin())) {
+                        duplicates.add("Автомобиль с VIN " + car.getVin() + " уже существует");
+                        continue;
+                    }
+                    car.setId(null);
+                    car.setManager(owner);
+                    car.setAvailable(true);
+                    entityManager.persist(car);
+                    count++;
+                }
+                entityManager.flush();
+                entityManager.clear();
+                return count;
+            });
+            report.imported += saved;
+            duplicates.forEach(report::reject);
+        } catch (RuntimeException e) {
+            // Пачка откатилась целиком (например, тот же VIN только что добавили параллельно)
+            report.rejected += chunk.size();
+            report.addError("Пачка из " + chunk.size() + " автомобилей не сохранена: " + e.getMessage());
+        }
     }
 
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
 
     // Метод для поиска автомобиля по ID
     public Car getCarById(Long id) {
@@ -51,11 +206,33 @@ public class CarService {
                 .orElseThrow(() -> new RuntimeException("Автомобиль не найден с ID: " + id));
     }
 
+    // Автомобиль вместе с менеджером (для ответа REST, где менеджер попадает в JSON)
+    public Car getCarWithManagerById(Long id) {
+        return carRepository.findWithManagerById(id)
+                .orElseThrow(() -> new RuntimeException("Автомобиль не найден с ID: " + id));
+    }
+
     // Остальные методы бизнес-логики
+    @Transactional(readOnly = true)
     public List<Car> getAvailableCars() {
         return carRepository.findByAvailableTrue();
     }
 
+    // Страница доступных автомобилей после курсора (курсор - id последнего автомобиля)
+    @Transactional(readOnly = true)
+    public CursorPage<Car> getAvailableCarsPage(String after, Integer size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<Car> fetched = carRepository.findByAvailableTrueAndIdGreaterThanOrderByIdAsc(
+                parseCarCursor(after), Limit.of(pageSize + 1));
+        return CursorPage.of(fetched, pageSize, car -> car.getId().toString());
+    }
+
+    @Transactional(readOnly = true)
+    public long countAvailableCars() {
+        return carRepository.countByAvailableTrue();
+    }
+
+    @Transactional(readOnly = true)
     public List<Car> getCarsByBrand(String brand) {
         if (brand == null || brand.trim().isEmpty()) {
             throw new RuntimeException("Марка автомобиля не может быть пустой!");
@@ -63,6 +240,7 @@ public class CarService {
         return carRepository.findByBrand(brand);
     }
 
+    @Transactional(readOnly = true)
     public List<Car> getCarsByPriceRange(Double minPrice, Double maxPrice) {
         if (minPrice < 0 || maxPrice < 0) {
             throw new RuntimeException("Цена не может быть отрицательной!");
@@ -73,102 +251,231 @@ public class CarService {
         return carRepository.findByPricePerDayBetween(minPrice, maxPrice);
     }
 
+    @Transactional(readOnly = true)
     public List<Car> getCarsByManager(User manager) {
         return carRepository.findByManager(manager);
     }
 
+    @Transactional(readOnly = true)
+    public List<Car> getCarsByManagerId(Long managerId) {
+        return carRepository.findByManagerId(managerId);
+    }
+
+    // Изменения автомобиля - чтение и сохранение; при конфликте версий повторяются со свежей копией
     public Car updateCarAvailability(Long carId, Boolean available) {
-        Car car = getCarById(carId);
-        car.setAvailable(available);
-        return carRepository.save(car);
+        return optimisticRetry.run("car.updateAvailability", () -> {
+            Car car = getCarById(carId);
+            CarFacetService.CarFacets before = CarFacetService.CarFacets.of(car);
+            car.setAvailable(available);
+            return saveAndReindex(car, before);
+        });
     }
     // В CarService добавить:
+    @Transactional(readOnly = true)
     public List<Car> getAllCars() {
         return carRepository.findAll();
     }
 
-    public void rentCar(Long carId) {
-        Car car = carRepository.findById(carId)
-                .orElseThrow(() -> new RuntimeException("Автомобиль не найден"));
+    // Страница всех автомобилей после курсора (курсор - id последнего автомобиля)
+    @Transactional(readOnly = true)
+    public CursorPage<Car> getCarsPage(String after, Integer size) {
+        int pageSize = CursorPage.pageSize(size);
+        List<Car> fetched = carRepository.findByIdGreaterThanOrderByIdAsc(parseCarCursor(after), Limit.of(pageSize + 1));
+        return CursorPage.of(fetched, pageSize, car -> car.getId().toString());
+    }
 
-        if (!car.getAvailable()) {
-            throw new RuntimeException("Автомобиль уже арендован");
+    @Transactional(readOnly = true)
+    public long countCars() {
+        return carRepository.count();
+    }
+
+    // Передать все автомобили обработчику по одному, не собирая список в памяти.
+    // Обработанные автомобили отсоединяются, чтобы контекст персистентности не рос.
+    @Transactional(readOnly = true)
+    public void streamAllCars(Consumer<Car> consumer) {
+        try (Stream<Car> cars = carRepository.streamAllOrderById()) {
+            cars.forEach(car -> {
+                consumer.accept(car);
+                entityManager.detach(car);
+            });
         }
+    }
 
-        car.setAvailable(false);
-        carRepository.save(car);
+    public void rentCar(Long carId) {
+        optimisticRetry.run("car.rent", () -> {
+            Car car = carRepository.findById(carId)
+                    .orElseThrow(() -> new RuntimeException("Автомобиль не найден"));
+
+            if (!car.getAvailable()) {
+                throw new RuntimeException("Автомобиль уже арендован");
+            }
+
+            CarFacetService.CarFacets before = CarFacetService.CarFacets.of(car);
+            car.setAvailable(false);
+            return saveAndReindex(car, before);
+        });
 
         // Здесь позже добавим создание записи в Rental
-        System.out.println("Автомобиль " + car.getBrand() + " " + car.getModel() + " арендован");
+        log.atInfo().addKeyValue("carId", carId).log("Автомобиль арендован");
     }
     public Car updateCarPhoto(Long carId, String imageUrl) {
-        Car car = getCarById(carId);
-        car.setImageUrl(imageUrl);
-        return carRepository.save(car);
+        return optimisticRetry.run("car.updatePhoto", () -> {
+            Car car = getCarById(carId);
+            CarFacetService.CarFacets before = CarFacetService.CarFacets.of(car);
+            car.setImageUrl(imageUrl);
+            car.setImageVariants(null);
+            return saveAndReindex(before, () -> withReadyImageVariants(carRepository.save(car)));
+        });
+    }
+
+    // Копии фото делаются в фоне и могли быть готовы раньше, чем фото привязано к автомобилю
+    // (или фото уже загружалось). Проверка - после сохранения автомобиля с новым фото:
+    // если копии еще не готовы, их отметит обработка (applyImageVariants), она уже увидит это фото
+    private Car withReadyImageVariants(Car saved) {
+        String ready = imageVariants.existing(saved.getImageUrl());
+        if (ready == null || ready.equals(saved.getImageVariants())) {
+            return saved;
+        }
+        saved.setImageVariants(ready);
+        return carRepository.save(saved);
+    }
+
+    // Уменьшенные копии фото готовы: отмечаем у всех автомобилей с этим фото
+    public void applyImageVariants(String imageUrl, String variants) {
+        for (Long carId : carRepository.findByImageUrl(imageUrl).stream().map(Car::getId).toList()) {
+            optimisticRetry.run("car.applyImageVariants", () -> {
+                // Каждая попытка - со свежей копией (из кэша второго уровня); фото за это время могли заменить
+                Car car = getCarById(carId);
+                if (!imageUrl.equals(car.getImageUrl())) {
+                    return car;
+                }
+                CarFacetService.CarFacets before = CarFacetService.CarFacets.of(car);
+                car.setImageVariants(variants);
+                return saveAndReindex(car, before);
+            });
+        }
     }
 
     // Метод для получения уникальных значений для выпадающих списков
     public Map<String, List<String>> getFilterOptions() {
-        Map<String, List<String>> options = new HashMap<>();
-
-        // Получаем уникальные бренды
-        List<String> brands = carRepository.findAll()
-                .stream()
-                .map(Car::getBrand)
-                .distinct()
-                .collect(Collectors.toList());
-
-        // Аналогично для других полей
-        List<String> bodyTypes = carRepository.findAll()
-                .stream()
-                .map(Car::getBodyType)
-                .filter(Objects::nonNull)
-                .distinct()
-                .collect(Collectors.toList());
-
-        List<String> fuelTypes = carRepository.findAll()
-                .stream()
-                .map(Car::getFuelType)
-                .filter(Objects::nonNull)
-                .distinct()
-                .collect(Collectors.toList());
-
-        List<String> transmissions = carRepository.findAll()
-                .stream()
-                .map(Car::getTransmission)
-                .filter(Objects::nonNull)
-                .distinct()
-                .collect(Collectors.toList());
-
-        options.put("brands", brands);
-        options.put("bodyTypes", bodyTypes);
-        options.put("fuelTypes", fuelTypes);
-        options.put("transmissions", transmissions);
-
-        return options;
+        return carFacetService.getFilterOptions();
+    }
+
+    // Количество автомобилей для каждого значения фильтров
+    public Map<String, Map<String, Long>> getFilterFacetCounts() {
+        return carFacetService.getFacetCounts();
     }
+
+    @Transactional(readOnly = true)
     public List<Car> getCarsWithFilters(CarFilterDTO filters) {
-        // Нормализуем параметры - пустые строки превращаем в null
-        String brand = normalizeFilter(filters.getBrand());
-        String bodyType = normalizeFilter(filters.getBodyType());
-        String fuelType = normalizeFilter(filters.getFuelType());
-        String transmission = normalizeFilter(filters.getTransmission());
-
-        return carRepository.findWithFilters(
-                brand,
-                filters.getMinPrice(),
-                filters.getMaxPrice(),
-                bodyType,
-                fuelType,
-                transmission,
-                filters.getMinYear(),
-                filters.getMaxYear(),
-                filters.getAvailable()
-        );
-    }
-
-    // Вспомогательный метод для нормализации фильтров
-    private String normalizeFilter(String value) {
-        return (value == null || value.trim().isEmpty()) ? null : value.trim();
+        return searchCars(filters).cars();
+    }
+
+    // Поиск по индексу в памяти: автомобили и количества по значениям фильтров
+    @Transactional(readOnly = true)
+    public CarSearchResult searchCars(CarFilterDTO filters) {
+        CarSearchIndex.SearchResult result = carSearchIndex.search(filters);
+        return new CarSearchResult(loadInOrder(result.carIds(), false), result.facetCounts(), null);
+    }
+
+    // То же, но загружается только страница после курсора (id из индекса уже отсортированы)
+    @Transactional(readOnly = true)
+    public CarSearchResult searchCars(CarFilterDTO filters, String after, Integer size) {
+        return searchCars(filters, after, size, false);
+    }
+
+    // Страница поиска с менеджерами автомобилей (для REST)
+    @Transactional(readOnly = true)
+    public CarSearchResult searchCarsWithManager(CarFilterDTO filters, String after, Integer size) {
+        return searchCars(filters, after, size, true);
+    }
+
+    private CarSearchResult searchCars(CarFilterDTO filters, String after, Integer size, boolean withManager) {
+        CarSearchIndex.SearchResult result = carSearchIndex.search(filters);
+        List<Long> ids = result.carIds();
+        int pageSize = CursorPage.pageSize(size);
+
+        int from = Collections.binarySearch(ids, parseCarCursor(after));
+        from = from >= 0 ? from + 1 : -from - 1;
+        int to = Math.min(from + pageSize, ids.size());
+        String nextCursor = to < ids.size() ? ids.get(to - 1).toString() : null;
+
+        return new CarSearchResult(loadInOrder(ids.subList(from, to), withManager), result.facetCounts(), nextCursor);
+    }
+
+    // Загрузить автомобили одним запросом по первичному ключу, сохранив порядок id
+    private List<Car> loadInOrder(List<Long> ids, boolean withManager) {
+        if (ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Long, Car> byId = new HashMap<>();
+        for (Car car : withManager ? carRepository.findWithManagerByIdIn(ids) : carRepository.findAllById(ids)) {
+            byId.put(car.getId(), car);
+        }
+        List<Car> cars = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Car car = byId.get(id);
+            if (car != null) {
+                cars.add(car);
+            }
+        }
+        return cars;
+    }
+
+    private static Long parseCarCursor(String after) {
+        if (after == null || after.isBlank()) {
+            return 0L;
+        }
+        try {
+            return Long.parseLong(after.trim());
+        } catch (NumberFormatException e) {
+            throw new RuntimeException("Некорректный курсор страницы: " + after);
+        }
+    }
+
+    // Сохранить автомобиль и обновить счетчики фильтров, поисковый индекс и номер изменения
+    private Car saveAndReindex(Car car, CarFacetService.CarFacets before) {
+        return saveAndReindex(before, () -> carRepository.save(car));
+    }
+
+    // Сохранение (save фиксируется сразу, транзакции вокруг нет), затем счетчики фильтров,
+    // индекс поиска и версия карточки. Счетчики отмечают начало изменения до сохранения:
+    // снимок, загруженный между фиксацией и поправкой, не будет закэширован
+    private Car saveAndReindex(CarFacetService.CarFacets before, Supplier<Car> save) {
+        carFacetService.beginChange();
+        Car saved = null;
+        try {
+            saved = save.get();
+        } finally {
+            carFacetService.endChange(before, saved == null ? null : CarFacetService.CarFacets.of(saved));
+        }
+        carSearchIndex.upsert(saved);
+        carVersions.bump(saved.getId());
+        return saved;
+    }
+
+    // Итог импорта: сколько сохранено, сколько отклонено и первые ошибки
+    public record CarImportResult(int imported, int rejected, List<String> errors) {
+    }
+
+    private static class ImportReport {
+        private int imported;
+        private int rejected;
+        private final List<String> errors = new ArrayList<>();
+
+        void reject(String error) {
+            rejected++;
+            addError(error);
+        }
+
+        void addError(String error) {
+            if (errors.size() < MAX_IMPORT_ERRORS) {
+                errors.add(error);
+            }
+        }
+    }
+
+    // Результат поиска по каталогу; nextCursor = null - следующей страницы нет
+    public record CarSearchResult(List<Car> cars, Map<String, Map<String, Long>> facetCounts, String nextCursor) {
     }
 }
\ No newline at end of file
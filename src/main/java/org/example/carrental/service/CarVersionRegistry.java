@@ -0,0 +1,31 @@
+package org.example.carrental.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Номера изменений автомобилей (как UserVersionRegistry для пользователей): CarService увеличивает номер
+// после каждого сохранения автомобиля, по нему кэш фрагментов каталога отличает актуальную карточку от устаревшей.
+// changes() - общее число изменений: по нему видно, что за время запроса ни один автомобиль не менялся
+@Component
+public class CarVersionRegistry {
+
+    private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+    private final AtomicLong changes = new AtomicLong();
+
+    public long currentVersion(Long carId) {
+        return versions.getOrDefault(carId, 0L);
+    }
+
+    public long changes() {
+        return changes.get();
+    }
+
+    // Вызывается после сохранения. Общий счетчик - раньше номера автомобиля: кто увидел новый номер автомобиля,
+    // увидит и новый общий счетчик
+    public void bump(Long carId) {
+        changes.incrementAndGet();
+        versions.merge(carId, 1L, Long::sum);
+    }
+}
@@ -0,0 +1,434 @@
+package org.example.carrental.service;
+
+import org.example.carrental.entity.RentalStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Синтетический набор данных для нагрузочных тестов и бенчмарков: менеджеры, клиенты, автомобили и аренды.
+// Содержимое определяется только Spec: каждый автомобиль генерируется своим генератором случайных чисел
+// от seed и номера автомобиля, поэтому результат не зависит от числа потоков и порядка их работы
+// (меняются только id строк). Строки пишутся пакетными INSERT через JDBC, автомобили и аренды -
+// параллельно, по диапазонам автомобилей, каждый поток в своем соединении и своих транзакциях.
+//
+// Распределения:
+// - марки - по закону Ципфа (первые марки списка встречаются намного чаще последних);
+// - аренд на автомобиль - логнормально: большинство автомобилей со средним числом аренд, несколько - с очень большим;
+// - аренды автомобиля идут подряд в окне [anchor - 730 дней, anchor + 90 дней], обычно 1-3 дня, иногда до двух недель;
+//   прошедшие завершены (часть отменена), текущая активна, будущие подтверждены или ждут подтверждения;
+// - каждая десятая заявка пересекается с предыдущей арендой автомобиля (прошедшие такие заявки отклонены);
+// - часть клиентов арендует намного чаще остальных.
+// Пользователи - manager<N>@dataset.carrental.ru и client<N>@dataset.carrental.ru, пароль "password"
+public class DatasetGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(DatasetGenerator.class);
+
+    public static final String EMAIL_DOMAIN = "@dataset.carrental.ru";
+    public static final String PASSWORD = "password";
+    public static final int HISTORY_DAYS = 730;
+    public static final int FUTURE_DAYS = 90;
+
+    // Марка -> модели; порядок марок - по убыванию популярности
+    private static final String[][] BRANDS = {
+            {"Lada", "Vesta", "Granta", "Niva", "Largus"},
+            {"Kia", "Rio", "Ceed", "Sportage", "K5"},
+            {"Hyundai", "Solaris", "Creta", "Tucson", "Elantra"},
+            {"Toyota", "Camry", "Corolla", "RAV4", "Land Cruiser"},
+            {"Volkswagen", "Polo", "Tiguan", "Passat"},
+            {"Skoda", "Rapid", "Octavia", "Kodiaq"},
+            {"Renault", "Logan", "Duster", "Arkana"},
+            {"Haval", "Jolion", "F7", "Dargo"},
+            {"Chery", "Tiggo 4", "Tiggo 7", "Arrizo 8"},
+            {"Nissan", "Qashqai", "X-Trail", "Almera"},
+            {"BMW", "3 Series", "5 Series", "X5"},
+            {"Mercedes-Benz", "C-Class", "E-Class", "GLC"},
+            {"Audi", "A4", "A6", "Q5"},
+            {"Mazda", "3", "6", "CX-5"}
+    };
+    private static final String[] BODY_TYPES = {"Седан", "Хэтчбек", "Кроссовер", "Универсал", "Внедорожник", "Минивэн"};
+    private static final String[] FUEL_TYPES = {"Бензин", "Бензин", "Бензин", "Дизель", "Гибрид", "Электро"};
+    private static final String[] TRANSMISSIONS = {"Автомат", "Автомат", "Механика", "Робот", "Вариатор"};
+    private static final String[] COLORS = {"Белый", "Черный", "Серый", "Серебристый", "Синий", "Красный"};
+
+    // Популярность марок по закону Ципфа: вес марки с номером r - 1 / r^1.1
+    private static final double[] BRAND_CUMULATIVE = zipfCumulative(BRANDS.length, 1.1);
+
+    private static final int BATCH_SIZE = 1000;
+    // Коммит после стольких строк: транзакция не растет до размера всего набора
+    private static final int COMMIT_EVERY = 20_000;
+
+    private final DataSource dataSource;
+    private final int threads;
+
+    public DatasetGenerator(DataSource dataSource, int threads) {
+        this.dataSource = dataSource;
+        this.threads = Math.max(1, threads);
+    }
+
+    // Значения фильтров каталога в наборе (для запросов бенчмарков и нагрузочных тестов)
+    public static List<String> brands() {
+        return Arrays.stream(BRANDS).map(models -> models[0]).toList();
+    }
+
+    public static List<String> bodyTypes() {
+        return List.of(BODY_TYPES);
+    }
+
+    public Result generate(Spec spec) {
+        long started = System.nanoTime();
+        try {
+            long[] managerIds = insertUsers("manager", spec.managers(), spec.anchor());
+            long[] clientIds = insertUsers("client", spec.clients(), spec.anchor());
+            long[] carIds = insertCars(spec, managerIds);
+            int[] rentalsPerCar = rentalsPerCar(spec);
+            insertRentals(spec, carIds, clientIds, rentalsPerCar);
+
+            long millis = (System.nanoTime() - started) / 1_000_000;
+            log.atInfo()
+                    .addKeyValue("managers", managerIds.length)
+                    .addKeyValue("clients", clientIds.length)
+                    .addKeyValue("cars", carIds.length)
+                    .addKeyValue("rentals", spec.rentals())
+                    .addKeyValue("seed", spec.seed())
+                    .addKeyValue("threads", threads)
+                    .addKeyValue("ms", millis)
+                    .log("Синтетический набор данных загружен");
+            return new Result(managerIds, clientIds, carIds, spec.anchor().minusDays(HISTORY_DAYS),
+                    spec.anchor().plusDays(FUTURE_DAYS), spec.rentals(), millis);
+        } catch (SQLException e) {
+            throw new RuntimeException("Ошибка генерации набора данных: " + e.getMessage(), e);
+        }
+    }
+
+    // === Пользователи ===
+
+    private long[] insertUsers(String prefix, int count, LocalDateTime anchor) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement insert = connection.prepareStatement(
+                    "INSERT INTO users (email, password, full_name, phone, driver_license, role, created_at, approved) " +
+                            "VALUES (?, ?, ?, ?, ?, ?, ?, TRUE)")) {
+                Timestamp createdAt = Timestamp.valueOf(anchor.minusDays(HISTORY_DAYS + 30));
+                boolean client = prefix.equals("client");
+                for (int i = 0; i < count; i++) {
+                    insert.setString(1, prefix + i + EMAIL_DOMAIN);
+                    insert.setString(2, PASSWORD);
+                    insert.setString(3, (client ? "Клиент " : "Менеджер ") + i);
+                    insert.setString(4, String.format("+7%010d", (client ? 9_000_000_000L : 8_000_000_000L) + i));
+                    insert.setString(5, client ? String.format("DS%08d", i) : null);
+                    insert.setString(6, client ? "CLIENT" : "MANAGER");
+                    insert.setTimestamp(7, createdAt);
+                    addToBatch(connection, insert, i);
+                }
+                insert.executeBatch();
+            }
+            connection.commit();
+            // Номер пользователя - в адресе; id по номеру
+            return idsByNumber(connection, "SELECT id, email FROM users WHERE email LIKE '" + prefix + "%"
+                    + EMAIL_DOMAIN + "'", count, prefix.length());
+        }
+    }
+
+    // === Автомобили ===
+
+    private long[] insertCars(Spec spec, long[] managerIds) throws SQLException {
+        parallel(spec.cars(), (from, to) -> {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                // id - из последовательности cars_seq, как у Hibernate (значения не пересекаются с его диапазонами)
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO cars (id, brand, model, manufacture_year, color, price_per_day, available, vin, " +
+                                "fuel_type, transmission_type, body_type, horse_power, mileage, engine_capacity, " +
+                                "manager_id, version) " +
+                                "VALUES (NEXT VALUE FOR cars_seq, ?, ?, ?, ?, ?, TRUE, ?, ?, ?, ?, ?, ?, ?, ?, 0)")) {
+                    for (int i = from; i < to; i++) {
+                        CarRow car = car(spec.seed(), i);
+                        insert.setString(1, car.brand());
+                        insert.setString(2, car.model());
+                        insert.setInt(3, car.year());
+                        insert.setString(4, car.color());
+                        insert.setDouble(5, car.pricePerDay());
+                        insert.setString(6, vin(i));
+                        insert.setString(7, car.fuelType());
+                        insert.setString(8, car.transmission());
+                        insert.setString(9, car.bodyType());
+                        insert.setInt(10, car.horsePower());
+                        insert.setInt(11, car.mileage());
+                        insert.setDouble(12, car.engineCapacity());
+                        insert.setLong(13, managerIds[i % managerIds.length]);
+                        addToBatch(connection, insert, i - from);
+                    }
+                    insert.executeBatch();
+                }
+                connection.commit();
+            }
+        });
+
+        try (Connection connection = dataSource.getConnection()) {
+            return idsByNumber(connection, "SELECT id, vin FROM cars WHERE vin LIKE 'DS%'", spec.cars(), 2);
+        }
+    }
+
+    private static CarRow car(long seed, int index) {
+        SplittableRandom random = random(seed, 1, index);
+        int brand = pick(BRAND_CUMULATIVE, random.nextDouble());
+        String[] models = BRANDS[brand];
+        // Цена растет с "дороговизной" марки (дальше по списку - дороже), не выше 1000 в день
+        double price = Math.min(1000, 300 + brand * 40 + random.nextInt(20) * 10);
+        return new CarRow(models[0], models[1 + random.nextInt(models.length - 1)], 2012 + random.nextInt(13),
+                COLORS[random.nextInt(COLORS.length)], price, FUEL_TYPES[random.nextInt(FUEL_TYPES.length)],
+                TRANSMISSIONS[random.nextInt(TRANSMISSIONS.length)], BODY_TYPES[random.nextInt(BODY_TYPES.length)],
+                90 + random.nextInt(250), random.nextInt(200_000), 1.2 + random.nextInt(20) / 10.0);
+    }
+
+    private static String vin(int car) {
+        return String.format("DS%015d", car);
+    }
+
+    // === Аренды ===
+
+    // Логнормальные веса автомобилей -> целые количества, в сумме ровно spec.rentals() (метод наибольших остатков)
+    private static int[] rentalsPerCar(Spec spec) {
+        double[] weights = new double[spec.cars()];
+        double total = 0;
+        for (int i = 0; i < weights.length; i++) {
+            SplittableRandom random = random(spec.seed(), 2, i);
+            weights[i] = Math.exp(gaussian(random));
+            total += weights[i];
+        }
+        int[] counts = new int[weights.length];
+        double[] remainders = new double[weights.length];
+        long assigned = 0;
+        for (int i = 0; i < weights.length; i++) {
+            double exact = spec.rentals() * weights[i] / total;
+            counts[i] = (int) exact;
+            remainders[i] = exact - counts[i];
+            assigned += counts[i];
+        }
+        Integer[] order = new Integer[weights.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(remainders[b], remainders[a]));
+        for (int i = 0; assigned < spec.rentals(); i++, assigned++) {
+            counts[order[i % order.length]]++;
+        }
+        return counts;
+    }
+
+    private void insertRentals(Spec spec, long[] carIds, long[] clientIds, int[] rentalsPerCar) throws SQLException {
+        LocalDateTime windowStart = spec.anchor().minusDays(HISTORY_DAYS);
+        long windowHours = (HISTORY_DAYS + FUTURE_DAYS) * 24L;
+
+        parallel(carIds.length, (from, to) -> {
+            try (Connection connection = dataSource.getConnection()) {
+                connection.setAutoCommit(false);
+                try (PreparedStatement insert = connection.prepareStatement(
+                        "INSERT INTO rentals (user_id, car_id, start_date, end_date, total_price, actual_price, status, " +
+                                "created_at, approved_at, actual_start_date, actual_end_date, rejection_reason, version) " +
+                                "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)")) {
+                    int row = 0;
+                    for (int car = from; car < to; car++) {
+                        double pricePerDay = car(spec.seed(), car).pricePerDay();
+                        SplittableRandom random = random(spec.seed(), 3, car);
+                        int count = rentalsPerCar[car];
+                        double slotHours = (double) windowHours / Math.max(1, count);
+                        LocalDateTime previousStart = null;
+                        LocalDateTime previousEnd = null;
+                        for (int k = 0; k < count; k++) {
+                            LocalDateTime start;
+                            LocalDateTime end;
+                            boolean competing = previousStart != null && random.nextInt(10) == 0;
+                            if (competing) {
+                                // Заявка на уже занятые даты (сдвиг на несколько часов)
+                                start = previousStart.plusHours(random.nextInt(12));
+                                end = previousEnd.plusHours(random.nextInt(12));
+                            } else {
+                                // Обычно 1-3 дня, иногда до двух недель, но не длиннее 80% своего слота
+                                double days = Math.min(14, 1 - 2 * Math.log(1 - random.nextDouble()));
+                                long duration = Math.max(2, Math.min(Math.round(days * 24), (long) (slotHours * 0.8)));
+                                long offset = (long) (k * slotHours)
+                                        + (long) (random.nextDouble() * Math.max(0, slotHours - duration));
+                                start = windowStart.plusHours(offset);
+                                end = start.plusHours(duration);
+                                previousStart = start;
+                                previousEnd = end;
+                            }
+                            RentalStatus status = status(random, competing, start, end, spec.anchor());
+                            long days = Math.max(1, (Duration.between(start, end).toHours() + 23) / 24);
+                            BigDecimal total = BigDecimal.valueOf(pricePerDay * days);
+                            LocalDateTime createdAt = start.minusHours(2 + random.nextInt(30 * 24));
+                            boolean approved = status == RentalStatus.CONFIRMED || status == RentalStatus.ACTIVE
+                                    || status == RentalStatus.COMPLETED;
+
+                            // Постоянные клиенты: квадрат равномерного числа смещает выбор к первым клиентам
+                            double u = random.nextDouble();
+                            insert.setLong(1, clientIds[(int) (clientIds.length * u * u)]);
+                            insert.setLong(2, carIds[car]);
+                            insert.setTimestamp(3, Timestamp.valueOf(start));
+                            insert.setTimestamp(4, Timestamp.valueOf(end));
+                            insert.setBigDecimal(5, total);
+                            insert.setBigDecimal(6, status == RentalStatus.COMPLETED ? total : null);
+                            insert.setString(7, status.name());
+                            insert.setTimestamp(8, Timestamp.valueOf(createdAt));
+                            insert.setTimestamp(9, approved ? Timestamp.valueOf(createdAt.plusHours(1)) : null);
+                            insert.setTimestamp(10, status == RentalStatus.ACTIVE || status == RentalStatus.COMPLETED
+                                    ? Timestamp.valueOf(start) : null);
+                            insert.setTimestamp(11, status == RentalStatus.COMPLETED ? Timestamp.valueOf(end) : null);
+                            insert.setString(12, status == RentalStatus.REJECTED ? "Автомобиль занят в эти даты" : null);
+                            addToBatch(connection, insert, row++);
+                        }
+                    }
+                    insert.executeBatch();
+                }
+                connection.commit();
+            }
+        });
+    }
+
+    private static RentalStatus status(SplittableRandom random, boolean competing, LocalDateTime start,
+                                       LocalDateTime end, LocalDateTime anchor) {
+        if (competing) {
+            // Пересекающаяся заявка не может занимать автомобиль
+            return start.isAfter(anchor) ? RentalStatus.PENDING : RentalStatus.REJECTED;
+        }
+        if (end.isBefore(anchor)) {
+            return random.nextInt(100) < 88 ? RentalStatus.COMPLETED : RentalStatus.CANCELLED;
+        }
+        if (!start.isAfter(anchor)) {
+            return RentalStatus.ACTIVE;
+        }
+        return random.nextInt(100) < 65 ? RentalStatus.CONFIRMED : RentalStatus.PENDING;
+    }
+
+    // === Общее ===
+
+    // Диапазоны [from, to) по потокам; первая ошибка любого потока - ошибка генерации
+    private void parallel(int count, RangeTask task) throws SQLException {
+        int workers = Math.min(threads, Math.max(1, count / BATCH_SIZE));
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int w = 0; w < workers; w++) {
+                int from = (int) ((long) count * w / workers);
+                int to = (int) ((long) count * (w + 1) / workers);
+                futures.add(executor.submit(() -> {
+                    task.run(from, to);
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof SQLException sql) {
+                        throw sql;
+                    }
+                    throw new RuntimeException(e.getCause());
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Генерация набора данных прервана", e);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static void addToBatch(Connection connection, PreparedStatement insert, int row) throws SQLException {
+        insert.addBatch();
+        if ((row + 1) % BATCH_SIZE == 0) {
+            insert.executeBatch();
+        }
+        if ((row + 1) % COMMIT_EVERY == 0) {
+            connection.commit();
+        }
+    }
+
+    // id строк по номеру, записанному в колонке после prefixLength символов (email или VIN)
+    private static long[] idsByNumber(Connection connection, String sql, int count, int prefixLength)
+            throws SQLException {
+        long[] ids = new long[count];
+        try (Statement select = connection.createStatement(); ResultSet rows = select.executeQuery(sql)) {
+            while (rows.next()) {
+                String key = rows.getString(2);
+                int end = key.indexOf('@');
+                ids[Integer.parseInt(key.substring(prefixLength, end < 0 ? key.length() : end))] = rows.getLong(1);
+            }
+        }
+        return ids;
+    }
+
+    // Свой генератор для каждой сущности: stream разделяет назначения (машины, количества, аренды)
+    private static SplittableRandom random(long seed, int stream, int index) {
+        return new SplittableRandom(seed * 0x9E3779B97F4A7C15L + stream * 0xBF58476D1CE4E5B9L + index);
+    }
+
+    private static double gaussian(SplittableRandom random) {
+        // Бокс-Мюллер: SplittableRandom не умеет нормальное распределение
+        return Math.sqrt(-2 * Math.log(1 - random.nextDouble())) * Math.cos(2 * Math.PI * random.nextDouble());
+    }
+
+    private static double[] zipfCumulative(int count, double exponent) {
+        double[] cumulative = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < count; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    private static int pick(double[] cumulative, double value) {
+        for (int i = 0; i < cumulative.length; i++) {
+            if (value < cumulative[i]) {
+                return i;
+            }
+        }
+        return cumulative.length - 1;
+    }
+
+    private record CarRow(String brand, String model, int year, String color, double pricePerDay, String fuelType,
+                          String transmission, String bodyType, int horsePower, int mileage, double engineCapacity) {
+    }
+
+    private interface RangeTask {
+        void run(int from, int to) throws SQLException;
+    }
+
+    // anchor - "сегодня" набора: от него считаются прошлые и будущие аренды (одинаковый anchor - одинаковые данные)
+    public record Spec(long seed, int managers, int clients, int cars, int rentals, LocalDateTime anchor) {
+
+        // Пропорции по числу аренд: 50 аренд на автомобиль, 10 на клиента, 100 автомобилей на менеджера
+        public static Spec forRentals(long seed, int rentals, LocalDateTime anchor) {
+            int cars = Math.max(20, rentals / 50);
+            return new Spec(seed, Math.max(2, cars / 100), Math.max(10, rentals / 10), cars, rentals, anchor);
+        }
+    }
+
+    // from/to - окно дат аренд набора
+    public record Result(long[] managerIds, long[] clientIds, long[] carIds, LocalDateTime from, LocalDateTime to,
+                         int rentals, long millis) {
+    }
+}
@@ -1,68 +1,190 @@
 package org.example.carrental.service;
 
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+// Загрузка фото автомобилей:
+// 1. файл переносится во временный файл рядом с хранилищем (transferTo(File): если Tomcat уже
+//    сбросил большой файл на диск, это переименование, а не второе копирование);
+// 2. один проход FileChannel: формат по сигнатуре первых байт + SHA-256 содержимого;
+// 3. имя файла - хэш содержимого: одинаковые фото хранятся один раз;
+// 4. обработка (PhotoPostProcessor) - в фоне, запрос ее не ждет
 @Service
 public class FileStorageService {
 
+    private static final Logger log = LoggerFactory.getLogger(FileStorageService.class);
+
+    private static final String URL_PREFIX = "/uploads/images/cars/";
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+
     // Папка где будем хранить загруженные фото
     private final Path fileStorageLocation;
+    // Незавершенные загрузки (на той же файловой системе, чтобы перенос в хранилище был атомарным)
+    private final Path stagingLocation;
+    private final ObjectProvider<PhotoPostProcessor> postProcessors;
+    private final ExecutorService processingExecutor;
 
-    public FileStorageService() {
+    public FileStorageService(@Value("${upload.dir:uploads}") String uploadDir,
+                              @Value("${upload.processing-threads:2}") int processingThreads,
+                              ObjectProvider<PhotoPostProcessor> postProcessors) {
         // Указываем папку для загрузок (создастся автоматически)
-        this.fileStorageLocation = Paths.get("uploads/images/cars")
+        this.fileStorageLocation = Paths.get(uploadDir, "images", "cars")
                 .toAbsolutePath().normalize();
+        this.stagingLocation = Paths.get(uploadDir, ".staging").toAbsolutePath().normalize();
+        this.postProcessors = postProcessors;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.processingExecutor = Executors.newFixedThreadPool(processingThreads, runnable -> {
+            Thread thread = new Thread(runnable, "photo-processing-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
 
         try {
             // Создаем папку если ее нет
             Files.createDirectories(this.fileStorageLocation);
-            System.out.println("Папка для загрузок создана: " + this.fileStorageLocation);
+            Files.createDirectories(this.stagingLocation);
+            log.atInfo().addKeyValue("dir", this.fileStorageLocation).log("Папка для загрузок готова");
         } catch (Exception ex) {
             throw new RuntimeException("Не удалось создать директорию для загрузки файлов", ex);
         }
     }
 
-    // Метод для сохранения файла
+    // Метод для сохранения файла: путь для браузера, обработка продолжается в фоне
     public String storeFile(MultipartFile file) {
+        return store(file).photo().url();
+    }
+
+    public StoreResult store(MultipartFile file) {
+        // Проверяем что файл не пустой
+        if (file.isEmpty()) {
+            throw new RuntimeException("Файл пустой");
+        }
+
+        Path staging = stagingLocation.resolve(UUID.randomUUID() + ".part");
         try {
-            // Проверяем что файл не пустой
-            if (file.isEmpty()) {
-                throw new RuntimeException("Файл пустой");
+            file.transferTo(staging.toFile());
+
+            ImageType type;
+            String sha256;
+            long size;
+            try (FileChannel channel = FileChannel.open(staging, StandardOpenOption.READ)) {
+                MessageDigest digest = sha256();
+                ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+                readAtLeast(channel, buffer, ImageType.SIGNATURE_LENGTH);
+                buffer.flip();
+                // Проверяем что это изображение - по содержимому, Content-Type от клиента не используется
+                type = ImageType.detect(buffer);
+                if (type == null) {
+                    throw new RuntimeException("Файл должен быть изображением (JPEG, PNG, GIF или WebP)");
+                }
+                digest.update(buffer);
+                buffer.clear();
+                while (channel.read(buffer) >= 0) {
+                    buffer.flip();
+                    digest.update(buffer);
+                    buffer.clear();
+                }
+                size = channel.size();
+                sha256 = HexFormat.of().formatHex(digest.digest());
             }
 
-            // Проверяем что это изображение
-            String contentType = file.getContentType();
-            if (contentType == null || !contentType.startsWith("image/")) {
-                throw new RuntimeException("Файл должен быть изображением");
+            // Имя по содержимому: такое фото уже есть - новый файл не нужен
+            String fileName = sha256 + type.getExtension();
+            Path targetLocation = fileStorageLocation.resolve(fileName);
+            boolean duplicate = Files.exists(targetLocation);
+            if (duplicate) {
+                Files.delete(staging);
+            } else {
+                Files.move(staging, targetLocation, StandardCopyOption.ATOMIC_MOVE);
             }
 
-            // Генерируем уникальное имя файла чтобы избежать конфликтов
-            String originalFileName = file.getOriginalFilename();
-            String fileExtension = "";
+            StoredPhoto photo = new StoredPhoto(URL_PREFIX + fileName, targetLocation, sha256, type, size, duplicate);
+            log.atDebug()
+                    .addKeyValue("file", fileName)
+                    .addKeyValue("size", size)
+                    .addKeyValue("duplicate", duplicate)
+                    .log("Файл сохранен");
+
+            CompletableFuture<Void> processing = duplicate
+                    ? CompletableFuture.completedFuture(null)
+                    : CompletableFuture.runAsync(() -> postProcess(photo), processingExecutor);
+            return new StoreResult(photo, processing);
 
-            if (originalFileName != null && originalFileName.contains(".")) {
-                fileExtension = originalFileName.substring(originalFileName.lastIndexOf("."));
+        } catch (IOException ex) {
+            throw new RuntimeException("Не удалось сохранить файл: " + ex.getMessage(), ex);
+        } finally {
+            try {
+                Files.deleteIfExists(staging);
+            } catch (IOException ignored) {
+                // временный файл останется в .staging, на результат не влияет
             }
+        }
+    }
 
-            String fileName = UUID.randomUUID().toString() + fileExtension;
+    // Ошибка одного обработчика не отменяет остальные: фото уже сохранено и доступно
+    private void postProcess(StoredPhoto photo) {
+        List<PhotoPostProcessor> processors = postProcessors.orderedStream().toList();
+        for (PhotoPostProcessor processor : processors) {
+            try {
+                processor.process(photo);
+            } catch (Exception e) {
+                log.atWarn()
+                        .addKeyValue("file", photo.path().getFileName())
+                        .addKeyValue("processor", processor.getClass().getSimpleName())
+                        .setCause(e)
+                        .log("Ошибка обработки фото");
+            }
+        }
+    }
 
-            // Сохраняем файл на диск
-            Path targetLocation = this.fileStorageLocation.resolve(fileName);
-            Files.copy(file.getInputStream(), targetLocation);
+    private static void readAtLeast(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        while (buffer.position() < bytes && channel.read(buffer) >= 0) {
+            // читаем, пока не наберется сигнатура или не кончится файл
+        }
+    }
 
-            System.out.println("Файл сохранен: " + targetLocation);
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-            // Возвращаем путь для доступа через браузер
-            return "/uploads/images/cars/" + fileName;
+    @PreDestroy
+    public void shutdown() {
+        processingExecutor.shutdown();
+    }
 
-        } catch (IOException ex) {
-            throw new RuntimeException("Не удалось сохранить файл: " + ex.getMessage(), ex);
-        }
+    // Сохраненное фото: url - путь для браузера, path - файл в хранилище,
+    // duplicate - такое содержимое уже было загружено раньше (файл общий)
+    public record StoredPhoto(String url, Path path, String sha256, ImageType type, long size, boolean duplicate) {
+    }
+
+    // processing завершается, когда все PhotoPostProcessor отработали (для дубликата - сразу)
+    public record StoreResult(StoredPhoto photo, CompletableFuture<Void> processing) {
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,137 @@
+package org.example.carrental.service;
+
+import jakarta.annotation.PreDestroy;
+import org.example.carrental.entity.Car;
+import org.example.carrental.repository.CarRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Дозаполнение уменьшенных копий для фото, загруженных до их появления (Car.imageVariants = null).
+// Идет пачками по id в одном фоновом потоке. Прогресс хранится в самих автомобилях:
+// обработанные получают imageVariants, поэтому остановленное (или прерванное перезапуском) задание
+// при следующем запуске продолжает с необработанных. Фото, на котором произошла ошибка,
+// в текущем проходе пропускается и будет повторено при следующем запуске
+@Service
+public class ImageBackfillJob {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageBackfillJob.class);
+
+    private final CarRepository carRepository;
+    private final CarService carService;
+    private final ImageDerivativeService imageDerivativeService;
+    private final int batchSize;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "image-backfill");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean running = new AtomicBoolean();
+    private volatile boolean stopRequested;
+    private final AtomicInteger processed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final AtomicLong lastCarId = new AtomicLong();
+    private volatile LocalDateTime startedAt;
+    private volatile LocalDateTime finishedAt;
+
+    public ImageBackfillJob(CarRepository carRepository, CarService carService,
+                            ImageDerivativeService imageDerivativeService,
+                            @Value("${upload.backfill.batch-size:100}") int batchSize) {
+        this.carRepository = carRepository;
+        this.carService = carService;
+        this.imageDerivativeService = imageDerivativeService;
+        this.batchSize = batchSize;
+    }
+
+    // false - задание уже идет
+    public boolean start() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        stopRequested = false;
+        processed.set(0);
+        failed.set(0);
+        lastCarId.set(0);
+        startedAt = LocalDateTime.now();
+        finishedAt = null;
+        executor.execute(this::run);
+        return true;
+    }
+
+    // Остановка после текущего фото; продолжить - снова start()
+    public void stop() {
+        stopRequested = true;
+    }
+
+    public Status status() {
+        return new Status(running.get(), processed.get(), failed.get(), lastCarId.get(), startedAt, finishedAt);
+    }
+
+    private void run() {
+        try {
+            long afterId = 0;
+            while (!stopRequested) {
+                List<Car> batch = carRepository.findPhotosWithoutVariants(afterId, Limit.of(batchSize));
+                if (batch.isEmpty()) {
+                    break;
+                }
+                // Одно фото может быть у нескольких автомобилей (одинаковые загрузки хранятся одним файлом)
+                Map<String, Long> lastIdByUrl = new LinkedHashMap<>();
+                for (Car car : batch) {
+                    lastIdByUrl.put(car.getImageUrl(), car.getId());
+                }
+                for (Map.Entry<String, Long> photo : lastIdByUrl.entrySet()) {
+                    if (stopRequested) {
+                        break;
+                    }
+                    try {
+                        carService.applyImageVariants(photo.getKey(), imageDerivativeService.generate(photo.getKey()));
+                        processed.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        log.atWarn().addKeyValue("url", photo.getKey()).setCause(e).log("Не удалось сделать копии фото");
+                    }
+                    lastCarId.accumulateAndGet(photo.getValue(), Math::max);
+                }
+                afterId = batch.get(batch.size() - 1).getId();
+            }
+            log.atInfo()
+                    .addKeyValue("processed", processed.get())
+                    .addKeyValue("failed", failed.get())
+                    .addKeyValue("stopped", stopRequested)
+                    .log("Дозаполнение копий фото завершено");
+        } catch (RuntimeException e) {
+            log.atError().setCause(e).log("Дозаполнение копий фото прервано");
+        } finally {
+            finishedAt = LocalDateTime.now();
+            running.set(false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopRequested = true;
+        executor.shutdownNow();
+    }
+
+    // processed/failed - фото (не автомобили) в текущем или последнем запуске
+    public record Status(boolean running, int processed, int failed, long lastCarId,
+                         LocalDateTime startedAt, LocalDateTime finishedAt) {
+    }
+}
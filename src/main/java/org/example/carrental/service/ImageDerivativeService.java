@@ -0,0 +1,174 @@
+package org.example.carrental.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+
+// Уменьшенные копии фото автомобилей (JPEG шириной upload.derivatives.widths) для каталога:
+// карточки показывают копию по размеру, а не исходный файл.
+// Делаются в фоне после загрузки (PhotoPostProcessor) и дозаполнением для старых фото (ImageBackfillJob).
+// Одновременно обрабатывается не больше upload.derivatives.max-parallel фото - остальные ждут,
+// чтобы уменьшение фото не отнимало все ядра у запросов
+@Service
+public class ImageDerivativeService implements PhotoPostProcessor {
+
+    private static final Logger log = LoggerFactory.getLogger(ImageDerivativeService.class);
+
+    // Фото больше этого числа пикселей не раскодируются (защита памяти от "бомб" вроде 30000x30000)
+    private static final long MAX_PIXELS = 50_000_000L;
+    private static final float JPEG_QUALITY = 0.82f;
+
+    private final ImageVariants imageVariants;
+    private final CarService carService;
+    private final Semaphore permits;
+
+    public ImageDerivativeService(ImageVariants imageVariants, CarService carService,
+                                  @Value("${upload.derivatives.max-parallel:0}") int maxParallel) {
+        this.imageVariants = imageVariants;
+        this.carService = carService;
+        // 0 - половина ядер, но не меньше одного
+        this.permits = new Semaphore(maxParallel > 0 ? maxParallel
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+        // ImageIO по умолчанию буферизует потоки во временных файлах на диске - здесь это лишнее
+        ImageIO.setUseCache(false);
+    }
+
+    @Override
+    public void process(FileStorageService.StoredPhoto photo) throws Exception {
+        carService.applyImageVariants(photo.url(), generate(photo.url()));
+    }
+
+    // Делает недостающие копии фото; результат - в формате Car.imageVariants ("" - копий нет)
+    public String generate(String imageUrl) throws IOException, InterruptedException {
+        if (!ImageVariants.isUploaded(imageUrl)) {
+            return "";
+        }
+        Path original = imageVariants.originalPath(imageUrl);
+        if (!Files.exists(original)) {
+            throw new NoSuchFileException(original.toString());
+        }
+
+        permits.acquire();
+        try {
+            BufferedImage image = read(original);
+            if (image == null) {
+                imageVariants.markDone(imageUrl, "");
+                return "";
+            }
+            // От большей копии к меньшей: каждая следующая уменьшается из предыдущей, а не из исходного фото
+            List<Integer> widths = new ArrayList<>(imageVariants.widths());
+            Collections.reverse(widths);
+            List<String> done = new ArrayList<>();
+            BufferedImage source = image;
+            for (int width : widths) {
+                if (width >= image.getWidth()) {
+                    continue;
+                }
+                source = scale(source, width);
+                Path target = imageVariants.derivativePath(imageUrl, width);
+                if (!Files.exists(target)) {
+                    writeJpeg(source, target);
+                }
+                done.add(0, String.valueOf(width));
+            }
+            String variants = String.join(",", done);
+            imageVariants.markDone(imageUrl, variants);
+            log.atDebug().addKeyValue("url", imageUrl).addKeyValue("variants", variants).log("Копии фото готовы");
+            return variants;
+        } finally {
+            permits.release();
+        }
+    }
+
+    // null - формат не читается (например, WebP) или фото слишком большое
+    private static BufferedImage read(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                // Размер - из заголовка, до раскодирования
+                if ((long) reader.getWidth(0) * reader.getHeight(0) > MAX_PIXELS) {
+                    log.atWarn().addKeyValue("file", file.getFileName()).log("Фото слишком большое для копий");
+                    return null;
+                }
+                return reader.read(0);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Уменьшение с сохранением пропорций; сильное уменьшение - по половине за шаг (без "лесенки")
+    private static BufferedImage scale(BufferedImage source, int width) {
+        BufferedImage current = source;
+        while (current.getWidth() / 2 >= width) {
+            current = resize(current, current.getWidth() / 2);
+        }
+        return current.getWidth() == width ? current : resize(current, width);
+    }
+
+    private static BufferedImage resize(BufferedImage source, int width) {
+        int height = Math.max(1, (int) Math.round((double) source.getHeight() * width / source.getWidth()));
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = result.createGraphics();
+        try {
+            // Прозрачные области PNG/GIF - на белом фоне (в JPEG нет прозрачности)
+            graphics.setColor(Color.WHITE);
+            graphics.fillRect(0, 0, width, height);
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+        return result;
+    }
+
+    // Запись во временный файл и перенос: параллельная обработка того же фото не увидит недописанный файл
+    private static void writeJpeg(BufferedImage image, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try {
+            try (ImageOutputStream output = ImageIO.createImageOutputStream(temp.toFile())) {
+                ImageWriteParam param = writer.getDefaultWriteParam();
+                param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+                param.setCompressionQuality(JPEG_QUALITY);
+                param.setProgressiveMode(ImageWriteParam.MODE_DEFAULT);
+                writer.setOutput(output);
+                writer.write(null, new IIOImage(image, null, null), param);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            writer.dispose();
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.example.carrental.service;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Формат изображения по первым байтам файла (сигнатуре), а не по Content-Type от браузера
+public enum ImageType {
+    JPEG(".jpg", "image/jpeg"),
+    PNG(".png", "image/png"),
+    GIF(".gif", "image/gif"),
+    WEBP(".webp", "image/webp");
+
+    // Сколько байт от начала файла нужно для определения формата
+    public static final int SIGNATURE_LENGTH = 12;
+
+    private static final byte[] PNG_SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+
+    private final String extension;
+    private final String contentType;
+
+    ImageType(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    // null - не изображение (или формат не поддерживается); позиция буфера не меняется
+    public static ImageType detect(ByteBuffer head) {
+        int start = head.position();
+        int length = head.remaining();
+        if (length >= 3 && head.get(start) == (byte) 0xFF && head.get(start + 1) == (byte) 0xD8
+                && head.get(start + 2) == (byte) 0xFF) {
+            return JPEG;
+        }
+        if (startsWith(head, PNG_SIGNATURE, 0)) {
+            return PNG;
+        }
+        if (startsWith(head, ascii("GIF87a"), 0) || startsWith(head, ascii("GIF89a"), 0)) {
+            return GIF;
+        }
+        if (startsWith(head, ascii("RIFF"), 0) && startsWith(head, ascii("WEBP"), 8)) {
+            return WEBP;
+        }
+        return null;
+    }
+
+    private static boolean startsWith(ByteBuffer head, byte[] signature, int offset) {
+        if (head.remaining() < offset + signature.length) {
+            return false;
+        }
+        for (int i = 0; i < signature.length; i++) {
+            if (head.get(head.position() + offset + i) != signature[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] ascii(String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+}
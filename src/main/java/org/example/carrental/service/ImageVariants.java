@@ -0,0 +1,89 @@
+package org.example.carrental.service;
+
+import org.example.carrental.entity.Car;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+// Уменьшенные копии загруженных фото: где лежат и готовы ли.
+// Имя копии - Car.imageVariantUrl. Когда все копии фото сделаны, рядом с ним записывается
+// файл <фото>.variants с итогом - тем же значением, что хранится у автомобиля (Car.imageVariants):
+// ширины копий через запятую, "" - делать нечего (фото меньше самой маленькой копии или формат не читается)
+@Component
+public class ImageVariants {
+
+    public static final String UPLOADED_PREFIX = "/uploads/images/cars/";
+
+    private final Path storageLocation;
+    private final List<Integer> widths;
+
+    public ImageVariants(@Value("${upload.dir:uploads}") String uploadDir,
+                         @Value("${upload.derivatives.widths:320,640,1280}") String widths) {
+        this.storageLocation = Paths.get(uploadDir, "images", "cars").toAbsolutePath().normalize();
+        this.widths = Arrays.stream(widths.split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .sorted()
+                .distinct()
+                .toList();
+    }
+
+    // Ширины копий по возрастанию
+    public List<Integer> widths() {
+        return widths;
+    }
+
+    // Фото загружено через FileStorageService (у остальных, например /images/cars/..., копий нет)
+    public static boolean isUploaded(String imageUrl) {
+        return imageUrl != null && imageUrl.startsWith(UPLOADED_PREFIX) && !imageUrl.contains("..");
+    }
+
+    public Path originalPath(String imageUrl) {
+        return storageLocation.resolve(imageUrl.substring(UPLOADED_PREFIX.length()));
+    }
+
+    public Path derivativePath(String imageUrl, int width) {
+        return storageLocation.resolve(Car.imageVariantUrl(imageUrl, width).substring(UPLOADED_PREFIX.length()));
+    }
+
+    // Итог обработки фото в формате Car.imageVariants; null - фото еще не обработано (или не загруженное)
+    public String existing(String imageUrl) {
+        if (!isUploaded(imageUrl)) {
+            return null;
+        }
+        try {
+            return Files.readString(markerPath(imageUrl)).trim();
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Записывается последним, когда все копии уже на диске
+    public void markDone(String imageUrl, String variants) throws IOException {
+        Path marker = markerPath(imageUrl);
+        Path temp = marker.resolveSibling(marker.getFileName() + "." + UUID.randomUUID() + ".tmp");
+        try {
+            Files.writeString(temp, variants);
+            Files.move(temp, marker, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private Path markerPath(String imageUrl) {
+        Path original = originalPath(imageUrl);
+        return original.resolveSibling(original.getFileName() + ".variants");
+    }
+}
@@ -0,0 +1,145 @@
+package org.example.carrental.service;
+
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.RentalStatus;
+import org.example.carrental.repository.RentalRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Счетчики аренд менеджера в памяти: количество и выручка по каждому статусу.
+// Загружаются одним GROUP BY запросом при первом обращении, дальше
+// обновляются при каждом сохранении аренды в RentalService.
+@Component
+public class ManagerRentalCounters {
+
+    private final RentalRepository rentalRepository;
+    private final PrimaryReads primaryReads;
+
+    // managerId -> неизменяемый снимок счетчиков (заменяется целиком при изменении)
+    private final ConcurrentHashMap<Long, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    // Изменения аренд, которые уже начались, но еще не учтены в счетчиках,
+    // и общее число учтенных изменений (под this)
+    private int changesInFlight;
+    private long changesApplied;
+
+    @Autowired
+    public ManagerRentalCounters(RentalRepository rentalRepository, PrimaryReads primaryReads) {
+        this.rentalRepository = rentalRepository;
+        this.primaryReads = primaryReads;
+    }
+
+    public Snapshot get(Long managerId) {
+        Snapshot cached = snapshots.get(managerId);
+        if (cached != null) {
+            return cached;
+        }
+
+        long appliedBefore;
+        synchronized (this) {
+            appliedBefore = changesInFlight == 0 ? changesApplied : -1;
+        }
+        Snapshot loaded = load(managerId);
+
+        // Если во время загрузки сохранялись аренды, запрос мог увидеть изменение,
+        // которое потом будет прибавлено еще раз - такой снимок не кэшируем
+        synchronized (this) {
+            if (appliedBefore == changesApplied && changesInFlight == 0) {
+                cached = snapshots.putIfAbsent(managerId, loaded);
+            }
+        }
+        return cached != null ? cached : loaded;
+    }
+
+    // Вызывается перед сохранением аренды
+    public synchronized void beginChange() {
+        changesInFlight++;
+    }
+
+    // Вызывается после сохранения аренды; saved = null - сохранение не удалось
+    public synchronized void endChange(Rental saved, RentalStatus previousStatus) {
+        try {
+            if (saved != null && saved.getStatus() != previousStatus) {
+                apply(saved, previousStatus);
+            }
+        } finally {
+            changesInFlight--;
+            changesApplied++;
+        }
+    }
+
+    public synchronized void clear() {
+        snapshots.clear();
+    }
+
+    private void apply(Rental rental, RentalStatus previousStatus) {
+        if (rental.getCar().getManager() == null) {
+            return;
+        }
+        Long managerId = rental.getCar().getManager().getId();
+        if (previousStatus == RentalStatus.COMPLETED) {
+            // Выручка уходящего статуса неизвестна - перечитаем при следующем обращении
+            snapshots.remove(managerId);
+            return;
+        }
+
+        // Не загружено - при загрузке будет прочитано актуальное состояние из базы
+        snapshots.computeIfPresent(managerId, (id, snapshot) -> snapshot.moved(previousStatus,
+                rental.getStatus(), rental.getActualPrice()));
+    }
+
+    private Snapshot load(Long managerId) {
+        Map<RentalStatus, Long> counts = new EnumMap<>(RentalStatus.class);
+        Map<RentalStatus, BigDecimal> revenue = new EnumMap<>(RentalStatus.class);
+        for (Object[] row : primaryReads.load(() -> rentalRepository.getRentalStatsByManager(managerId))) {
+            RentalStatus status = (RentalStatus) row[0];
+            counts.put(status, (Long) row[1]);
+            revenue.put(status, (BigDecimal) row[2]);
+        }
+        return new Snapshot(counts, revenue);
+    }
+
+    // Количество аренд и сумма фактической стоимости по статусам
+    public record Snapshot(Map<RentalStatus, Long> counts, Map<RentalStatus, BigDecimal> revenue) {
+
+        public Snapshot {
+            counts = Collections.unmodifiableMap(counts);
+            revenue = Collections.unmodifiableMap(revenue);
+        }
+
+        public long count(RentalStatus status) {
+            return counts.getOrDefault(status, 0L);
+        }
+
+        public BigDecimal revenue(RentalStatus status) {
+            return revenue.getOrDefault(status, BigDecimal.ZERO);
+        }
+
+        public long total() {
+            return counts.values().stream().mapToLong(Long::longValue).sum();
+        }
+
+        // Аренда перешла из статуса from (null - новая) в статус to
+        Snapshot moved(RentalStatus from, RentalStatus to, BigDecimal actualPrice) {
+            Map<RentalStatus, Long> newCounts = new EnumMap<>(RentalStatus.class);
+            newCounts.putAll(counts);
+            Map<RentalStatus, BigDecimal> newRevenue = new EnumMap<>(RentalStatus.class);
+            newRevenue.putAll(revenue);
+
+            if (from != null) {
+                newCounts.merge(from, -1L, Long::sum);
+            }
+            newCounts.merge(to, 1L, Long::sum);
+            if (actualPrice != null) {
+                newRevenue.merge(to, actualPrice, BigDecimal::add);
+            }
+            return new Snapshot(newCounts, newRevenue);
+        }
+    }
+}
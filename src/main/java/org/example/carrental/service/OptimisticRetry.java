@@ -0,0 +1,98 @@
+package org.example.carrental.service;
+
+import jakarta.persistence.OptimisticLockException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Повтор изменения, отклоненного оптимистической блокировкой (@Version у Car и Rental):
+// кто-то сохранил ту же запись между чтением и записью. Изменение выполняется заново целиком -
+// с повторным чтением и проверками, - после паузы, которая растет с каждой попыткой (со случайной добавкой,
+// чтобы столкнувшиеся запросы не повторялись одновременно).
+// Вызывается снаружи транзакции и блокировок: повторяется вся транзакция, а пауза не держит блокировку.
+// Счетчики по операциям показывают, где записи чаще всего сталкиваются
+@Component
+public class OptimisticRetry {
+
+    private static final Logger log = LoggerFactory.getLogger(OptimisticRetry.class);
+
+    private final int maxAttempts;
+    private final long backoffMs;
+    private final long maxBackoffMs;
+    private final ConcurrentHashMap<String, Counters> counters = new ConcurrentHashMap<>();
+
+    public OptimisticRetry(@Value("${db.optimistic.max-attempts:5}") int maxAttempts,
+                           @Value("${db.optimistic.backoff-ms:10}") long backoffMs,
+                           @Value("${db.optimistic.max-backoff-ms:200}") long maxBackoffMs) {
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.backoffMs = backoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+    }
+
+    public <T> T run(String operation, Supplier<T> action) {
+        Counters operationCounters = counters.computeIfAbsent(operation, name -> new Counters());
+        operationCounters.calls.incrementAndGet();
+        for (int attempt = 1; ; attempt++) {
+            try {
+                T result = action.get();
+                if (attempt > 1) {
+                    operationCounters.retried.incrementAndGet();
+                }
+                return result;
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                operationCounters.conflicts.incrementAndGet();
+                if (attempt >= maxAttempts) {
+                    operationCounters.failed.incrementAndGet();
+                    log.atWarn().addKeyValue("operation", operation).addKeyValue("attempts", attempt)
+                            .log("Изменение не удалось после повторов: запись постоянно меняют другие запросы");
+                    throw new RuntimeException("Данные изменились одновременно с вашим запросом, попробуйте еще раз", e);
+                }
+                log.atDebug().addKeyValue("operation", operation).addKeyValue("attempt", attempt)
+                        .log("Конфликт версий, повтор");
+                pause(attempt);
+            }
+        }
+    }
+
+    public Snapshot snapshot() {
+        Map<String, OperationSnapshot> operations = new TreeMap<>();
+        counters.forEach((operation, c) -> operations.put(operation, new OperationSnapshot(
+                c.calls.get(), c.conflicts.get(), c.retried.get(), c.failed.get())));
+        return new Snapshot(maxAttempts, operations);
+    }
+
+    // backoffMs, 2*backoffMs, 4*backoffMs... (не больше maxBackoffMs) плюс случайно до столько же
+    private void pause(int attempt) {
+        long delay = Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 20));
+        try {
+            Thread.sleep(delay + ThreadLocalRandom.current().nextLong(delay + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Повтор изменения прерван", e);
+        }
+    }
+
+    private static class Counters {
+        final AtomicLong calls = new AtomicLong();
+        final AtomicLong conflicts = new AtomicLong();
+        final AtomicLong retried = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+    }
+
+    // calls - вызовы; conflicts - все отклоненные попытки; retried - вызовы, удавшиеся после повтора;
+    // failed - вызовы, не удавшиеся за maxAttempts попыток
+    public record OperationSnapshot(long calls, long conflicts, long retried, long failed) {
+    }
+
+    public record Snapshot(int maxAttempts, Map<String, OperationSnapshot> operations) {
+    }
+}
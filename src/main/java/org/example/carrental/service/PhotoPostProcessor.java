@@ -0,0 +1,10 @@
+package org.example.carrental.service;
+
+// Обработка фото после загрузки (уменьшенные копии и т.п.). Вызывается в фоновом потоке
+// FileStorageService, когда запрос уже завершен; бины с этим интерфейсом подключаются автоматически.
+// Одинаковое содержимое хранится одним файлом, но при одновременной загрузке одного и того же фото
+// обработка может выполниться дважды - она должна быть повторяемой
+public interface PhotoPostProcessor {
+
+    void process(FileStorageService.StoredPhoto photo) throws Exception;
+}
@@ -0,0 +1,40 @@
+package org.example.carrental.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionOperations;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+// Загрузка кэшей в памяти (индекс поиска, фасеты каталога, счетчики менеджеров) - только с основной базы.
+// Кэш не получает изменений, сделанных до его загрузки, поэтому снимок отстающей реплики
+// оставался бы устаревшим до следующего сброса. Внутри транзакции readOnly сервиса (она может уйти
+// на реплику) загрузка выполняется в отдельной транзакции без имени - такие реплике не отдаются
+@Component
+public class PrimaryReads {
+
+    private final TransactionOperations separateTransaction;
+
+    @Autowired
+    public PrimaryReads(PlatformTransactionManager transactionManager) {
+        TransactionTemplate template = new TransactionTemplate(transactionManager);
+        template.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        template.setReadOnly(true);
+        this.separateTransaction = template;
+    }
+
+    public PrimaryReads(TransactionOperations separateTransaction) {
+        this.separateTransaction = separateTransaction;
+    }
+
+    public <T> T load(Supplier<T> query) {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return query.get();
+        }
+        return separateTransaction.execute(status -> query.get());
+    }
+}
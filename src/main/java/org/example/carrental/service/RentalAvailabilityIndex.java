@@ -0,0 +1,154 @@
+package org.example.carrental.service;
+
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.RentalStatus;
+import org.example.carrental.repository.RentalRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Индекс занятости автомобилей в памяти: для каждого автомобиля хранится
+// отсортированный по дате начала массив CONFIRMED/ACTIVE аренд.
+// Проверка пересечения - бинарный поиск, O(log n) без запроса в базу.
+@Component
+public class RentalAvailabilityIndex {
+
+    // Статусы, при которых автомобиль занят (совпадает с Rental.isActive())
+    private static final List<RentalStatus> BLOCKING_STATUSES = List.of(
+            RentalStatus.CONFIRMED,
+            RentalStatus.ACTIVE
+    );
+
+    private final RentalRepository rentalRepository;
+
+    // carId -> неизменяемое расписание автомобиля (заменяется целиком при изменении)
+    private final ConcurrentHashMap<Long, CarSchedule> schedules = new ConcurrentHashMap<>();
+
+    @Autowired
+    public RentalAvailabilityIndex(RentalRepository rentalRepository) {
+        this.rentalRepository = rentalRepository;
+    }
+
+    // Есть ли занятая аренда, пересекающаяся с периодом [startDate, endDate]
+    public boolean hasOverlap(Long carId, LocalDateTime startDate, LocalDateTime endDate, Long excludeRentalId) {
+        return scheduleFor(carId).overlaps(startDate, endDate, excludeRentalId);
+    }
+
+    // Вызывается после каждого сохранения аренды со сменой статуса
+    public void onStatusChanged(Rental rental, RentalStatus previousStatus) {
+        boolean wasBlocking = previousStatus != null && BLOCKING_STATUSES.contains(previousStatus);
+        if (!wasBlocking && !rental.isActive()) {
+            return;
+        }
+
+        // Если расписание автомобиля еще не загружено - ничего не делаем,
+        // при первой загрузке оно прочитает уже сохраненное состояние из базы
+        schedules.computeIfPresent(rental.getCar().getId(), (carId, schedule) -> rental.isActive()
+                ? schedule.with(rental.getId(), rental.getStartDate(), rental.getEndDate())
+                : schedule.without(rental.getId()));
+    }
+
+    // Сбросить расписание автомобиля (будет перечитано из базы при следующей проверке)
+    public void evict(Long carId) {
+        schedules.remove(carId);
+    }
+
+    public void clear() {
+        schedules.clear();
+    }
+
+    private CarSchedule scheduleFor(Long carId) {
+        // Загрузка выполняется внутри computeIfAbsent: параллельные onStatusChanged
+        // для этого автомобиля дождутся окончания загрузки и не потеряют изменения
+        return schedules.computeIfAbsent(carId, this::loadSchedule);
+    }
+
+    private CarSchedule loadSchedule(Long carId) {
+        List<Object[]> rows = rentalRepository.findRentalPeriodsByCarAndStatusIn(carId, BLOCKING_STATUSES);
+        CarSchedule schedule = CarSchedule.EMPTY;
+        for (Object[] row : rows) {
+            schedule = schedule.with((Long) row[0], (LocalDateTime) row[1], (LocalDateTime) row[2]);
+        }
+        return schedule;
+    }
+
+    // Неизменяемое расписание одного автомобиля.
+    // entries отсортирован по дате начала, maxEnds[i] - максимальная дата окончания среди первых i+1 аренд,
+    // поэтому пересечение с [start, end] есть тогда и только тогда, когда
+    // среди аренд с началом <= end максимальное окончание >= start.
+    static final class CarSchedule {
+
+        static final CarSchedule EMPTY = new CarSchedule(new Entry[0]);
+
+        private final Entry[] entries;
+        private final LocalDateTime[] maxEnds;
+
+        private CarSchedule(Entry[] entries) {
+            this.entries = entries;
+            this.maxEnds = new LocalDateTime[entries.length];
+            for (int i = 0; i < entries.length; i++) {
+                LocalDateTime end = entries[i].endDate;
+                maxEnds[i] = (i == 0 || end.isAfter(maxEnds[i - 1])) ? end : maxEnds[i - 1];
+            }
+        }
+
+        boolean overlaps(LocalDateTime start, LocalDateTime end, Long excludeRentalId) {
+            int last = lastStartingNotAfter(end);
+            if (last < 0 || maxEnds[last].isBefore(start)) {
+                return false;
+            }
+            if (excludeRentalId == null) {
+                return true;
+            }
+
+            // Кандидат может оказаться самой исключаемой арендой - уточняем перебором
+            for (int i = last; i >= 0; i--) {
+                Entry entry = entries[i];
+                if (!entry.rentalId.equals(excludeRentalId) && !entry.endDate.isBefore(start)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        CarSchedule with(Long rentalId, LocalDateTime startDate, LocalDateTime endDate) {
+            Entry[] base = without(rentalId).entries;
+            Entry[] updated = Arrays.copyOf(base, base.length + 1);
+            updated[base.length] = new Entry(rentalId, startDate, endDate);
+            Arrays.sort(updated, Entry.ORDER);
+            return new CarSchedule(updated);
+        }
+
+        CarSchedule without(Long rentalId) {
+            Entry[] updated = Arrays.stream(entries)
+                    .filter(entry -> !entry.rentalId.equals(rentalId))
+                    .toArray(Entry[]::new);
+            return updated.length == entries.length ? this : new CarSchedule(updated);
+        }
+
+        // Индекс последней аренды с датой начала <= date, либо -1
+        private int lastStartingNotAfter(LocalDateTime date) {
+            int low = 0;
+            int high = entries.length - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (entries[mid].startDate.isAfter(date)) {
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            return high;
+        }
+    }
+
+    private record Entry(Long rentalId, LocalDateTime startDate, LocalDateTime endDate) {
+        static final Comparator<Entry> ORDER = Comparator.comparing(Entry::startDate)
+                .thenComparing(Entry::rentalId);
+    }
+}
@@ -1,13 +1,23 @@
 package org.example.carrental.service;
 
+import org.example.carrental.dto.CursorPage;
 import org.example.carrental.entity.*;
 import org.example.carrental.repository.RentalRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Arrays;
+import java.util.function.Function;
 
 @Service
 public class RentalService {
@@ -15,6 +25,11 @@ public class RentalService {
     private final RentalRepository rentalRepository;
     private final CarService carService;
     private final UserService userService;
+    private final RentalAvailabilityIndex availabilityIndex;
+    private final BookingCoordinator bookingCoordinator;
+    private final ManagerRentalCounters managerCounters;
+    private final OptimisticRetry optimisticRetry;
+    private final TransactionTemplate transactionTemplate;
 
     // Статусы, которые считаются "активными" (автомобиль занят)
     private final List<RentalStatus> ACTIVE_STATUSES = Arrays.asList(
@@ -23,33 +38,86 @@ public class RentalService {
     );
 
     @Autowired
-    public RentalService(RentalRepository rentalRepository, CarService carService, UserService userService) {
+    public RentalService(RentalRepository rentalRepository, CarService carService, UserService userService,
+                         RentalAvailabilityIndex availabilityIndex, BookingCoordinator bookingCoordinator,
+                         ManagerRentalCounters managerCounters, OptimisticRetry optimisticRetry,
+                         PlatformTransactionManager transactionManager) {
         this.rentalRepository = rentalRepository;
         this.carService = carService;
         this.userService = userService;
+        this.availabilityIndex = availabilityIndex;
+        this.bookingCoordinator = bookingCoordinator;
+        this.managerCounters = managerCounters;
+        this.optimisticRetry = optimisticRetry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     // === МЕТОДЫ ДЛЯ МЕНЕДЖЕРА ===
 
     // Получить все аренды для автомобилей менеджера
+    @Transactional(readOnly = true)
     public List<Rental> getAllRentalsByManager(Long managerId) {
         User manager = userService.getUserById(managerId);
         return rentalRepository.findByCar_Manager(manager);
     }
 
+    // Аренды менеджера, требующие внимания (ожидающие, подтвержденные, активные):
+    // один запрос вместе с автомобилями и клиентами, разбивка по статусам - в памяти
+    @Transactional(readOnly = true)
+    public ManagerRentalBoard getManagerRentalBoard(Long managerId) {
+        List<RentalStatus> statuses = new ArrayList<>(ACTIVE_STATUSES);
+        statuses.add(RentalStatus.PENDING);
+
+        List<Rental> pending = new ArrayList<>();
+        List<Rental> active = new ArrayList<>();
+        for (Rental rental : rentalRepository.findBoardByManager(managerId, statuses)) {
+            if (rental.getStatus() == RentalStatus.PENDING) {
+                pending.add(rental);
+            } else {
+                active.add(rental);
+            }
+        }
+        return new ManagerRentalBoard(pending, active);
+    }
+
+    // Страница аренд менеджера по дате начала; курсор - "startDate_id" последней аренды страницы
+    @Transactional(readOnly = true)
+    public CursorPage<Rental> getRentalsByManagerPage(Long managerId, String after, Integer size) {
+        int pageSize = CursorPage.pageSize(size);
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<Rental> fetched;
+        if (after == null || after.isBlank()) {
+            fetched = rentalRepository.findFirstPageByManager(managerId, limit);
+        } else {
+            int separator = after.lastIndexOf('_');
+            try {
+                LocalDateTime afterStart = LocalDateTime.parse(after.substring(0, separator));
+                Long afterId = Long.parseLong(after.substring(separator + 1));
+                fetched = rentalRepository.findPageByManagerAfter(managerId, afterStart, afterId, limit);
+            } catch (DateTimeParseException | NumberFormatException | StringIndexOutOfBoundsException e) {
+                throw new RuntimeException("Некорректный курсор страницы: " + after);
+            }
+        }
+        return CursorPage.of(fetched, pageSize, rental -> rental.getStartDate() + "_" + rental.getId());
+    }
+
     // Получить ожидающие аренды для менеджера
+    @Transactional(readOnly = true)
     public List<Rental> getPendingRentalsByManager(Long managerId) {
         User manager = userService.getUserById(managerId);
         return rentalRepository.findByCar_ManagerAndStatus(manager, RentalStatus.PENDING);
     }
 
     // Получить активные аренды для менеджера
+    @Transactional(readOnly = true)
     public List<Rental> getActiveRentalsByManager(Long managerId) {
         User manager = userService.getUserById(managerId);
         return rentalRepository.findByCar_ManagerAndStatusIn(manager, ACTIVE_STATUSES);
     }
 
     // Получить завершенные аренды для менеджера
+    @Transactional(readOnly = true)
     public List<Rental> getCompletedRentalsByManager(Long managerId) {
         User manager = userService.getUserById(managerId);
         return rentalRepository.findByCar_ManagerAndStatus(manager, RentalStatus.COMPLETED);
@@ -57,78 +125,76 @@ public class RentalService {
 
     // Одобрить аренду (менеджер)
     public Rental approveRental(Long rentalId, Long managerId) {
-        User manager = userService.getUserById(managerId);
-        Rental rental = getRentalById(rentalId);
-
-        // Проверяем что менеджер имеет право на эту аренду
-        if (!rental.getCar().getManager().getId().equals(managerId)) {
-            throw new RuntimeException("У вас нет прав для управления этой арендой!");
-        }
-
-        // Проверяем статус
-        if (rental.getStatus() != RentalStatus.PENDING) {
-            throw new RuntimeException("Можно одобрять только аренды со статусом 'Ожидает подтверждения'!");
-        }
-
-        // Проверяем доступность автомобиля
-        if (!isCarAvailableForRental(rental.getCar(), rental.getStartDate(), rental.getEndDate(), rentalId)) {
-            throw new RuntimeException("Автомобиль недоступен в выбранные даты!");
-        }
-
-        rental.setStatus(RentalStatus.CONFIRMED);
-        return rentalRepository.save(rental);
+        return withRentalLocked("rental.approve", rentalId, rental -> {
+            // Проверяем что менеджер имеет право на эту аренду
+            if (!rental.getCar().getManager().getId().equals(managerId)) {
+                throw new RuntimeException("У вас нет прав для управления этой арендой!");
+            }
+
+            // Проверяем статус
+            if (rental.getStatus() != RentalStatus.PENDING) {
+                throw new RuntimeException("Можно одобрять только аренды со статусом 'Ожидает подтверждения'!");
+            }
+
+            // Проверяем доступность автомобиля (с перепроверкой в базе перед записью)
+            if (!isCarAvailableForRental(rental.getCar(), rental.getStartDate(), rental.getEndDate(), rentalId, true)) {
+                throw new RuntimeException("Автомобиль недоступен в выбранные даты!");
+            }
+
+            rental.setStatus(RentalStatus.CONFIRMED);
+            return saveStatusChange(rental, RentalStatus.PENDING);
+        });
     }
 
     // Отклонить аренду (менеджер)
     public Rental rejectRental(Long rentalId, Long managerId, String reason) {
-        User manager = userService.getUserById(managerId);
-        Rental rental = getRentalById(rentalId);
-
-        // Проверяем что менеджер имеет право на эту аренду
-        if (!rental.getCar().getManager().getId().equals(managerId)) {
-            throw new RuntimeException("У вас нет прав для управления этой арендой!");
-        }
-
-        // Проверяем статус
-        if (rental.getStatus() != RentalStatus.PENDING) {
-            throw new RuntimeException("Можно отклонять только аренды со статусом 'Ожидает подтверждения'!");
-        }
-
-        rental.setStatus(RentalStatus.REJECTED);
-        if (reason != null && !reason.trim().isEmpty()) {
-            rental.setRejectionReason(reason);
-        }
-
-        return rentalRepository.save(rental);
+        return withRentalLocked("rental.reject", rentalId, rental -> {
+            // Проверяем что менеджер имеет право на эту аренду
+            if (!rental.getCar().getManager().getId().equals(managerId)) {
+                throw new RuntimeException("У вас нет прав для управления этой арендой!");
+            }
+
+            // Проверяем статус
+            if (rental.getStatus() != RentalStatus.PENDING) {
+                throw new RuntimeException("Можно отклонять только аренды со статусом 'Ожидает подтверждения'!");
+            }
+
+            rental.setStatus(RentalStatus.REJECTED);
+            if (reason != null && !reason.trim().isEmpty()) {
+                rental.setRejectionReason(reason);
+            }
+
+            return saveStatusChange(rental, RentalStatus.PENDING);
+        });
     }
 
     // Завершить аренду (менеджер)
     public Rental completeRental(Long rentalId, Long managerId) {
-        User manager = userService.getUserById(managerId);
-        Rental rental = getRentalById(rentalId);
-
-        // Проверяем что менеджер имеет право на эту аренду
-        if (!rental.getCar().getManager().getId().equals(managerId)) {
-            throw new RuntimeException("У вас нет прав для управления этой арендой!");
-        }
-
-        // Проверяем статус
-        if (rental.getStatus() != RentalStatus.ACTIVE && rental.getStatus() != RentalStatus.CONFIRMED) {
-            throw new RuntimeException("Можно завершать только активные или подтвержденные аренды!");
-        }
-
-        rental.setStatus(RentalStatus.COMPLETED);
-        rental.setActualEndDate(LocalDateTime.now());
-
-        // Расчет фактической стоимости
-        if (rental.getActualEndDate() != null && rental.getStartDate() != null) {
-            long actualDays = java.time.Duration.between(rental.getStartDate(), rental.getActualEndDate()).toDays();
-            if (actualDays < 1) actualDays = 1;
-            BigDecimal actualPrice = BigDecimal.valueOf(rental.getCar().getPricePerDay() * actualDays);
-            rental.setActualPrice(actualPrice);
-        }
-
-        return rentalRepository.save(rental);
+        return withRentalLocked("rental.complete", rentalId, rental -> {
+            // Проверяем что менеджер имеет право на эту аренду
+            if (!rental.getCar().getManager().getId().equals(managerId)) {
+                throw new RuntimeException("У вас нет прав для управления этой арендой!");
+            }
+
+            // Проверяем статус
+            if (rental.getStatus() != RentalStatus.ACTIVE && rental.getStatus() != RentalStatus.CONFIRMED) {
+                throw new RuntimeException("Можно завершать только активные или подтвержденные аренды!");
+            }
+
+            RentalStatus previousStatus = rental.getStatus();
+            rental.setStatus(RentalStatus.COMPLETED);
+            rental.setActualEndDate(LocalDateTime.now());
+
+            // Расчет фактической стоимости
+            if (rental.getActualEndDate() != null && rental.getStartDate() != null) {
+                long actualDays = java.time.Duration.between(rental.getStartDate(), rental.getActualEndDate()).toDays();
+                if (actualDays < 1) actualDays = 1;
+                BigDecimal actualPrice = BigDecimal.valueOf(rental.getCar().getPricePerDay() * actualDays);
+                rental.setActualPrice(actualPrice);
+            }
+
+            return saveStatusChange(rental, previousStatus);
+        });
     }
 
     // === СУЩЕСТВУЮЩИЕ МЕТОДЫ (оставляем без изменений) ===
@@ -149,13 +215,16 @@ public class RentalService {
             throw new RuntimeException("Только клиенты могут арендовать автомобили!");
         }
 
-        if (!isCarAvailableForRental(car, startDate, endDate, null)) {
-            throw new RuntimeException("Автомобиль недоступен в выбранные даты!");
-        }
+        // Проверка занятости и запись выполняются под блокировкой автомобиля
+        return bookingCoordinator.withCarLock(car.getId(), () -> {
+            if (!isCarAvailableForRental(car, startDate, endDate, null, false)) {
+                throw new RuntimeException("Автомобиль недоступен в выбранные даты!");
+            }
 
-        BigDecimal totalPrice = calculatePrice(car, startDate, endDate);
-        Rental rental = new Rental(user, car, startDate, endDate, totalPrice);
-        return rentalRepository.save(rental);
+            BigDecimal totalPrice = calculatePrice(car, startDate, endDate);
+            Rental rental = new Rental(user, car, startDate, endDate, totalPrice);
+            return saveStatusChange(rental, null);
+        });
     }
 
     public Rental confirmRental(Long rentalId, User manager) {
@@ -163,68 +232,70 @@ public class RentalService {
             throw new RuntimeException("Только менеджеры и администраторы могут подтверждать аренды!");
         }
 
-        Rental rental = getRentalById(rentalId);
-
-        if (rental.getStatus() != RentalStatus.PENDING) {
-            throw new RuntimeException("Можно подтверждать только аренды со статусом PENDING!");
-        }
+        return withRentalLocked("rental.confirm", rentalId, rental -> {
+            if (rental.getStatus() != RentalStatus.PENDING) {
+                throw new RuntimeException("Можно подтверждать только аренды со статусом PENDING!");
+            }
 
-        if (!isCarAvailableForRental(rental.getCar(), rental.getStartDate(), rental.getEndDate(), rentalId)) {
-            throw new RuntimeException("Автомобиль больше недоступен в выбранные даты!");
-        }
+            if (!isCarAvailableForRental(rental.getCar(), rental.getStartDate(), rental.getEndDate(), rentalId, true)) {
+                throw new RuntimeException("Автомобиль больше недоступен в выбранные даты!");
+            }
 
-        rental.setStatus(RentalStatus.CONFIRMED);
-        return rentalRepository.save(rental);
+            rental.setStatus(RentalStatus.CONFIRMED);
+            return saveStatusChange(rental, RentalStatus.PENDING);
+        });
     }
 
     public Rental startRental(Long rentalId) {
-        Rental rental = getRentalById(rentalId);
-
-        if (rental.getStatus() != RentalStatus.CONFIRMED) {
-            throw new RuntimeException("Можно начинать только подтвержденные аренды!");
-        }
-
-        if (rental.getStartDate().isAfter(LocalDateTime.now())) {
-            throw new RuntimeException("Еще не время начинать аренду!");
-        }
-
-        rental.setStatus(RentalStatus.ACTIVE);
-        return rentalRepository.save(rental);
+        return withRentalLocked("rental.start", rentalId, rental -> {
+            if (rental.getStatus() != RentalStatus.CONFIRMED) {
+                throw new RuntimeException("Можно начинать только подтвержденные аренды!");
+            }
+
+            if (rental.getStartDate().isAfter(LocalDateTime.now())) {
+                throw new RuntimeException("Еще не время начинать аренду!");
+            }
+
+            rental.setStatus(RentalStatus.ACTIVE);
+            return saveStatusChange(rental, RentalStatus.CONFIRMED);
+        });
     }
 
     public Rental completeRental(Long rentalId) {
-        Rental rental = getRentalById(rentalId);
-
-        if (rental.getStatus() != RentalStatus.ACTIVE) {
-            throw new RuntimeException("Можно завершать только активные аренды!");
-        }
-
-        rental.setStatus(RentalStatus.COMPLETED);
-        return rentalRepository.save(rental);
+        return withRentalLocked("rental.complete", rentalId, rental -> {
+            if (rental.getStatus() != RentalStatus.ACTIVE) {
+                throw new RuntimeException("Можно завершать только активные аренды!");
+            }
+
+            rental.setStatus(RentalStatus.COMPLETED);
+            return saveStatusChange(rental, RentalStatus.ACTIVE);
+        });
     }
 
     public Rental cancelRental(Long rentalId, User user) {
-        Rental rental = getRentalById(rentalId);
-
-        boolean isOwner = rental.getUser().getId().equals(user.getId());
-        boolean isManagerOrAdmin = user.isManager() || user.isAdmin();
-
-        if (!isOwner && !isManagerOrAdmin) {
-            throw new RuntimeException("Недостаточно прав для отмены аренды!");
-        }
-
-        if (rental.getStatus() == RentalStatus.COMPLETED || rental.getStatus() == RentalStatus.CANCELLED) {
-            throw new RuntimeException("Нельзя отменить завершенную или уже отмененную аренду!");
-        }
-
-        rental.setStatus(RentalStatus.CANCELLED);
-        return rentalRepository.save(rental);
+        return withRentalLocked("rental.cancel", rentalId, rental -> {
+            boolean isOwner = rental.getUser().getId().equals(user.getId());
+            boolean isManagerOrAdmin = user.isManager() || user.isAdmin();
+
+            if (!isOwner && !isManagerOrAdmin) {
+                throw new RuntimeException("Недостаточно прав для отмены аренды!");
+            }
+
+            if (rental.getStatus() == RentalStatus.COMPLETED || rental.getStatus() == RentalStatus.CANCELLED) {
+                throw new RuntimeException("Нельзя отменить завершенную или уже отмененную аренду!");
+            }
+
+            RentalStatus previousStatus = rental.getStatus();
+            rental.setStatus(RentalStatus.CANCELLED);
+            return saveStatusChange(rental, previousStatus);
+        });
     }
 
     // === ВСПОМОГАТЕЛЬНЫЕ МЕТОДЫ ===
 
+    // Аренда вместе с автомобилем и клиентом
     public Rental getRentalById(Long id) {
-        return rentalRepository.findById(id)
+        return rentalRepository.findWithCarAndUserById(id)
                 .orElseThrow(() -> new RuntimeException("Аренда не найдена с ID: " + id));
     }
 
@@ -243,13 +314,75 @@ public class RentalService {
     }
 
     // Обновленная проверка доступности с учетом текущей аренды
-    private boolean isCarAvailableForRental(Car car, LocalDateTime startDate, LocalDateTime endDate, Long currentRentalId) {
+    private boolean isCarAvailableForRental(Car car, LocalDateTime startDate, LocalDateTime endDate,
+                                            Long currentRentalId, boolean verifyInDatabase) {
         if (!car.getAvailable()) {
             return false;
         }
 
-        // Проверяем наложение аренд, исключая текущую аренду (для редактирования)
-        return !rentalRepository.existsOverlappingRental(car.getId(), startDate, endDate, currentRentalId, ACTIVE_STATUSES);
+        // Проверяем наложение аренд по индексу в памяти, исключая текущую аренду (для редактирования)
+        if (availabilityIndex.hasOverlap(car.getId(), startDate, endDate, currentRentalId)) {
+            return false;
+        }
+
+        // Перед записью, которая занимает автомобиль, перепроверяем в базе
+        if (verifyInDatabase && rentalRepository.existsOverlappingRental(
+                car.getId(), startDate, endDate, currentRentalId, ACTIVE_STATUSES)) {
+            // Индекс разошелся с базой - перечитаем расписание автомобиля
+            availabilityIndex.evict(car.getId());
+            return false;
+        }
+        return true;
+    }
+
+    // Выполнить изменение аренды под блокировкой ее автомобиля.
+    // Аренда перечитывается уже под блокировкой, чтобы проверки видели актуальный статус.
+    // Чтение и запись - в одной транзакции: сохраняется та же загруженная аренда
+    // (с автомобилем и клиентом), а не ее копия с незагруженными связями.
+    // Блокировка автомобиля - только в этом процессе; если аренду одновременно изменили в обход нее
+    // (другой экземпляр приложения), запись отклоняется по версии и изменение повторяется целиком
+    private Rental withRentalLocked(String operation, Long rentalId, Function<Rental, Rental> action) {
+        return optimisticRetry.run(operation, () -> {
+            Long carId = rentalRepository.findCarIdByRentalId(rentalId)
+                    .orElseThrow(() -> new RuntimeException("Аренда не найдена с ID: " + rentalId));
+            return bookingCoordinator.withCarLock(carId,
+                    () -> transactionTemplate.execute(status -> action.apply(getRentalById(rentalId))));
+        });
+    }
+
+    // Сохранить аренду; индекс занятости и счетчики менеджера обновляются после фиксации
+    private Rental saveStatusChange(Rental rental, RentalStatus previousStatus) {
+        managerCounters.beginChange();
+        Rental saved;
+        try {
+            saved = rentalRepository.save(rental);
+        } catch (RuntimeException e) {
+            managerCounters.endChange(null, previousStatus);
+            throw e;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    onSaved(status == STATUS_COMMITTED ? saved : null, previousStatus);
+                }
+            });
+        } else {
+            onSaved(saved, previousStatus);
+        }
+        return saved;
+    }
+
+    // saved = null - транзакция откатилась, изменения не было
+    private void onSaved(Rental saved, RentalStatus previousStatus) {
+        try {
+            if (saved != null) {
+                availabilityIndex.onStatusChanged(saved, previousStatus);
+            }
+        } finally {
+            managerCounters.endChange(saved, previousStatus);
+        }
     }
 
     private BigDecimal calculatePrice(Car car, LocalDateTime start, LocalDateTime end) {
@@ -258,20 +391,24 @@ public class RentalService {
         return BigDecimal.valueOf(car.getPricePerDay() * days);
     }
 
-    // Статистика для менеджера
+    // Статистика для менеджера (из счетчиков в памяти, без чтения аренд)
     public ManagerRentalStats getManagerRentalStats(Long managerId) {
-        User manager = userService.getUserById(managerId);
-        List<Rental> allRentals = rentalRepository.findByCar_Manager(manager);
+        ManagerRentalCounters.Snapshot counters = managerCounters.get(managerId);
+
+        long activeCount = ACTIVE_STATUSES.stream().mapToLong(counters::count).sum();
+        return new ManagerRentalStats(counters.count(RentalStatus.PENDING), activeCount,
+                counters.count(RentalStatus.COMPLETED), counters.revenue(RentalStatus.COMPLETED), counters.total());
+    }
 
-        long pendingCount = allRentals.stream().filter(r -> r.getStatus() == RentalStatus.PENDING).count();
-        long activeCount = allRentals.stream().filter(r -> ACTIVE_STATUSES.contains(r.getStatus())).count();
-        long completedCount = allRentals.stream().filter(r -> r.getStatus() == RentalStatus.COMPLETED).count();
-        BigDecimal totalRevenue = allRentals.stream()
-                .filter(r -> r.getStatus() == RentalStatus.COMPLETED && r.getActualPrice() != null)
-                .map(Rental::getActualPrice)
-                .reduce(BigDecimal.ZERO, BigDecimal::add);
+    // Аренды для панели менеджера, разбитые по статусам
+    public static class ManagerRentalBoard {
+        public final List<Rental> pendingRentals;
+        public final List<Rental> activeRentals;
 
-        return new ManagerRentalStats(pendingCount, activeCount, completedCount, totalRevenue, allRentals.size());
+        public ManagerRentalBoard(List<Rental> pendingRentals, List<Rental> activeRentals) {
+            this.pendingRentals = pendingRentals;
+            this.activeRentals = activeRentals;
+        }
     }
 
     // DTO для статистики менеджера
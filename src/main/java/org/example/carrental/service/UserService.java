@@ -1,9 +1,12 @@
 package org.example.carrental.service;
 
 import jakarta.annotation.PostConstruct;
+import org.example.carrental.dto.SessionUser;
 import org.example.carrental.entity.User;
 import org.example.carrental.entity.UserRole;
 import org.example.carrental.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import java.util.List;
@@ -12,11 +15,15 @@ import java.util.Optional;
 @Service
 public class UserService {
 
+    private static final Logger log = LoggerFactory.getLogger(UserService.class);
+
     private final UserRepository userRepository;
+    private final UserVersionRegistry userVersions;
 
     @Autowired
-    public UserService(UserRepository userRepository) {
+    public UserService(UserRepository userRepository, UserVersionRegistry userVersions) {
         this.userRepository = userRepository;
+        this.userVersions = userVersions;
     }
 
     // РЕГИСТРАЦИЯ КЛИЕНТА
@@ -65,7 +72,9 @@ public class UserService {
 
         // 3. ОДОБРЕНИЕ
         // manager.setApproved(true);
-        return userRepository.save(manager);
+        User saved = userRepository.save(manager);
+        userVersions.bump(saved.getId());
+        return saved;
     }
     // В UserService добавить:
     public List<User> getAllUsers() {
@@ -94,6 +103,23 @@ public class UserService {
                 .orElseThrow(() -> new RuntimeException("Пользователь не найден с ID: " + id));
     }
 
+    // СНИМОК ДЛЯ СЕССИИ
+    public SessionUser toSessionUser(User user) {
+        return SessionUser.of(user, userVersions.currentVersion(user.getId()));
+    }
+
+    // Тот же снимок, если пользователь не менялся; иначе - свежий из базы (null - пользователь удален).
+    // Номер читается до загрузки: изменение во время загрузки снимок обновит при следующем запросе
+    public SessionUser refreshSessionUser(SessionUser sessionUser) {
+        long version = userVersions.currentVersion(sessionUser.getId());
+        if (version == sessionUser.getVersion()) {
+            return sessionUser;
+        }
+        return userRepository.findById(sessionUser.getId())
+                .map(user -> SessionUser.of(user, version))
+                .orElse(null);
+    }
+
     public User getUserByEmail(String email) {
         return userRepository.findByEmail(email)
                 .orElseThrow(() -> new RuntimeException("Пользователь не найден с email: " + email));
@@ -111,7 +137,9 @@ public class UserService {
             user.setDriverLicense(driverLicense);
         }
 
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+        userVersions.bump(saved.getId());
+        return saved;
     }
 
     // ПОИСК И ФИЛЬТРАЦИЯ
@@ -146,7 +174,7 @@ public class UserService {
                     "+79991234567", "AB12345678");
             userRepository.save(client);
 
-            System.out.println("Созданы тестовые пользователи");
+            log.info("Созданы тестовые пользователи");
         }
     }
     // Добавь этот геттер в UserService
@@ -0,0 +1,22 @@
+package org.example.carrental.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+// Номера изменений пользователей: каждое изменение пользователя увеличивает его номер,
+// по нему снимки в сессиях (SessionUser) понимают, что устарели.
+// Хранятся только для измененных пользователей (у остальных - 0), живут в памяти вместе с сессиями.
+@Component
+public class UserVersionRegistry {
+
+    private final ConcurrentHashMap<Long, Long> versions = new ConcurrentHashMap<>();
+
+    public long currentVersion(Long userId) {
+        return versions.getOrDefault(userId, 0L);
+    }
+
+    public void bump(Long userId) {
+        versions.merge(userId, 1L, Long::sum);
+    }
+}
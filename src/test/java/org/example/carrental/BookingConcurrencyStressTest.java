@@ -0,0 +1,143 @@
+package org.example.carrental;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.RentalStatus;
+import org.example.carrental.entity.User;
+import org.example.carrental.repository.RentalRepository;
+import org.example.carrental.service.BookingCoordinator;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.RentalService;
+import org.example.carrental.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BookingConcurrencyStressTest {
+
+    private static final int THREADS = 16;
+
+    @Test
+    public void testConcurrentApprovalsNeverDoubleBook() throws Exception {
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarService carService = context.getBean(CarService.class);
+            UserService userService = context.getBean(UserService.class);
+            RentalService rentalService = context.getBean(RentalService.class);
+            RentalRepository rentalRepository = context.getBean(RentalRepository.class);
+
+            User manager = userService.registerManager("stress-manager@rental.com", "pass", "Стресс Менеджер", "+7000");
+            User client = userService.registerClient("stress-client@rental.com", "pass", "Стресс Клиент", "+7001", "ST0000001");
+
+            List<Car> cars = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                Car car = new Car("Stress", "Car" + i, 2024, 500.0, "Бензин", "Автомат", "Седан");
+                car.setVin("STRESS" + i);
+                cars.add(carService.addCar(car, manager));
+            }
+
+            // Счетчики загружены до нагрузки - дальше обновляются только по изменениям
+            assertEquals(0, rentalService.getManagerRentalStats(manager.getId()).totalCount);
+
+            // Небольшое число окон на автомобиль - почти все попытки пересекаются между собой
+            LocalDateTime base = LocalDateTime.now().plusDays(30).truncatedTo(ChronoUnit.HOURS);
+            int attempts = 2000;
+            AtomicInteger approved = new AtomicInteger();
+            AtomicInteger rejected = new AtomicInteger();
+
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            for (int i = 0; i < attempts; i++) {
+                executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    Car car = cars.get(random.nextInt(cars.size()));
+                    LocalDateTime start = base.plusDays(random.nextInt(10));
+                    LocalDateTime end = start.plusDays(1 + random.nextInt(3));
+                    try {
+                        Rental rental = rentalService.createRentalRequest(car.getId(), client.getId(), start, end);
+                        rentalService.approveRental(rental.getId(), manager.getId());
+                        approved.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        rejected.incrementAndGet();
+                    }
+                });
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(5, TimeUnit.MINUTES));
+
+            assertEquals(attempts, approved.get() + rejected.get());
+            assertTrue(approved.get() > 0);
+
+            // Счетчики менеджера, обновлявшиеся параллельно, совпадают с пересчетом по базе
+            List<Rental> managerRentals = rentalRepository.findByCar_Manager(manager);
+            RentalService.ManagerRentalStats stats = rentalService.getManagerRentalStats(manager.getId());
+            assertEquals(managerRentals.size(), stats.totalCount);
+            assertEquals(managerRentals.stream().filter(r -> r.getStatus() == RentalStatus.PENDING).count(), stats.pendingCount);
+            assertEquals(managerRentals.stream().filter(Rental::isActive).count(), stats.activeCount);
+
+            for (Car car : cars) {
+                List<Rental> confirmed = rentalRepository.findByCar(car).stream()
+                        .filter(r -> r.getStatus() == RentalStatus.CONFIRMED)
+                        .sorted(Comparator.comparing(Rental::getStartDate))
+                        .toList();
+                for (int i = 1; i < confirmed.size(); i++) {
+                    Rental previous = confirmed.get(i - 1);
+                    Rental current = confirmed.get(i);
+                    assertTrue(previous.getEndDate().isBefore(current.getStartDate()),
+                            "Двойное бронирование автомобиля " + car.getId() + ": аренды "
+                                    + previous.getId() + " и " + current.getId());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testDifferentCarsDoNotContend() throws Exception {
+        BookingCoordinator coordinator = new BookingCoordinator();
+
+        // Критическая секция ~1 мс: с одним автомобилем потоки выстраиваются в очередь,
+        // с автомобилем на каждый поток работают параллельно
+        long singleCar = runCoordinatorLoad(coordinator, 1);
+        long carPerThread = runCoordinatorLoad(coordinator, THREADS);
+
+        assertTrue(carPerThread * 4 < singleCar,
+                "Пропускная способность не растет с числом автомобилей: " + singleCar + " мс против " + carPerThread + " мс");
+    }
+
+    private long runCoordinatorLoad(BookingCoordinator coordinator, int carCount) throws Exception {
+        int operations = 800;
+        AtomicInteger violations = new AtomicInteger();
+        int[] perCarInside = new int[carCount];
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long started = System.nanoTime();
+        for (int i = 0; i < operations; i++) {
+            long carId = i % carCount;
+            executor.submit(() -> coordinator.withCarLock(carId, () -> {
+                if (++perCarInside[(int) carId] != 1) {
+                    violations.incrementAndGet();
+                }
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                perCarInside[(int) carId]--;
+                return null;
+            }));
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(2, TimeUnit.MINUTES));
+
+        assertEquals(0, violations.get());
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+}
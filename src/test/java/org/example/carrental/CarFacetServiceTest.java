@@ -0,0 +1,106 @@
+package org.example.carrental;
+
+import org.example.carrental.repository.CarRepository;
+import org.example.carrental.service.CarFacetService;
+import org.example.carrental.service.CarFacetService.CarFacets;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarFacetServiceTest {
+
+    private static final CarFacets TOYOTA = new CarFacets("Toyota", "Седан", "Бензин", "Автомат", true);
+    private static final CarFacets BMW = new CarFacets("BMW", "Внедорожник", "Дизель", "Автомат", true);
+
+    @Test
+    public void testDeltasUpdateLoadedCounts() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(row(TOYOTA, 2L));
+        rows.add(row(BMW, 1L));
+        AtomicInteger queries = new AtomicInteger();
+        CarFacetService facets = new CarFacetService(repositoryReturning(rows, queries), RepositoryStub.directReads());
+
+        Map<String, Map<String, Long>> loaded = facets.getFacetCounts();
+        assertEquals(Map.of("Toyota", 2L, "BMW", 1L), loaded.get(CarFacetService.BRANDS));
+        assertEquals(Map.of("Автомат", 3L), loaded.get(CarFacetService.TRANSMISSIONS));
+        assertEquals(Map.of("true", 3L), loaded.get(CarFacetService.AVAILABILITY));
+
+        // Добавлен автомобиль новой марки
+        CarFacets kia = new CarFacets("Kia", "Хэтчбек", "Бензин", "Механика", true);
+        change(facets, null, kia);
+        // Toyota арендована
+        change(facets, TOYOTA, new CarFacets("Toyota", "Седан", "Бензин", "Автомат", false));
+        // Фильтры не изменились (например, новое фото)
+        change(facets, BMW, BMW);
+        // Единственный BMW сменил марку: значение с нулевым количеством исчезает из списков
+        change(facets, BMW, new CarFacets("Mini", "Внедорожник", "Дизель", "Автомат", true));
+
+        Map<String, Map<String, Long>> updated = facets.getFacetCounts();
+        assertEquals(Map.of("Toyota", 2L, "Kia", 1L, "Mini", 1L), updated.get(CarFacetService.BRANDS));
+        assertEquals(Map.of("Автомат", 3L, "Механика", 1L), updated.get(CarFacetService.TRANSMISSIONS));
+        assertEquals(Map.of("true", 3L, "false", 1L), updated.get(CarFacetService.AVAILABILITY));
+        assertEquals(List.of("Kia", "Mini", "Toyota"), facets.getFilterOptions().get(CarFacetService.BRANDS));
+
+        // Один GROUP BY запрос на все обращения
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void testSnapshotLoadedDuringChangeIsNotCached() {
+        List<Object[]> rows = new ArrayList<>();
+        AtomicInteger queries = new AtomicInteger();
+        CarFacetService facets = new CarFacetService(repositoryReturning(rows, queries), RepositoryStub.directReads());
+
+        // Автомобиль уже сохранен, но поправка еще не применена: загрузка видит его в базе
+        facets.beginChange();
+        rows.add(row(TOYOTA, 1L));
+        assertEquals(Map.of("Toyota", 1L), facets.getFacetCounts().get(CarFacetService.BRANDS));
+        facets.endChange(null, TOYOTA);
+
+        // Снимок не закэширован - поправка не прибавилась второй раз
+        assertEquals(Map.of("Toyota", 1L), facets.getFacetCounts().get(CarFacetService.BRANDS));
+        assertEquals(2, queries.get());
+        facets.getFacetCounts();
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testUnloadedCountsIgnoreDeltasAndInvalidateReloads() {
+        List<Object[]> rows = new ArrayList<>();
+        AtomicInteger queries = new AtomicInteger();
+        CarFacetService facets = new CarFacetService(repositoryReturning(rows, queries), RepositoryStub.directReads());
+
+        change(facets, null, TOYOTA);
+        assertEquals(0, queries.get());
+        rows.add(row(TOYOTA, 1L));
+        assertEquals(Map.of("Toyota", 1L), facets.getFacetCounts().get(CarFacetService.BRANDS));
+
+        // Импорт сохранил автомобили без поправок - после invalidate() счетчики перечитываются
+        rows.add(row(BMW, 5L));
+        facets.invalidate();
+        assertEquals(Map.of("Toyota", 1L, "BMW", 5L), facets.getFacetCounts().get(CarFacetService.BRANDS));
+        assertEquals(2, queries.get());
+    }
+
+    private static void change(CarFacetService facets, CarFacets before, CarFacets after) {
+        facets.beginChange();
+        facets.endChange(before, after);
+    }
+
+    private static Object[] row(CarFacets car, Long count) {
+        return new Object[]{car.brand(), car.bodyType(), car.fuelType(), car.transmission(), car.available(), count};
+    }
+
+    // Заглушка репозитория: отвечает только на запрос количества по сочетаниям фильтров
+    private static CarRepository repositoryReturning(List<Object[]> rows, AtomicInteger queries) {
+        return RepositoryStub.answering(CarRepository.class, "countFacetCombinations", () -> {
+            queries.incrementAndGet();
+            return new ArrayList<>(rows);
+        });
+    }
+}
@@ -0,0 +1,120 @@
+package org.example.carrental;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.User;
+import org.example.carrental.service.CarImportReader;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarImportTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CarImportTest.class);
+
+    private static final int FLEET_SIZE = 2000;
+
+    @Test
+    public void testCsvImportIsBatchedAndSkipsDuplicates() {
+        String previous = System.setProperty("hibernate.generate_statistics", "true");
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarService carService = context.getBean(CarService.class);
+            User manager = context.getBean(UserService.class)
+                    .registerManager("import-manager@rental.com", "pass", "Менеджер Импорта", "+7600");
+            Statistics statistics = context.getBean(EntityManagerFactory.class)
+                    .unwrap(SessionFactory.class).getStatistics();
+            Car existing = new Car("Toyota", "Camry", 2022, 800.0, "Бензин", "Автомат", "Седан");
+            existing.setVin("VIN12345678901234");
+            carService.addCar(existing, manager);
+
+            // Индекс уже загружен - после импорта он должен увидеть новые автомобили
+            CarFilterDTO filters = new CarFilterDTO();
+            filters.setBrand("Fleet");
+            assertEquals(0, carService.searchCars(filters).cars().size());
+
+            StringBuilder csv = new StringBuilder("brand;model;year;price_per_day;vin;fuelType;transmission;bodyType\n");
+            for (int i = 0; i < FLEET_SIZE; i++) {
+                csv.append("Fleet;Model ").append(i % 7).append(";2023;")
+                        .append(400 + i % 100).append(";FLEET").append(String.format("%07d", i))
+                        .append(";Бензин;Автомат;Седан\n");
+            }
+            csv.append("Fleet;Dup;2023;500;FLEET0000001;Бензин;Автомат;Седан\n");   // повтор VIN в файле
+            csv.append("Toyota;Camry;2022;800;VIN12345678901234;Бензин;Автомат;Седан\n"); // VIN уже в базе
+            csv.append("Fleet;Expensive;2023;5000;FLEETX;Бензин;Автомат;Седан\n");    // цена выше лимита
+            csv.append("Fleet;Broken;год;500;FLEETY;Бензин;Автомат;Седан\n");         // не число
+
+            statistics.clear();
+            long started = System.nanoTime();
+            CarService.CarImportResult result = carService.importCars(
+                    CarImportReader.csv(new StringReader(csv.toString())), manager);
+            long elapsedMs = (System.nanoTime() - started) / 1_000_000;
+
+            log.atInfo()
+                    .addKeyValue("cars", FLEET_SIZE)
+                    .addKeyValue("ms", elapsedMs)
+                    .addKeyValue("statements", statistics.getPrepareStatementCount())
+                    .log("Импорт автомобилей");
+
+            assertEquals(FLEET_SIZE, result.imported(), result.errors().toString());
+            assertEquals(4, result.rejected(), result.errors().toString());
+            assertEquals(4, result.errors().size());
+            assertEquals(FLEET_SIZE, statistics.getEntityInsertCount());
+            // Вставки уходят пакетами, id берутся из последовательности блоками по 50
+            assertTrue(statistics.getPrepareStatementCount() < FLEET_SIZE / 10,
+                    "SQL-запросов при импорте: " + statistics.getPrepareStatementCount());
+
+            List<Car> imported = carService.searchCars(filters).cars();
+            assertEquals(FLEET_SIZE, imported.size());
+            assertEquals(manager.getId(), carService.getCarWithManagerById(imported.get(0).getId()).getManager().getId());
+            assertTrue(carService.getFilterOptions().get("brands").contains("Fleet"));
+
+            // Повторный импорт того же файла ничего не добавляет
+            CarService.CarImportResult again = carService.importCars(
+                    CarImportReader.csv(new StringReader(csv.toString())), manager);
+            assertEquals(0, again.imported());
+            assertEquals(FLEET_SIZE + 4, again.rejected());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("hibernate.generate_statistics");
+            } else {
+                System.setProperty("hibernate.generate_statistics", previous);
+            }
+        }
+    }
+
+    @Test
+    public void testJsonImport() {
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarService carService = context.getBean(CarService.class);
+            UserService userService = context.getBean(UserService.class);
+            User manager = userService.registerManager("json-manager@rental.com", "pass", "Менеджер", "+7601");
+            User client = userService.registerClient("json-client@rental.com", "pass", "Клиент", "+7602", "JS0000001");
+
+            String json = "[{\"brand\":\"Json\",\"model\":\"One\",\"year\":2024,\"pricePerDay\":600,\"vin\":\"JSON1\"},"
+                    + "{\"brand\":\"Json\",\"model\":\"Two\",\"year\":2024,\"pricePerDay\":700,\"vin\":\"JSON2\"}]";
+            CarService.CarImportResult result = carService.importCars(CarImportReader.json(
+                    new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), new ObjectMapper()), manager);
+            assertEquals(2, result.imported());
+            assertEquals(0, result.rejected());
+            assertEquals(2, carService.getCarsByBrand("Json").size());
+
+            assertThrows(RuntimeException.class, () -> carService.importCars(CarImportReader.json(
+                    new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), new ObjectMapper()), client));
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package org.example.carrental;
+
+import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.entity.Car;
+import org.example.carrental.repository.CarRepository;
+import org.example.carrental.service.CarSearchIndex;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CarSearchIndexTest {
+
+    @Test
+    public void testFiltersMatchRepositoryQuerySemantics() {
+        CarSearchIndex index = new CarSearchIndex(repositoryReturning(List.of(
+                row(1L, "Toyota", "Седан", "Бензин", "Автомат", true, 800.0, 2022, 0L),
+                row(2L, "BMW", "Внедорожник", "Бензин", "Автомат", true, 950.0, 2023, 0L),
+                row(3L, "Hyundai", "Седан", "Бензин", "Механика", false, 500.0, 2021, 0L),
+                row(4L, "BMW", "Седан", "Дизель", "Автомат", true, 700.0, 2019, 0L)
+        )), RepositoryStub.directReads());
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), index.search(new CarFilterDTO()).carIds());
+
+        CarFilterDTO brand = new CarFilterDTO();
+        brand.setBrand("MW"); // как LIKE %MW%
+        assertEquals(List.of(2L, 4L), index.search(brand).carIds());
+
+        CarFilterDTO combined = new CarFilterDTO();
+        combined.setBodyType("Седан");
+        combined.setMinPrice(500.0);
+        combined.setMaxPrice(800.0);
+        combined.setMinYear(2020);
+        assertEquals(List.of(1L, 3L), index.search(combined).carIds());
+
+        CarFilterDTO available = new CarFilterDTO();
+        available.setAvailable(false);
+        available.setTransmission(" ");
+        assertEquals(List.of(3L), index.search(available).carIds());
+    }
+
+    @Test
+    public void testFacetCountsIgnoreOwnFilter() {
+        CarSearchIndex index = new CarSearchIndex(repositoryReturning(List.of(
+                row(1L, "Toyota", "Седан", "Бензин", "Автомат", true, 800.0, 2022, 0L),
+                row(2L, "BMW", "Внедорожник", "Бензин", "Автомат", true, 950.0, 2023, 0L),
+                row(3L, "BMW", "Седан", "Дизель", "Автомат", true, 700.0, 2019, 0L)
+        )), RepositoryStub.directReads());
+
+        CarFilterDTO filters = new CarFilterDTO();
+        filters.setBrand("BMW");
+        CarSearchIndex.SearchResult result = index.search(filters);
+
+        Map<String, Map<String, Long>> facets = result.facetCounts();
+        assertEquals(Map.of("BMW", 2L, "Toyota", 1L), facets.get("brands"));
+        assertEquals(Map.of("Седан", 1L, "Внедорожник", 1L), facets.get("bodyTypes"));
+        assertEquals(Map.of("Бензин", 1L, "Дизель", 1L), facets.get("fuelTypes"));
+    }
+
+    @Test
+    public void testUpsertMovesCarBetweenBitmapsAndRanges() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(row(1L, "Toyota", "Седан", "Бензин", "Автомат", true, 800.0, 2022, 0L));
+        CarSearchIndex index = new CarSearchIndex(repositoryReturning(rows), RepositoryStub.directReads());
+        index.search(new CarFilterDTO()); // загрузка индекса
+
+        Car car = new Car("Toyota", "Camry", 2022, 300.0, "Бензин", "Автомат", "Седан");
+        car.setId(1L);
+        car.setVersion(1L);
+        car.setAvailable(false);
+        index.upsert(car);
+
+        Car added = new Car("Kia", "Rio", 2020, 400.0, "Бензин", "Механика", "Хэтчбек");
+        added.setId(5L);
+        index.upsert(added);
+
+        CarFilterDTO cheapAvailable = new CarFilterDTO();
+        cheapAvailable.setMaxPrice(500.0);
+        cheapAvailable.setAvailable(true);
+        assertEquals(List.of(5L), index.search(cheapAvailable).carIds());
+
+        CarFilterDTO expensive = new CarFilterDTO();
+        expensive.setMinPrice(700.0);
+        assertTrue(index.search(expensive).carIds().isEmpty());
+    }
+
+    @Test
+    public void testUpsertIgnoresOlderVersion() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(row(1L, "Toyota", "Седан", "Бензин", "Автомат", true, 800.0, 2022, 0L));
+        CarSearchIndex index = new CarSearchIndex(repositoryReturning(rows), RepositoryStub.directReads());
+        index.search(new CarFilterDTO()); // загрузка индекса
+
+        // Два сохранения одного автомобиля: более новое проиндексировано первым
+        Car rented = new Car("Toyota", "Camry", 2022, 800.0, "Бензин", "Автомат", "Седан");
+        rented.setId(1L);
+        rented.setVersion(2L);
+        rented.setAvailable(false);
+        index.upsert(rented);
+
+        Car stale = new Car("Toyota", "Camry", 2022, 800.0, "Бензин", "Автомат", "Седан");
+        stale.setId(1L);
+        stale.setVersion(1L);
+        stale.setAvailable(true);
+        index.upsert(stale);
+
+        CarFilterDTO available = new CarFilterDTO();
+        available.setAvailable(true);
+        assertTrue(index.search(available).carIds().isEmpty());
+        assertEquals(Map.of("false", 1L), index.search(new CarFilterDTO()).facetCounts().get("available"));
+    }
+
+    private static Object[] row(Long id, String brand, String bodyType, String fuelType, String transmission,
+                                Boolean available, Double price, Integer year, Long version) {
+        return new Object[]{id, brand, bodyType, fuelType, transmission, available, price, year, version};
+    }
+
+    // Заглушка репозитория: отвечает только на запрос атрибутов для индекса
+    private static CarRepository repositoryReturning(List<Object[]> rows) {
+        return RepositoryStub.answering(CarRepository.class, "findSearchAttributes", () -> rows);
+    }
+}
@@ -0,0 +1,127 @@
+package org.example.carrental;
+
+import org.example.carrental.config.CatalogFragmentCache;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.WebConfig;
+import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.User;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Страница /cars (50 карточек) с кэшем фрагментов и без него: тот же HTML, пропускная способность рендеринга.
+// Карточка измененного автомобиля обновляется сразу, остальные берутся из кэша
+public class CatalogFragmentCacheTest {
+
+    private static final int CARS = 60;
+    private static final int WARMUP_REQUESTS = 100;
+    private static final int MEASURED_REQUESTS = 300;
+
+    @Test
+    public void testCachedCatalogRendersSamePageFaster() throws Exception {
+        RenderResult uncached = run(false);
+        RenderResult cached = run(true);
+
+        assertEquals(uncached.page(), cached.page());
+        assertTrue(cached.pagesPerSecond() > uncached.pagesPerSecond(),
+                String.format("/cars без кэша фрагментов: %.0f стр/с, с кэшем: %.0f стр/с",
+                        uncached.pagesPerSecond(), cached.pagesPerSecond()));
+    }
+
+    private RenderResult run(boolean enabled) throws Exception {
+        String previous = System.setProperty("catalog.fragment-cache.enabled", String.valueOf(enabled));
+        try (var context = new AnnotationConfigWebApplicationContext()) {
+            context.register(DatabaseConfig.class, WebConfig.class);
+            context.setServletContext(new MockServletContext());
+            context.refresh();
+
+            CarService carService = context.getBean(CarService.class);
+            User manager = context.getBean(UserService.class)
+                    .registerManager("catalog-manager@rental.com", "pass", "Менеджер Каталога", "+7300");
+            List<Car> cars = new ArrayList<>();
+            for (int i = 0; i < CARS; i++) {
+                Car car = new Car("Brand" + i % 7, "Model" + i, 2015 + i % 9, 500.0 + i, "Бензин", "Автомат",
+                        i % 2 == 0 ? "Седан" : "Кроссовер");
+                car.setVin(String.format("CATALOG%010d", i));
+                car.setColor("Серый");
+                car.setDescription("Автомобиль <№" + i + "> для каталога");
+                cars.add(car);
+            }
+            carService.importCars(cars.stream(), manager);
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup(context).build();
+
+            String page = render(mvc, new MockHttpSession());
+            assertEquals(page, render(mvc, new MockHttpSession()));
+            assertTrue(page.contains("Автомобиль &lt;№0&gt; для каталога"));
+
+            long started = System.nanoTime();
+            for (int i = 0; i < WARMUP_REQUESTS + MEASURED_REQUESTS; i++) {
+                if (i == WARMUP_REQUESTS) {
+                    started = System.nanoTime();
+                }
+                render(mvc, new MockHttpSession());
+            }
+            double pagesPerSecond = MEASURED_REQUESTS * 1e9 / (System.nanoTime() - started);
+
+            if (enabled) {
+                CatalogFragmentCache cache = context.getBean(CatalogFragmentCache.class);
+                assertTrue(cache.size() > CARS / 2);
+
+                // Изменение автомобиля через CarService - карточка сразу новая
+                Long carId = carService.getCarsWithFilters(new CarFilterDTO()).get(0).getId();
+                assertFalse(render(mvc, new MockHttpSession()).contains("Занят"));
+                carService.updateCarAvailability(carId, false);
+                String changed = render(mvc, new MockHttpSession());
+                assertEquals(1, count(changed, "text-danger\">Занят"));
+
+                // Клиенту - свои кнопки
+                MockHttpSession client = new MockHttpSession();
+                mvc.perform(post("/login").session(client)
+                                .param("email", "client@carrental.ru")
+                                .param("password", "client123"))
+                        .andExpect(status().is3xxRedirection());
+                String clientPage = render(mvc, client);
+                assertFalse(clientPage.contains("Войдите для аренды"));
+                assertTrue(clientPage.contains("Недоступен"));
+            }
+            return new RenderResult(page, pagesPerSecond);
+        } finally {
+            if (previous == null) {
+                System.clearProperty("catalog.fragment-cache.enabled");
+            } else {
+                System.setProperty("catalog.fragment-cache.enabled", previous);
+            }
+        }
+    }
+
+    private static String render(MockMvc mvc, MockHttpSession session) throws Exception {
+        return mvc.perform(get("/cars").session(session))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+    }
+
+    private static int count(String text, String part) {
+        int count = 0;
+        for (int i = text.indexOf(part); i >= 0; i = text.indexOf(part, i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    private record RenderResult(String page, double pagesPerSecond) {
+    }
+}
@@ -0,0 +1,129 @@
+package org.example.carrental;
+
+import org.example.carrental.config.ConnectionPoolMetrics;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.User;
+import org.example.carrental.repository.CarRepository;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConnectionPoolTest {
+
+    private static final String POSTGRES_MODE_URL =
+            "jdbc:h2:mem:pooltest;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DEFAULT_NULL_ORDERING=HIGH;DB_CLOSE_DELAY=-1";
+
+    @Test
+    public void testSmallPoolServesConcurrentTransactions() throws Exception {
+        Map<String, String> previous = override(Map.of(
+                "db.url", POSTGRES_MODE_URL,
+                "db.pool.maximum-size", "2",
+                "db.pool.minimum-idle", "1"));
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarRepository carRepository = context.getBean(CarRepository.class);
+            ConnectionPoolMetrics metrics = context.getBean(ConnectionPoolMetrics.class);
+            TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+
+            // Кэш запросов H2 включен через URL
+            String cacheSize = new JdbcTemplate(context.getBean(DataSource.class)).queryForObject(
+                    "SELECT SETTING_VALUE FROM INFORMATION_SCHEMA.SETTINGS WHERE SETTING_NAME = 'QUERY_CACHE_SIZE'",
+                    String.class);
+            assertEquals("128", cacheSize);
+
+            long acquiredBefore = metrics.snapshot().connectionsAcquired();
+            int requests = 16;
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            try {
+                List<Future<Long>> results = new ArrayList<>();
+                for (int i = 0; i < requests; i++) {
+                    results.add(executor.submit(() -> transaction.execute(status -> {
+                        long count = carRepository.count();
+                        sleep(20); // соединение занято - остальные потоки ждут в пуле
+                        return count;
+                    })));
+                }
+                for (Future<Long> result : results) {
+                    assertNotNull(result.get());
+                }
+            } finally {
+                executor.shutdown();
+            }
+
+            ConnectionPoolMetrics.Snapshot snapshot = metrics.snapshot();
+            assertEquals("carrental", snapshot.poolName());
+            assertEquals(2, snapshot.maximumPoolSize());
+            assertTrue(snapshot.totalConnections() <= 2, snapshot.toString());
+            assertTrue(snapshot.connectionsAcquired() - acquiredBefore >= requests, snapshot.toString());
+            assertTrue(snapshot.maxWaitMs() > 0, "потоки должны были ждать соединение: " + snapshot);
+            assertEquals(0, snapshot.connectionTimeouts(), snapshot.toString());
+        } finally {
+            restore(previous);
+        }
+    }
+
+    @Test
+    public void testFileDatabaseKeepsDataBetweenStarts(@TempDir Path dir) {
+        Map<String, String> previous = override(Map.of(
+                "db.url", "jdbc:h2:file:" + dir.resolve("carrental").toAbsolutePath(),
+                "db.hbm2ddl", "update"));
+        try {
+            try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+                User manager = context.getBean(UserService.class)
+                        .registerManager("file-manager@rental.com", "pass", "Менеджер", "+7500");
+                Car car = new Car("File", "Stored", 2024, 700.0, "Бензин", "Автомат", "Седан");
+                car.setVin("FILE0000000000001");
+                context.getBean(CarService.class).addCar(car, manager);
+            }
+            // Второй запуск: схема обновляется, данные первого запуска на месте
+            try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+                List<Car> cars = context.getBean(CarRepository.class).findByBrand("File");
+                assertEquals(1, cars.size());
+                assertEquals("Stored", cars.get(0).getModel());
+            }
+        } finally {
+            restore(previous);
+        }
+    }
+
+    private static Map<String, String> override(Map<String, String> properties) {
+        Map<String, String> previous = new HashMap<>();
+        properties.forEach((key, value) -> previous.put(key, System.setProperty(key, value)));
+        return previous;
+    }
+
+    private static void restore(Map<String, String> previous) {
+        previous.forEach((key, value) -> {
+            if (value == null) {
+                System.clearProperty(key);
+            } else {
+                System.setProperty(key, value);
+            }
+        });
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
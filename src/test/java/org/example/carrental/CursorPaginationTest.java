@@ -0,0 +1,107 @@
+package org.example.carrental;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.dto.CursorPage;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.User;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.RentalService;
+import org.example.carrental.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CursorPaginationTest {
+
+    @Test
+    public void testPagesCoverAllRowsWithoutDuplicates() {
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarService carService = context.getBean(CarService.class);
+            UserService userService = context.getBean(UserService.class);
+            RentalService rentalService = context.getBean(RentalService.class);
+
+            User manager = userService.registerManager("page-manager@rental.com", "pass", "Менеджер Страниц", "+7100");
+            User client = userService.registerClient("page-client@rental.com", "pass", "Клиент Страниц", "+7101", "PG0000001");
+
+            List<Car> cars = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Car car = new Car("Page", "Car" + i, 2024, 500.0, "Бензин", "Автомат", "Седан");
+                car.setVin("PAGE" + i);
+                cars.add(carService.addCar(car, manager));
+            }
+
+            // Автомобили: все страницы подряд дают тот же список, что и findAll
+            List<Long> allIds = carService.getAllCars().stream().map(Car::getId).sorted().toList();
+            assertEquals(allIds, collectCarPages(cursor -> carService.getCarsPage(cursor, 2)));
+
+            // Поиск по индексу: страницы по отфильтрованному списку
+            CarFilterDTO filters = new CarFilterDTO();
+            filters.setBrand("Page");
+            List<Long> pageCarIds = cars.stream().map(Car::getId).toList();
+            List<Long> searched = new ArrayList<>();
+            String cursor = null;
+            do {
+                CarService.CarSearchResult result = carService.searchCars(filters, cursor, 2);
+                assertTrue(result.cars().size() <= 2);
+                result.cars().forEach(car -> searched.add(car.getId()));
+                cursor = result.nextCursor();
+            } while (cursor != null);
+            assertEquals(pageCarIds, searched);
+
+            // Аренды: у разных автомобилей одинаковые даты начала - порядок добивается по id
+            LocalDateTime base = LocalDateTime.now().plusDays(10).truncatedTo(ChronoUnit.HOURS);
+            List<Long> rentalIds = new ArrayList<>();
+            for (int day = 0; day < 3; day++) {
+                for (Car car : cars) {
+                    LocalDateTime start = base.plusDays(day * 2L);
+                    rentalIds.add(rentalService.createRentalRequest(car.getId(), client.getId(), start, start.plusDays(1)).getId());
+                }
+            }
+
+            List<Rental> pagedRentals = new ArrayList<>();
+            cursor = null;
+            do {
+                CursorPage<Rental> page = rentalService.getRentalsByManagerPage(manager.getId(), cursor, 4);
+                assertTrue(page.getItems().size() <= 4);
+                pagedRentals.addAll(page.getItems());
+                cursor = page.getNextCursor();
+            } while (cursor != null);
+
+            assertEquals(rentalIds.size(), pagedRentals.size());
+            assertEquals(rentalIds.stream().sorted().toList(),
+                    pagedRentals.stream().map(Rental::getId).sorted().toList());
+            List<Rental> expectedOrder = pagedRentals.stream()
+                    .sorted(Comparator.comparing(Rental::getStartDate).thenComparing(Rental::getId))
+                    .toList();
+            assertEquals(expectedOrder.stream().map(Rental::getId).toList(),
+                    pagedRentals.stream().map(Rental::getId).toList());
+
+            // Поток NDJSON видит те же автомобили, что и страницы
+            List<Long> streamed = new ArrayList<>();
+            carService.streamAllCars(car -> streamed.add(car.getId()));
+            assertEquals(allIds, streamed);
+        }
+    }
+
+    private static List<Long> collectCarPages(Function<String, CursorPage<Car>> fetch) {
+        List<Long> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            CursorPage<Car> page = fetch.apply(cursor);
+            assertTrue(page.getItems().size() <= 2);
+            page.getItems().forEach(car -> ids.add(car.getId()));
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return ids;
+    }
+}
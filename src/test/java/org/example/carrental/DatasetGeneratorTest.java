@@ -0,0 +1,126 @@
+package org.example.carrental;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.DatasetGenerator;
+import org.example.carrental.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Синтетический набор: одинаковый seed - одинаковые данные при любом числе потоков,
+// занятые периоды автомобиля не пересекаются, распределения неравномерные; профиль dataset заменяет демо-данные
+public class DatasetGeneratorTest {
+
+    private static final LocalDateTime ANCHOR = LocalDateTime.of(2025, 6, 1, 0, 0);
+    private static final int RENTALS = 20000;
+
+    @Test
+    public void testSameSeedGivesSameDataset() throws Exception {
+        DatasetGenerator.Spec spec = DatasetGenerator.Spec.forRentals(7, RENTALS, ANCHOR);
+        String parallel = generate(spec, 4, true);
+        String sequential = generate(spec, 1, false);
+        assertEquals(parallel, sequential);
+        assertNotEquals(parallel, generate(DatasetGenerator.Spec.forRentals(8, RENTALS, ANCHOR), 4, false));
+    }
+
+    @Test
+    public void testDatasetProfileReplacesDemoData() {
+        String[][] properties = {
+                {"spring.profiles.active", "dataset"},
+                {"dataset.managers", "3"},
+                {"dataset.clients", "50"},
+                {"dataset.cars", "40"},
+                {"dataset.rentals", "500"}
+        };
+        String[] previous = new String[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            previous[i] = System.setProperty(properties[i][0], properties[i][1]);
+        }
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarService carService = context.getBean(CarService.class);
+            // Поиск видит только сгенерированные автомобили: демонстрационных нет
+            assertEquals(40, carService.getCarsWithFilters(new CarFilterDTO()).size());
+            assertEquals(40L, carService.getFilterOptions().get("brands").stream()
+                    .mapToLong(brand -> carService.getFilterFacetCounts().get("brands").get(brand)).sum());
+            // Вход сгенерированного клиента и демо-учетные записи
+            UserService userService = context.getBean(UserService.class);
+            assertNotNull(userService.authenticate("client0" + DatasetGenerator.EMAIL_DOMAIN, DatasetGenerator.PASSWORD));
+            assertNotNull(userService.authenticate("admin@carrental.ru", "admin123"));
+        } finally {
+            for (int i = 0; i < properties.length; i++) {
+                if (previous[i] == null) {
+                    System.clearProperty(properties[i][0]);
+                } else {
+                    System.setProperty(properties[i][0], previous[i]);
+                }
+            }
+        }
+    }
+
+    // Загрузить набор в чистую базу, проверить его и вернуть отпечаток содержимого (без id)
+    private String generate(DatasetGenerator.Spec spec, int threads, boolean check) throws Exception {
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            DataSource dataSource = context.getBean(DataSource.class);
+            DatasetGenerator.Result result = new DatasetGenerator(dataSource, threads).generate(spec);
+
+            JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+            assertEquals(spec.rentals(), jdbc.queryForObject("SELECT COUNT(*) FROM rentals r JOIN cars c " +
+                    "ON c.id = r.car_id WHERE c.vin LIKE 'DS%'", Integer.class));
+            assertEquals(spec.cars(), result.carIds().length);
+            if (check) {
+                checkDistributions(jdbc, spec);
+            }
+
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            jdbc.query("SELECT c.vin, c.brand, c.price_per_day, r.start_date, r.end_date, r.status, r.total_price, " +
+                    "u.email FROM rentals r JOIN cars c ON c.id = r.car_id JOIN users u ON u.id = r.user_id " +
+                    "WHERE c.vin LIKE 'DS%' ORDER BY c.vin, r.start_date, r.end_date, r.status, u.email", row -> {
+                for (int column = 1; column <= 8; column++) {
+                    digest.update(String.valueOf(row.getObject(column)).getBytes());
+                    digest.update((byte) 0);
+                }
+            });
+            return HexFormat.of().formatHex(digest.digest());
+        }
+    }
+
+    private static void checkDistributions(JdbcTemplate jdbc, DatasetGenerator.Spec spec) {
+        // Занятые периоды одного автомобиля не пересекаются, текущая аренда у автомобиля не больше одной
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM rentals a JOIN rentals b " +
+                "ON a.car_id = b.car_id AND a.id < b.id AND a.start_date < b.end_date AND b.start_date < a.end_date " +
+                "WHERE a.status IN ('CONFIRMED', 'ACTIVE', 'COMPLETED') " +
+                "AND b.status IN ('CONFIRMED', 'ACTIVE', 'COMPLETED')", Integer.class));
+        assertEquals(0, jdbc.queryForObject("SELECT COUNT(*) FROM (SELECT car_id FROM rentals " +
+                "WHERE status = 'ACTIVE' GROUP BY car_id HAVING COUNT(*) > 1)", Integer.class));
+
+        // Все статусы, включая отклоненные заявки на занятые даты
+        Map<String, Integer> statuses = new TreeMap<>();
+        jdbc.query("SELECT status, COUNT(*) FROM rentals GROUP BY status",
+                row -> { statuses.put(row.getString(1), row.getInt(2)); });
+        for (String status : List.of("PENDING", "CONFIRMED", "ACTIVE", "COMPLETED", "CANCELLED", "REJECTED")) {
+            assertTrue(statuses.getOrDefault(status, 0) > 0, status + ": " + statuses);
+        }
+        assertTrue(statuses.get("COMPLETED") > spec.rentals() / 2, statuses.toString());
+
+        // Длинный хвост аренд по автомобилям и популярные марки
+        List<Integer> perCar = jdbc.queryForList("SELECT COUNT(*) FROM rentals r JOIN cars c ON c.id = r.car_id " +
+                "WHERE c.vin LIKE 'DS%' GROUP BY r.car_id ORDER BY COUNT(*) DESC", Integer.class);
+        int average = spec.rentals() / spec.cars();
+        assertTrue(perCar.get(0) > 4 * average, "аренд на автомобиль: среднее " + average + ", максимум " + perCar.get(0));
+        List<Integer> perBrand = jdbc.queryForList("SELECT COUNT(*) FROM cars WHERE vin LIKE 'DS%' " +
+                "GROUP BY brand ORDER BY COUNT(*) DESC", Integer.class);
+        assertTrue(perBrand.get(0) > 5 * perBrand.get(perBrand.size() - 1));
+    }
+}
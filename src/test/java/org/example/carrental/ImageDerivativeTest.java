@@ -0,0 +1,120 @@
+package org.example.carrental;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.User;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.FileStorageService;
+import org.example.carrental.service.ImageBackfillJob;
+import org.example.carrental.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ImageDerivativeTest {
+
+    @TempDir
+    Path uploadDir;
+
+    @Test
+    public void testUploadedAndExistingPhotosGetSizedCopies() throws Exception {
+        String previous = System.setProperty("upload.dir", uploadDir.toString());
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarService carService = context.getBean(CarService.class);
+            FileStorageService storage = context.getBean(FileStorageService.class);
+            User manager = context.getBean(UserService.class)
+                    .registerManager("photo-manager@rental.com", "pass", "Менеджер Фото", "+7600");
+
+            // Новое фото: копии делаются в фоне после загрузки и попадают в автомобиль
+            Car car = carService.addCar(newCar("PHOTO000000000001"), manager);
+            FileStorageService.StoreResult upload = storage.store(
+                    new MockMultipartFile("imageFile", "car.png", "image/png", png(2000, 1000)));
+            carService.updateCarPhoto(car.getId(), upload.photo().url());
+            upload.processing().get(30, TimeUnit.SECONDS);
+
+            Car withPhoto = carService.getCarById(car.getId());
+            assertEquals("320,640,1280", withPhoto.getImageVariants());
+            String url = upload.photo().url();
+            String base = url.substring(0, url.lastIndexOf('.'));
+            assertEquals(base + "-640w.jpg", withPhoto.imageUrlFor(400));
+            assertEquals(base + "-320w.jpg", withPhoto.imageUrlFor(100));
+            assertEquals(url, withPhoto.imageUrlFor(1600));
+            assertTrue(withPhoto.getImageSrcset().contains(base + "-1280w.jpg 1280w"));
+            BufferedImage thumbnail = ImageIO.read(uploadDir.resolve("images/cars")
+                    .resolve(Path.of(base + "-320w.jpg").getFileName()).toFile());
+            assertEquals(320, thumbnail.getWidth());
+            assertEquals(160, thumbnail.getHeight());
+
+            // Фото меньше самой маленькой копии - копий нет, показывается исходное
+            Car small = carService.addCar(newCar("PHOTO000000000002"), manager);
+            FileStorageService.StoreResult smallUpload = storage.store(
+                    new MockMultipartFile("imageFile", "small.png", "image/png", png(200, 100)));
+            carService.updateCarPhoto(small.getId(), smallUpload.photo().url());
+            smallUpload.processing().get(30, TimeUnit.SECONDS);
+            assertEquals("", carService.getCarById(small.getId()).getImageVariants());
+            assertEquals(smallUpload.photo().url(), carService.getCarById(small.getId()).imageUrlFor(320));
+
+            // Фото, загруженные до появления копий: дозаполнение, повторный запуск ничего не делает
+            Files.write(uploadDir.resolve("images/cars/legacy.png"), png(900, 600));
+            Car legacy = newCar("PHOTO000000000003");
+            legacy.setImageUrl("/uploads/images/cars/legacy.png");
+            Long legacyId = carService.addCar(legacy, manager).getId();
+            assertNull(carService.getCarById(legacyId).getImageVariants());
+
+            ImageBackfillJob backfill = context.getBean(ImageBackfillJob.class);
+            assertEquals(1, runToCompletion(backfill).processed());
+            assertEquals("320,640", carService.getCarById(legacyId).getImageVariants());
+            assertTrue(Files.exists(uploadDir.resolve("images/cars/legacy-640w.jpg")));
+            assertEquals(0, runToCompletion(backfill).processed());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("upload.dir");
+            } else {
+                System.setProperty("upload.dir", previous);
+            }
+        }
+    }
+
+    private static ImageBackfillJob.Status runToCompletion(ImageBackfillJob backfill) throws InterruptedException {
+        assertTrue(backfill.start());
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (backfill.status().running() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        ImageBackfillJob.Status status = backfill.status();
+        assertFalse(status.running());
+        assertEquals(0, status.failed());
+        return status;
+    }
+
+    private static Car newCar(String vin) {
+        Car car = new Car("Photo", "Car", 2023, 700.0, "Бензин", "Автомат", "Седан");
+        car.setVin(vin);
+        return car;
+    }
+
+    private static byte[] png(int width, int height) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.BLUE);
+        graphics.fillRect(0, 0, width, height);
+        graphics.setColor(Color.ORANGE);
+        graphics.fillOval(width / 4, height / 4, width / 2, height / 2);
+        graphics.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+}
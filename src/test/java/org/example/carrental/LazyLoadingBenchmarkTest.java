@@ -0,0 +1,143 @@
+package org.example.carrental;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.RentalStatus;
+import org.example.carrental.entity.User;
+import org.example.carrental.repository.RentalRepository;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.UserService;
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Сравнение загрузки списков аренд: раньше (EAGER - автомобиль, его менеджер и клиент
+// догружались всегда) и сейчас (LAZY + граф только там, где страница это показывает)
+public class LazyLoadingBenchmarkTest {
+
+    private static final Logger log = LoggerFactory.getLogger(LazyLoadingBenchmarkTest.class);
+
+    private static final int ITERATIONS = 20;
+
+    @Test
+    public void testLazyAssociationsReadFewerRowsPerRequest() {
+        String previous = System.setProperty("hibernate.generate_statistics", "true");
+        // Сравниваются планы загрузки, а не кэш: без кэша второго уровня каждая догрузка - запрос в базу
+        String previousCache = System.setProperty("db.cache.enabled", "false");
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            UserService userService = context.getBean(UserService.class);
+            CarService carService = context.getBean(CarService.class);
+            RentalRepository rentalRepository = context.getBean(RentalRepository.class);
+            TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            Statistics statistics = context.getBean(EntityManagerFactory.class)
+                    .unwrap(SessionFactory.class).getStatistics();
+
+            User manager = userService.registerManager("bench-manager@rental.com", "pass", "Менеджер", "+7400");
+            List<Car> cars = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                Car car = new Car("Bench", "Car" + i, 2022, 400.0, "Бензин", "Автомат", "Седан");
+                car.setVin("BENCH" + i);
+                cars.add(carService.addCar(car, manager));
+            }
+            List<User> clients = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                clients.add(userService.registerClient("bench-client" + i + "@rental.com", "pass",
+                        "Клиент " + i, "+74" + i, "BN" + i));
+            }
+            List<Rental> rentals = new ArrayList<>();
+            LocalDateTime start = LocalDateTime.now().plusDays(3);
+            for (int i = 0; i < 400; i++) {
+                rentals.add(new Rental(clients.get(i % clients.size()), cars.get(i % cars.size()),
+                        start, start.plusDays(2), BigDecimal.valueOf(800)));
+            }
+            rentalRepository.saveAll(rentals);
+            User client = clients.get(0);
+
+            // Аренды по статусу: страница показывает только поля аренды
+            Measurement eagerByStatus = measure(statistics, () -> transaction.execute(status ->
+                    eagerLoad(rentalRepository.findByStatus(RentalStatus.PENDING))));
+            Measurement lazyByStatus = measure(statistics, () -> rentalRepository.findByStatus(RentalStatus.PENDING));
+            report("findByStatus (EAGER)", eagerByStatus);
+            report("findByStatus (LAZY)", lazyByStatus);
+
+            // Аренды клиента (my-rentals): показывает автомобиль - граф rental-with-car
+            Measurement eagerByUser = measure(statistics, () -> transaction.execute(status ->
+                    eagerLoad(rentalRepository.findByUserAndStatus(client, RentalStatus.PENDING))));
+            Measurement graphByUser = measure(statistics, () -> rentalRepository.findByUser(client));
+            report("аренды клиента (EAGER)", eagerByUser);
+            report("аренды клиента (rental-with-car)", graphByUser);
+
+            assertEquals(400, lazyByStatus.entities);
+            assertTrue(lazyByStatus.entities < eagerByStatus.entities, lazyByStatus + " / " + eagerByStatus);
+            assertTrue(lazyByStatus.statements < eagerByStatus.statements, lazyByStatus + " / " + eagerByStatus);
+            assertTrue(graphByUser.entities < eagerByUser.entities, graphByUser + " / " + eagerByUser);
+            assertEquals(1, graphByUser.statements);
+        } finally {
+            if (previous == null) {
+                System.clearProperty("hibernate.generate_statistics");
+            } else {
+                System.setProperty("hibernate.generate_statistics", previous);
+            }
+            if (previousCache == null) {
+                System.clearProperty("db.cache.enabled");
+            } else {
+                System.setProperty("db.cache.enabled", previousCache);
+            }
+        }
+    }
+
+    // Догрузить связи так, как это делал EAGER: автомобиль, его менеджер и клиент
+    private static List<Rental> eagerLoad(List<Rental> rentals) {
+        for (Rental rental : rentals) {
+            Hibernate.initialize(rental.getCar());
+            Hibernate.initialize(rental.getCar().getManager());
+            Hibernate.initialize(rental.getUser());
+        }
+        return rentals;
+    }
+
+    // Средние значения на один запрос (первый прогон - прогрев)
+    private static Measurement measure(Statistics statistics, Supplier<List<Rental>> request) {
+        request.get();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        statistics.clear();
+        long allocatedBefore = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < ITERATIONS; i++) {
+            request.get();
+        }
+        long allocated = threads.getCurrentThreadAllocatedBytes() - allocatedBefore;
+        return new Measurement(statistics.getEntityLoadCount() / ITERATIONS,
+                statistics.getPrepareStatementCount() / ITERATIONS,
+                allocated / ITERATIONS);
+    }
+
+    private static void report(String name, Measurement measurement) {
+        log.atInfo()
+                .addKeyValue("query", name)
+                .addKeyValue("entities", measurement.entities)
+                .addKeyValue("statements", measurement.statements)
+                .addKeyValue("allocatedKb", measurement.allocatedBytes / 1024)
+                .log("Загрузка списка аренд");
+    }
+
+    private record Measurement(long entities, long statements, long allocatedBytes) {
+    }
+}
@@ -0,0 +1,64 @@
+package org.example.carrental;
+
+import org.example.carrental.load.LoadHarness;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Короткий прогон нагрузочного стенда против сервера в этом же процессе на маленьком наборе:
+// все сценарии доходят до своих адресов, сервер не отвечает 5xx и не теряет соединения.
+// Занятые даты (booking_error) и уже одобренные заявки (approve_error) - нормальный исход под нагрузкой
+public class LoadHarnessTest {
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    public void testJourneysReachEveryEndpoint() throws Exception {
+        String[][] properties = {
+                {"server.base-dir", baseDir.toString()},
+                {"server.threads", "virtual"},
+                {"dataset.managers", "2"},
+                {"dataset.clients", "50"},
+                {"dataset.cars", "30"},
+                {"dataset.rentals", "600"}
+        };
+        String[] previous = new String[properties.length];
+        for (int i = 0; i < properties.length; i++) {
+            previous[i] = System.setProperty(properties[i][0], properties[i][1]);
+        }
+        try {
+            Path reportFile = baseDir.resolve("load-report.json");
+            LoadHarness.Report report = LoadHarness.run(LoadHarness.Options.parse(
+                    "rate=15", "duration=6", "warmup=2", "mix=40/35/25"));
+            report.write(reportFile);
+
+            assertEquals(0, report.droppedJourneys());
+            for (LoadHarness.EndpointReport endpoint : report.endpoints()) {
+                assertTrue(endpoint.requests() > 0, endpoint.endpoint() + ": нет запросов");
+                assertTrue(endpoint.p50Ms() <= endpoint.p95Ms() && endpoint.p95Ms() <= endpoint.p99Ms()
+                        && endpoint.p99Ms() <= endpoint.maxMs(), endpoint.endpoint());
+                for (String error : endpoint.errorHistogram().keySet()) {
+                    assertTrue(error.equals("booking_error") || error.equals("approve_error"),
+                            endpoint.endpoint() + ": " + endpoint.errorHistogram());
+                }
+            }
+            // Большая часть заявок на свободные даты принимается
+            LoadHarness.EndpointReport book = report.endpoint("POST /rentals/book");
+            assertTrue(book.errors() * 2 < book.requests(), book.toString());
+            assertTrue(Files.readString(reportFile).contains("\"p99Ms\""));
+        } finally {
+            for (int i = 0; i < properties.length; i++) {
+                if (previous[i] == null) {
+                    System.clearProperty(properties[i][0]);
+                } else {
+                    System.setProperty(properties[i][0], previous[i]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package org.example.carrental;
+
+import ch.qos.logback.classic.AsyncAppender;
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.FileAppender;
+import ch.qos.logback.core.spi.FilterReply;
+import org.example.carrental.config.SqlSamplingFilter;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongConsumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Задержка запроса страницы бронирования из-за журнала: раньше (7 строк System.out.println на запрос,
+// синхронная запись под общей блокировкой потока вывода) и сейчас (одно событие с ключами
+// через асинхронный appender; в обычном режиме DEBUG выключен и событие не создается вовсе)
+public class LoggingLatencyBenchmarkTest {
+
+    private static final org.slf4j.Logger log = LoggerFactory.getLogger(LoggingLatencyBenchmarkTest.class);
+
+    private static final int THREADS = 8;
+    private static final int REQUESTS_PER_THREAD = 2000;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    public void testAsyncLoggerDoesNotBlockRequestThreads() throws Exception {
+        // Раньше: System.out, перенаправленный в файл (буфер + сброс на каждой строке)
+        Path stdoutFile = dir.resolve("stdout.log");
+        long[] before;
+        try (PrintStream out = new PrintStream(new BufferedOutputStream(new FileOutputStream(stdoutFile.toFile()), 8192), true)) {
+            before = measure(carId -> {
+                out.println("=== DEBUG БРОНИРОВАНИЕ ===");
+                out.println("1. Car ID: " + carId);
+                out.println("2. User from session: client@carrental.ru");
+                out.println("4. Car found: Toyota Camry");
+                out.println("5. User from session: Клиент (Role: CLIENT)");
+                out.println("6. SUCCESS - Redirecting to book-car.html");
+            });
+        }
+        assertEquals(THREADS * REQUESTS_PER_THREAD * 6L, Files.readAllLines(stdoutFile).size());
+
+        // Сейчас: та же настройка, что в logback.xml (очередь, neverBlock), вывод в файл
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        Path logFile = dir.resolve("async.log");
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d{HH:mm:ss.SSS} %-5level [%thread] %logger{36} - %msg %kvp%n");
+        encoder.start();
+        FileAppender<ILoggingEvent> file = new FileAppender<>();
+        file.setContext(context);
+        file.setFile(logFile.toString());
+        file.setEncoder(encoder);
+        file.start();
+        AsyncAppender async = new AsyncAppender();
+        async.setContext(context);
+        async.setQueueSize(8192);
+        async.setNeverBlock(true);
+        async.addAppender(file);
+        async.start();
+
+        Logger logger = context.getLogger("benchmark.RentalController");
+        logger.setAdditive(false);
+        logger.addAppender(async);
+        try {
+            // DEBUG включен: событие с ключами уходит в очередь
+            logger.setLevel(Level.DEBUG);
+            long[] asyncEnabled = measure(carId -> logger.atDebug()
+                    .addKeyValue("carId", carId)
+                    .addKeyValue("userId", 42L)
+                    .addKeyValue("role", "CLIENT")
+                    .log("Страница бронирования"));
+
+            // Обычный режим (INFO): проверка уровня без создания события
+            logger.setLevel(Level.INFO);
+            long[] asyncDisabled = measure(carId -> logger.atDebug()
+                    .addKeyValue("carId", carId)
+                    .addKeyValue("userId", 42L)
+                    .addKeyValue("role", "CLIENT")
+                    .log("Страница бронирования"));
+
+            async.stop();
+            long written = Files.readAllLines(logFile).size();
+
+            report("System.out (раньше)", before);
+            report("async, DEBUG включен", asyncEnabled);
+            report("async, DEBUG выключен", asyncDisabled);
+            // При переполнении очереди события отбрасываются, запрос не ждет
+            log.atInfo()
+                    .addKeyValue("written", written)
+                    .addKeyValue("events", THREADS * REQUESTS_PER_THREAD)
+                    .log("Записано асинхронно");
+
+            assertTrue(written > 0);
+            assertTrue(Files.readString(logFile).contains("carId="));
+            assertTrue(percentile(asyncDisabled, 50) < percentile(before, 50),
+                    "p50 без DEBUG: " + percentile(asyncDisabled, 50) + " нс, раньше: " + percentile(before, 50) + " нс");
+        } finally {
+            logger.detachAppender(async);
+            logger.setLevel(null);
+            async.stop();
+        }
+    }
+
+    @Test
+    public void testSqlSamplingFilterPassesEveryNthStatement() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        Logger sql = context.getLogger("org.hibernate.SQL");
+        Logger other = context.getLogger("org.example.carrental.service.CarService");
+        SqlSamplingFilter filter = new SqlSamplingFilter();
+        filter.setSampleEvery(10);
+
+        int passed = 0;
+        for (int i = 0; i < 100; i++) {
+            // проверка isDebugEnabled() (format == null) не считается и не отклоняется
+            assertEquals(FilterReply.NEUTRAL, filter.decide(null, sql, Level.DEBUG, null, null, null));
+            if (filter.decide(null, sql, Level.DEBUG, "select c1_0.id from cars c1_0", null, null) == FilterReply.NEUTRAL) {
+                passed++;
+            }
+            assertEquals(FilterReply.NEUTRAL, filter.decide(null, other, Level.INFO, "сообщение", null, null));
+        }
+        assertEquals(10, passed);
+    }
+
+    // Задержка каждого "запроса" в наносекундах, запросы из THREADS потоков одновременно
+    private long[] measure(LongConsumer request) throws Exception {
+        long[] latencies = new long[THREADS * REQUESTS_PER_THREAD];
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        try {
+            Future<?>[] futures = new Future<?>[THREADS];
+            for (int t = 0; t < THREADS; t++) {
+                int offset = t * REQUESTS_PER_THREAD;
+                futures[t] = executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < REQUESTS_PER_THREAD; i++) {
+                        long begin = System.nanoTime();
+                        request.accept(offset + i);
+                        latencies[offset + i] = System.nanoTime() - begin;
+                    }
+                    return null;
+                });
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        Arrays.sort(latencies);
+        return latencies;
+    }
+
+    private static long percentile(long[] sorted, int percent) {
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    private static void report(String mode, long[] sorted) {
+        log.atInfo()
+                .addKeyValue("mode", mode)
+                .addKeyValue("p50Ns", percentile(sorted, 50))
+                .addKeyValue("p99Ns", percentile(sorted, 99))
+                .addKeyValue("maxNs", sorted[sorted.length - 1])
+                .log("Задержка запроса из-за журнала");
+    }
+}
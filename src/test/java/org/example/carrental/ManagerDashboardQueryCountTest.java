@@ -0,0 +1,94 @@
+package org.example.carrental;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.WebConfig;
+import org.example.carrental.dto.SessionUser;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.User;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.RentalService;
+import org.example.carrental.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class ManagerDashboardQueryCountTest {
+
+    // Ожидающие/активные аренды + страница всех аренд; не зависит от числа аренд, автомобилей и клиентов
+    private static final long RENTALS_PAGE_STATEMENTS = 2;
+    private static final long DASHBOARD_STATEMENTS = 2;
+
+    @Test
+    public void testManagerPagesUseConstantNumberOfStatements() throws Exception {
+        String previous = System.setProperty("hibernate.generate_statistics", "true");
+        try (var context = new AnnotationConfigWebApplicationContext()) {
+            context.register(DatabaseConfig.class, WebConfig.class);
+            context.setServletContext(new MockServletContext());
+            context.refresh();
+
+            UserService userService = context.getBean(UserService.class);
+            CarService carService = context.getBean(CarService.class);
+            RentalService rentalService = context.getBean(RentalService.class);
+
+            User manager = userService.registerManager("board-manager@rental.com", "pass", "Менеджер Панели", "+7200");
+            List<Car> cars = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                Car car = new Car("Board", "Car" + i, 2023, 600.0, "Бензин", "Автомат", "Седан");
+                car.setVin("BOARD" + i);
+                cars.add(carService.addCar(car, manager));
+            }
+
+            // Разные клиенты и автомобили - при ленивой догрузке каждый дал бы отдельный SELECT
+            LocalDateTime base = LocalDateTime.now().plusDays(5).truncatedTo(ChronoUnit.HOURS);
+            for (int i = 0; i < 12; i++) {
+                User client = userService.registerClient("board-client" + i + "@rental.com", "pass",
+                        "Клиент " + i, "+73" + i, "BC00000" + i);
+                Car car = cars.get(i % cars.size());
+                LocalDateTime start = base.plusDays((i / cars.size()) * 3L);
+                Rental rental = rentalService.createRentalRequest(car.getId(), client.getId(), start, start.plusDays(1));
+                if (i % 3 == 0) {
+                    rentalService.approveRental(rental.getId(), manager.getId());
+                }
+            }
+            rentalService.getManagerRentalStats(manager.getId()); // счетчики уже в памяти
+
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup(context).build();
+            SessionUser sessionUser = userService.toSessionUser(manager);
+            Statistics statistics = context.getBean(EntityManagerFactory.class)
+                    .unwrap(SessionFactory.class).getStatistics();
+
+            statistics.clear();
+            mvc.perform(get("/manager/rentals").sessionAttr("user", sessionUser))
+                    .andExpect(status().isOk());
+            assertEquals(RENTALS_PAGE_STATEMENTS, statistics.getPrepareStatementCount(),
+                    "SQL-запросов при отрисовке /manager/rentals");
+
+            statistics.clear();
+            mvc.perform(get("/manager/dashboard").sessionAttr("user", sessionUser))
+                    .andExpect(status().isOk());
+            assertEquals(DASHBOARD_STATEMENTS, statistics.getPrepareStatementCount(),
+                    "SQL-запросов при отрисовке /manager/dashboard");
+        } finally {
+            if (previous == null) {
+                System.clearProperty("hibernate.generate_statistics");
+            } else {
+                System.setProperty("hibernate.generate_statistics", previous);
+            }
+        }
+    }
+}
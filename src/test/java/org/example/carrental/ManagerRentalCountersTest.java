@@ -0,0 +1,105 @@
+package org.example.carrental;
+
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.RentalStatus;
+import org.example.carrental.entity.User;
+import org.example.carrental.repository.RentalRepository;
+import org.example.carrental.service.ManagerRentalCounters;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ManagerRentalCountersTest {
+
+    @Test
+    public void testTransitionsUpdateLoadedCounters() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{RentalStatus.PENDING, 2L, BigDecimal.ZERO});
+        rows.add(new Object[]{RentalStatus.COMPLETED, 1L, new BigDecimal("1000.00")});
+        AtomicInteger queries = new AtomicInteger();
+        ManagerRentalCounters counters = new ManagerRentalCounters(repositoryReturning(rows, queries),
+                RepositoryStub.directReads());
+
+        ManagerRentalCounters.Snapshot loaded = counters.get(5L);
+        assertEquals(2, loaded.count(RentalStatus.PENDING));
+        assertEquals(3, loaded.total());
+
+        Rental rental = rental(5L);
+        change(counters, rental, null, RentalStatus.PENDING, null);
+        change(counters, rental, RentalStatus.PENDING, RentalStatus.CONFIRMED, null);
+        change(counters, rental, RentalStatus.CONFIRMED, RentalStatus.ACTIVE, null);
+        change(counters, rental, RentalStatus.ACTIVE, RentalStatus.COMPLETED, new BigDecimal("500.00"));
+
+        ManagerRentalCounters.Snapshot updated = counters.get(5L);
+        assertEquals(2, updated.count(RentalStatus.PENDING));
+        assertEquals(0, updated.count(RentalStatus.CONFIRMED));
+        assertEquals(0, updated.count(RentalStatus.ACTIVE));
+        assertEquals(2, updated.count(RentalStatus.COMPLETED));
+        assertEquals(0, new BigDecimal("1500.00").compareTo(updated.revenue(RentalStatus.COMPLETED)));
+        assertEquals(4, updated.total());
+
+        // Повторные обращения не ходят в базу
+        assertEquals(1, queries.get());
+    }
+
+    @Test
+    public void testSnapshotLoadedDuringChangeIsNotCached() {
+        AtomicInteger queries = new AtomicInteger();
+        ManagerRentalCounters counters = new ManagerRentalCounters(repositoryReturning(new ArrayList<>(), queries),
+                RepositoryStub.directReads());
+
+        // Аренда сохраняется, пока счетчики загружаются: такой снимок не запоминается
+        counters.beginChange();
+        counters.get(5L);
+        counters.endChange(rental(5L), null);
+        counters.get(5L);
+        assertEquals(2, queries.get());
+
+        counters.get(5L);
+        assertEquals(2, queries.get());
+    }
+
+    @Test
+    public void testUnloadedManagerIsNotTouched() {
+        AtomicInteger queries = new AtomicInteger();
+        ManagerRentalCounters counters = new ManagerRentalCounters(repositoryReturning(new ArrayList<>(), queries),
+                RepositoryStub.directReads());
+
+        change(counters, rental(9L), null, RentalStatus.PENDING, null);
+        assertEquals(0, queries.get());
+    }
+
+    private static void change(ManagerRentalCounters counters, Rental rental, RentalStatus from,
+                               RentalStatus to, BigDecimal actualPrice) {
+        counters.beginChange();
+        rental.setStatus(to);
+        rental.setActualPrice(actualPrice);
+        counters.endChange(rental, from);
+    }
+
+    private static Rental rental(Long managerId) {
+        User manager = new User();
+        manager.setId(managerId);
+        Car car = new Car();
+        car.setId(1L);
+        car.setManager(manager);
+        Rental rental = new Rental();
+        rental.setId(100L);
+        rental.setCar(car);
+        return rental;
+    }
+
+    // Заглушка репозитория: отвечает только на запрос статистики менеджера
+    private static RentalRepository repositoryReturning(List<Object[]> rows, AtomicInteger queries) {
+        return RepositoryStub.answering(RentalRepository.class, "getRentalStatsByManager", () -> {
+            queries.incrementAndGet();
+            return rows;
+        });
+    }
+}
@@ -0,0 +1,130 @@
+package org.example.carrental;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.RentalStatus;
+import org.example.carrental.entity.User;
+import org.example.carrental.repository.CarRepository;
+import org.example.carrental.repository.RentalRepository;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.OptimisticRetry;
+import org.example.carrental.service.RentalService;
+import org.example.carrental.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class OptimisticLockingTest {
+
+    @Test
+    public void testStaleWritesAreRejectedAndRetried() throws Exception {
+        // В конце 4 потока без пауз меняют один автомобиль - конфликтов намного больше, чем в обычной работе
+        String previous = System.setProperty("db.optimistic.max-attempts", "30");
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarService carService = context.getBean(CarService.class);
+            CarRepository carRepository = context.getBean(CarRepository.class);
+            RentalService rentalService = context.getBean(RentalService.class);
+            RentalRepository rentalRepository = context.getBean(RentalRepository.class);
+            OptimisticRetry optimisticRetry = context.getBean(OptimisticRetry.class);
+            UserService userService = context.getBean(UserService.class);
+
+            User manager = userService.registerManager("lock-manager@rental.com", "pass", "Менеджер Версий", "+7400");
+            User client = userService.registerClient("lock-client@rental.com", "pass", "Клиент Версий", "+7401",
+                    "LK0000001");
+            Car car = new Car("Lock", "Car", 2022, 800.0, "Бензин", "Автомат", "Седан");
+            car.setVin("LOCK0000000000001");
+            Long carId = carService.addCar(car, manager).getId();
+
+            // Сохранение устаревшей копии больше не затирает чужое изменение
+            Car stale = carService.getCarById(carId);
+            carService.updateCarAvailability(carId, false);
+            stale.setPricePerDay(900.0);
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> carRepository.save(stale));
+
+            // Изменение между чтением и записью - повтор со свежей копией, оба изменения на месте
+            AtomicBoolean interfered = new AtomicBoolean();
+            optimisticRetry.run("test.price", () -> {
+                Car current = carService.getCarById(carId);
+                if (interfered.compareAndSet(false, true)) {
+                    carService.updateCarAvailability(carId, true); // "другой пользователь"
+                }
+                current.setPricePerDay(950.0);
+                return carRepository.save(current);
+            });
+            Car merged = carService.getCarById(carId);
+            assertEquals(950.0, merged.getPricePerDay());
+            assertTrue(merged.getAvailable());
+            assertEquals(new OptimisticRetry.OperationSnapshot(1, 1, 1, 0),
+                    optimisticRetry.snapshot().operations().get("test.price"));
+
+            // Постоянные конфликты - ошибка после max-attempts попыток
+            OptimisticRetry shortRetry = new OptimisticRetry(3, 1, 5);
+            RuntimeException exhausted = assertThrows(RuntimeException.class, () -> shortRetry.run("test.hot", () -> {
+                throw new OptimisticLockingFailureException("конфликт");
+            }));
+            assertTrue(exhausted.getMessage().contains("попробуйте еще раз"));
+            assertEquals(new OptimisticRetry.OperationSnapshot(1, 3, 0, 1),
+                    shortRetry.snapshot().operations().get("test.hot"));
+
+            // Аренда: переход статуса меняет версию, устаревшая копия не сохраняется
+            Rental rental = rentalService.createRentalRequest(carId, client.getId(),
+                    LocalDateTime.now().plusDays(3), LocalDateTime.now().plusDays(5));
+            Rental staleRental = rentalService.getRentalById(rental.getId());
+            Rental approved = rentalService.approveRental(rental.getId(), manager.getId());
+            assertEquals(RentalStatus.CONFIRMED, approved.getStatus());
+            assertTrue(approved.getVersion() > staleRental.getVersion());
+            staleRental.setStatus(RentalStatus.CANCELLED);
+            assertThrows(ObjectOptimisticLockingFailureException.class, () -> rentalRepository.save(staleRental));
+            assertEquals(RentalStatus.CONFIRMED, rentalService.getRentalById(rental.getId()).getStatus());
+            assertEquals(1, optimisticRetry.snapshot().operations().get("rental.approve").calls());
+
+            // Одновременные изменения одного автомобиля: все выполняются, последнее фото на месте
+            ExecutorService executor = Executors.newFixedThreadPool(4);
+            try {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    int thread = t;
+                    futures.add(executor.submit(() -> {
+                        for (int i = 0; i < 25; i++) {
+                            if (thread < 2) {
+                                carService.updateCarAvailability(carId, i % 2 == 0);
+                            } else {
+                                carService.updateCarPhoto(carId, "/images/cars/lock-" + thread + "-" + i + ".jpg");
+                            }
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            assertTrue(carService.getCarById(carId).getImageUrl().endsWith("-24.jpg"));
+            // Конфликты версий (если были) разрешены повторами
+            OptimisticRetry.Snapshot conflicts = optimisticRetry.snapshot();
+            assertEquals(0, conflicts.operations().get("car.updateAvailability").failed(), conflicts.toString());
+            assertEquals(50, conflicts.operations().get("car.updatePhoto").calls(), conflicts.toString());
+            assertEquals(0, conflicts.operations().get("car.updatePhoto").failed(), conflicts.toString());
+        } finally {
+            if (previous == null) {
+                System.clearProperty("db.optimistic.max-attempts");
+            } else {
+                System.setProperty("db.optimistic.max-attempts", previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package org.example.carrental;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.service.FileStorageService;
+import org.example.carrental.service.ImageType;
+import org.example.carrental.service.PhotoPostProcessor;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PhotoUploadPipelineTest {
+
+    // Минимальные файлы: сигнатура формата + произвольные данные
+    private static final byte[] PNG = concat(new byte[]{(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'},
+            new byte[200_000]);
+    private static final byte[] JPEG = concat(new byte[]{(byte) 0xFF, (byte) 0xD8, (byte) 0xFF, (byte) 0xE0},
+            "jpeg".getBytes());
+
+    @TempDir
+    Path uploadDir;
+
+    @Test
+    public void testPhotosAreStoredByContentHashAndProcessedInBackground() throws Exception {
+        String previous = System.setProperty("upload.dir", uploadDir.toString());
+        try (var context = new AnnotationConfigApplicationContext()) {
+            context.register(DatabaseConfig.class, BlockingProcessor.class);
+            context.refresh();
+            FileStorageService storage = context.getBean(FileStorageService.class);
+            BlockingProcessor processor = context.getBean(BlockingProcessor.class);
+
+            // Формат - по содержимому, а не по Content-Type и имени файла
+            FileStorageService.StoreResult first = storage.store(
+                    new MockMultipartFile("imageFile", "photo.bin", "application/octet-stream", PNG));
+            FileStorageService.StoredPhoto photo = first.photo();
+            String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(PNG));
+            assertEquals(ImageType.PNG, photo.type());
+            assertEquals(sha256, photo.sha256());
+            assertEquals("/uploads/images/cars/" + sha256 + ".png", photo.url());
+            assertArrayEquals(PNG, Files.readAllBytes(photo.path()));
+            assertFalse(photo.duplicate());
+
+            // Загрузка не ждет обработки
+            assertFalse(first.processing().isDone());
+            processor.release.countDown();
+            first.processing().get(5, TimeUnit.SECONDS);
+            assertEquals(List.of(sha256), processor.processed);
+
+            // То же содержимое под другим именем - тот же файл, без повторной обработки
+            FileStorageService.StoreResult again = storage.store(
+                    new MockMultipartFile("imageFile", "copy.png", "image/png", PNG));
+            assertTrue(again.photo().duplicate());
+            assertEquals(photo.url(), again.photo().url());
+            assertTrue(again.processing().isDone());
+
+            // Расширение тоже по содержимому
+            assertTrue(storage.storeFile(new MockMultipartFile("imageFile", "car.png", "image/png", JPEG))
+                    .endsWith(".jpg"));
+
+            // Не изображение с Content-Type изображения - отказ, файлов не остается
+            RuntimeException rejected = assertThrows(RuntimeException.class, () -> storage.store(
+                    new MockMultipartFile("imageFile", "fake.jpg", "image/jpeg", "<html>".getBytes())));
+            assertTrue(rejected.getMessage().contains("изображением"));
+
+            try (Stream<Path> stored = Files.list(uploadDir.resolve("images/cars"));
+                 Stream<Path> staging = Files.list(uploadDir.resolve(".staging"))) {
+                assertEquals(2, stored.count());
+                assertEquals(0, staging.count());
+            }
+        } finally {
+            if (previous == null) {
+                System.clearProperty("upload.dir");
+            } else {
+                System.setProperty("upload.dir", previous);
+            }
+        }
+    }
+
+    private static byte[] concat(byte[] head, byte[] tail) {
+        byte[] result = new byte[head.length + tail.length];
+        System.arraycopy(head, 0, result, 0, head.length);
+        System.arraycopy(tail, 0, result, head.length, tail.length);
+        return result;
+    }
+
+    // Обработчик, который ждет разрешения теста: проверяет, что загрузка его не дожидается
+    public static class BlockingProcessor implements PhotoPostProcessor {
+
+        final CountDownLatch release = new CountDownLatch(1);
+        final List<String> processed = new CopyOnWriteArrayList<>();
+
+        @Override
+        public void process(FileStorageService.StoredPhoto photo) throws Exception {
+            assertTrue(release.await(5, TimeUnit.SECONDS));
+            processed.add(photo.sha256());
+        }
+    }
+}
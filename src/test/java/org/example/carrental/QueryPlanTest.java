@@ -0,0 +1,183 @@
+package org.example.carrental;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.RentalStatus;
+import org.example.carrental.entity.User;
+import org.example.carrental.repository.CarRepository;
+import org.example.carrental.repository.RentalRepository;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.RentalService;
+import org.example.carrental.service.UserService;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.domain.Limit;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Планы запросов RentalRepository и выборок автомобилей менеджера: каждый запрос выполняется,
+// его SQL перехватывается (StatementInspector Hibernate) и разбирается через EXPLAIN в H2.
+// Полный перебор таблицы rentals или cars (tableScan в плане) - ошибка: запросу не хватает индекса
+public class QueryPlanTest {
+
+    private static final int RENTALS_PER_CAR = 20;
+    private static final Pattern TABLE_SCAN = Pattern.compile("PUBLIC\\.(RENTALS|CARS)\\.tableScan");
+    private static final Pattern INDEX = Pattern.compile("/\\* PUBLIC\\.([^:*]+)");
+
+    @Test
+    public void testRepositoryQueriesUseIndexes() throws Exception {
+        List<String> statements = new ArrayList<>();
+        StatementInspector inspector = sql -> {
+            synchronized (statements) {
+                statements.add(sql);
+            }
+            return sql;
+        };
+
+        try (var context = new AnnotationConfigApplicationContext()) {
+            // SQL всех запросов сессии - в statements
+            context.getBeanFactory().addBeanPostProcessor(new BeanPostProcessor() {
+                @Override
+                public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                    if (bean instanceof LocalContainerEntityManagerFactoryBean em) {
+                        em.getJpaPropertyMap().put("hibernate.session_factory.statement_inspector", inspector);
+                    }
+                    return bean;
+                }
+            });
+            context.register(DatabaseConfig.class);
+            context.refresh();
+
+            RentalRepository rentals = context.getBean(RentalRepository.class);
+            CarRepository cars = context.getBean(CarRepository.class);
+            UserService userService = context.getBean(UserService.class);
+            CarService carService = context.getBean(CarService.class);
+            RentalService rentalService = context.getBean(RentalService.class);
+
+            // Несколько менеджеров и клиентов, по 20 аренд на автомобиль: планировщику есть из чего выбирать
+            User manager = userService.registerManager("plan-manager@rental.com", "pass", "Менеджер Планов", "+7500");
+            User otherManager = userService.registerManager("plan-other@rental.com", "pass", "Другой Менеджер", "+7501");
+            User client = userService.registerClient("plan-client@rental.com", "pass", "Клиент Планов", "+7502",
+                    "PL0000001");
+            List<Car> fleet = new ArrayList<>();
+            for (int i = 0; i < 10; i++) {
+                Car car = new Car("Plan", "Model" + i, 2020, 500.0 + i, "Бензин", "Автомат", "Седан");
+                car.setVin(String.format("PLAN%013d", i));
+                fleet.add(carService.addCar(car, i % 2 == 0 ? manager : otherManager));
+            }
+            LocalDateTime base = LocalDateTime.now().plusDays(1);
+            for (Car car : fleet) {
+                for (int i = 0; i < RENTALS_PER_CAR; i++) {
+                    rentalService.createRentalRequest(car.getId(), client.getId(),
+                            base.plusDays(i * 3L), base.plusDays(i * 3L + 2));
+                }
+            }
+            Car car = fleet.get(0);
+            Long rentalId = rentals.findByCar(car).get(0).getId();
+            LocalDateTime now = LocalDateTime.now();
+            List<RentalStatus> active = List.of(RentalStatus.PENDING, RentalStatus.CONFIRMED, RentalStatus.ACTIVE);
+
+            Map<String, Runnable> queries = new LinkedHashMap<>();
+            queries.put("findByUser", () -> rentals.findByUser(client));
+            queries.put("findByCar", () -> rentals.findByCar(car));
+            queries.put("findByStatus", () -> rentals.findByStatus(RentalStatus.ACTIVE));
+            queries.put("findByStatusIn", () -> rentals.findByStatusIn(List.of(RentalStatus.PENDING, RentalStatus.ACTIVE)));
+            queries.put("findByUserAndStatus", () -> rentals.findByUserAndStatus(client, RentalStatus.PENDING));
+            queries.put("existsActiveRentalForCar", () -> rentals.existsActiveRentalForCar(car, active));
+            queries.put("findRentalsInPeriod", () -> rentals.findRentalsInPeriod(now, now.plusDays(7)));
+            queries.put("findFutureRentalsForCar", () -> rentals.findFutureRentalsForCar(car, now));
+            queries.put("findCurrentlyActiveRentals", () -> rentals.findCurrentlyActiveRentals(now));
+            queries.put("findWithCarAndUserById", () -> rentals.findWithCarAndUserById(rentalId));
+            queries.put("findByCar_Manager", () -> rentals.findByCar_Manager(manager));
+            queries.put("findBoardByManager", () -> rentals.findBoardByManager(manager.getId(), active));
+            queries.put("findFirstPageByManager", () -> rentals.findFirstPageByManager(manager.getId(), Limit.of(20)));
+            queries.put("findPageByManagerAfter", () -> rentals.findPageByManagerAfter(manager.getId(), now, 0L,
+                    Limit.of(20)));
+            queries.put("findByCar_ManagerAndStatus", () -> rentals.findByCar_ManagerAndStatus(manager,
+                    RentalStatus.PENDING));
+            queries.put("findByCar_ManagerAndStatusIn", () -> rentals.findByCar_ManagerAndStatusIn(manager, active));
+            queries.put("existsOverlappingRental", () -> rentals.existsOverlappingRental(car.getId(), now,
+                    now.plusDays(3), -1L, active));
+            queries.put("findCarIdByRentalId", () -> rentals.findCarIdByRentalId(rentalId));
+            queries.put("findRentalPeriodsByCarAndStatusIn", () -> rentals.findRentalPeriodsByCarAndStatusIn(
+                    car.getId(), active));
+            queries.put("findByManagerAndPeriod", () -> rentals.findByManagerAndPeriod(manager, now, now.plusDays(7)));
+            queries.put("getRentalStatsByManager", () -> rentals.getRentalStatsByManager(manager.getId()));
+            queries.put("findUpcomingRentalsForManager", () -> rentals.findUpcomingRentalsForManager(manager, now,
+                    now.plusDays(7)));
+            queries.put("findOverdueRentalsForManager", () -> rentals.findOverdueRentalsForManager(manager, now));
+            queries.put("findRentalsRequiringAttention", () -> rentals.findRentalsRequiringAttention(manager, now));
+            queries.put("getTotalRevenueByManager", () -> rentals.getTotalRevenueByManager(manager));
+            queries.put("findByManagerAndUser", () -> rentals.findByManagerAndUser(manager, client.getId()));
+            queries.put("findByManagerAndCar", () -> rentals.findByManagerAndCar(manager, car.getId()));
+            queries.put("cars.findByManager", () -> cars.findByManager(manager));
+            queries.put("cars.findByManagerId", () -> cars.findByManagerId(manager.getId()));
+            queries.put("cars.findAvailableCarsByManager", () -> cars.findAvailableCarsByManager(manager.getId()));
+
+            DataSource dataSource = context.getBean(DataSource.class);
+            List<String> scans = new ArrayList<>();
+            try (Connection connection = dataSource.getConnection()) {
+                for (Map.Entry<String, Runnable> query : queries.entrySet()) {
+                    synchronized (statements) {
+                        statements.clear();
+                    }
+                    query.getValue().run();
+                    List<String> executed;
+                    synchronized (statements) {
+                        executed = new ArrayList<>(statements);
+                    }
+                    assertFalse(executed.isEmpty(), query.getKey() + ": запрос не дошел до базы");
+                    for (String sql : executed) {
+                        String plan = explain(connection, sql);
+                        Matcher scan = TABLE_SCAN.matcher(plan);
+                        if (scan.find()) {
+                            scans.add(query.getKey() + " - " + scan.group(1) + ": " + sql + " " + indexes(plan));
+                        }
+                    }
+                }
+            }
+            assertTrue(scans.isEmpty(), "Запросы перебирают всю таблицу:\n" + String.join("\n", scans));
+        }
+    }
+
+    // Индексы (и перебираемые таблицы) из плана - для сообщения о переборе таблицы
+    private static List<String> indexes(String plan) {
+        List<String> names = new ArrayList<>();
+        Matcher index = INDEX.matcher(plan);
+        while (index.find()) {
+            names.add(index.group(1).trim());
+        }
+        return names;
+    }
+
+    // Параметры в EXPLAIN не влияют на выбор индекса H2 - подставляется NULL
+    private static String explain(Connection connection, String sql) throws Exception {
+        try (PreparedStatement statement = connection.prepareStatement("EXPLAIN " + sql)) {
+            for (int i = 1; i <= statement.getParameterMetaData().getParameterCount(); i++) {
+                statement.setObject(i, null);
+            }
+            try (ResultSet plan = statement.executeQuery()) {
+                StringBuilder text = new StringBuilder();
+                while (plan.next()) {
+                    text.append(plan.getString(1)).append('\n');
+                }
+                return text.toString();
+            }
+        }
+    }
+}
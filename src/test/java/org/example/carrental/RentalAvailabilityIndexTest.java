@@ -0,0 +1,80 @@
+package org.example.carrental;
+
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.RentalStatus;
+import org.example.carrental.repository.RentalRepository;
+import org.example.carrental.service.RentalAvailabilityIndex;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RentalAvailabilityIndexTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2030, 1, 1, 10, 0);
+
+    @Test
+    public void testOverlapMatchesInclusiveBoundaries() {
+        List<Object[]> stored = new ArrayList<>();
+        stored.add(new Object[]{1L, BASE.plusDays(10), BASE.plusDays(15)});
+        RentalAvailabilityIndex index = new RentalAvailabilityIndex(repositoryReturning(stored));
+
+        assertFalse(index.hasOverlap(7L, BASE, BASE.plusDays(9), null));
+        assertTrue(index.hasOverlap(7L, BASE, BASE.plusDays(10), null));      // конец совпадает с началом
+        assertTrue(index.hasOverlap(7L, BASE.plusDays(15), BASE.plusDays(20), null)); // начало совпадает с концом
+        assertTrue(index.hasOverlap(7L, BASE.plusDays(11), BASE.plusDays(12), null)); // внутри
+        assertTrue(index.hasOverlap(7L, BASE.plusDays(5), BASE.plusDays(25), null));  // охватывает
+        assertFalse(index.hasOverlap(7L, BASE.plusDays(16), BASE.plusDays(20), null));
+        assertFalse(index.hasOverlap(7L, BASE.plusDays(11), BASE.plusDays(12), 1L));  // исключенная аренда
+    }
+
+    @Test
+    public void testLongEarlierRentalIsFoundBehindShorterOnes() {
+        List<Object[]> stored = new ArrayList<>();
+        stored.add(new Object[]{1L, BASE, BASE.plusDays(30)});
+        stored.add(new Object[]{2L, BASE.plusDays(2), BASE.plusDays(3)});
+        RentalAvailabilityIndex index = new RentalAvailabilityIndex(repositoryReturning(stored));
+
+        assertTrue(index.hasOverlap(7L, BASE.plusDays(20), BASE.plusDays(21), null));
+        assertTrue(index.hasOverlap(7L, BASE.plusDays(20), BASE.plusDays(21), 2L));
+        assertFalse(index.hasOverlap(7L, BASE.plusDays(20), BASE.plusDays(21), 1L));
+    }
+
+    @Test
+    public void testStatusChangesKeepIndexInStep() {
+        RentalAvailabilityIndex index = new RentalAvailabilityIndex(repositoryReturning(new ArrayList<>()));
+        assertFalse(index.hasOverlap(7L, BASE, BASE.plusDays(2), null));
+
+        Rental rental = rental(42L, 7L, BASE, BASE.plusDays(3));
+
+        rental.setStatus(RentalStatus.CONFIRMED);
+        index.onStatusChanged(rental, RentalStatus.PENDING);
+        assertTrue(index.hasOverlap(7L, BASE.plusDays(1), BASE.plusDays(2), null));
+        assertFalse(index.hasOverlap(8L, BASE.plusDays(1), BASE.plusDays(2), null));
+
+        rental.setStatus(RentalStatus.ACTIVE);
+        index.onStatusChanged(rental, RentalStatus.CONFIRMED);
+        assertTrue(index.hasOverlap(7L, BASE.plusDays(1), BASE.plusDays(2), null));
+
+        rental.setStatus(RentalStatus.COMPLETED);
+        index.onStatusChanged(rental, RentalStatus.ACTIVE);
+        assertFalse(index.hasOverlap(7L, BASE.plusDays(1), BASE.plusDays(2), null));
+    }
+
+    private static Rental rental(Long id, Long carId, LocalDateTime start, LocalDateTime end) {
+        Car car = new Car();
+        car.setId(carId);
+        Rental rental = new Rental(null, car, start, end, null);
+        rental.setId(id);
+        return rental;
+    }
+
+    // Заглушка репозитория: отвечает только на запрос периодов аренд
+    private static RentalRepository repositoryReturning(List<Object[]> periods) {
+        return RepositoryStub.answering(RentalRepository.class, "findRentalPeriodsByCarAndStatusIn", () -> periods);
+    }
+}
@@ -0,0 +1,187 @@
+package org.example.carrental;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.ReplicaRouting;
+import org.example.carrental.config.ReplicationStandIn;
+import org.example.carrental.dto.CarFilterDTO;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.Rental;
+import org.example.carrental.entity.User;
+import org.example.carrental.repository.CarRepository;
+import org.example.carrental.service.CarSearchIndex;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.RentalService;
+import org.example.carrental.service.UserService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ReplicaRoutingTest {
+
+    private String previousUrl;
+    private String previousInterval;
+    private String previousLag;
+
+    @BeforeEach
+    public void useReplica() {
+        // Реплика обновляется только по sync(): видно, какие чтения ушли на нее, а какие - на основную базу
+        previousUrl = System.setProperty("db.replica.url", "jdbc:h2:mem:replica-routing-test;DB_CLOSE_DELAY=-1");
+        previousInterval = System.setProperty("db.replica.stand-in.interval-ms", "0");
+        previousLag = System.setProperty("db.replica.max-lag-ms", "600000");
+    }
+
+    @AfterEach
+    public void restoreProperties() {
+        ReplicaRouting.clearRequired();
+        restore("db.replica.url", previousUrl);
+        restore("db.replica.stand-in.interval-ms", previousInterval);
+        restore("db.replica.max-lag-ms", previousLag);
+    }
+
+    @Test
+    public void testCatalogReadsUseReplicaAndOwnWritesAreVisible() throws Exception {
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            UserService userService = context.getBean(UserService.class);
+            CarService carService = context.getBean(CarService.class);
+            RentalService rentalService = context.getBean(RentalService.class);
+            ReplicationStandIn standIn = context.getBean(ReplicationStandIn.class);
+            ReplicaRouting routing = context.getBean(ReplicaRouting.class);
+            ReplicaRouting.beginRequest(0);
+
+            User manager = userService.registerManager("replica-manager@rental.com", "pass", "Менеджер Реплики", "+7500");
+            User client = userService.registerClient("replica-client@rental.com", "pass", "Клиент Реплики", "+7501",
+                    "RP0000001");
+            Car car = new Car("Replica", "R1", 2023, 700.0, "Бензин", "Автомат", "Седан");
+            car.setVin("REPLICA0000000001");
+            Long carId = carService.addCar(car, manager).getId();
+
+            // Тот, кто записал, читает свое изменение (основная база), остальные пока - старую реплику
+            assertEquals(1, carService.getCarsByBrand("Replica").size());
+            assertTrue(routing.snapshot().ownWriteFallbacks() > 0);
+            ReplicaRouting.beginRequest(0);
+            long replicaReads = routing.snapshot().replicaReads();
+            assertEquals(0, carService.getCarsByBrand("Replica").size());
+            assertEquals(replicaReads + 1, routing.snapshot().replicaReads());
+
+            standIn.sync();
+            assertEquals(routing.committedPosition(), routing.appliedPosition());
+            assertEquals(0, routing.snapshot().lagMs());
+            assertEquals(1, carService.getCarsByBrand("Replica").size());
+
+            // Бронирование - в основную базу; клиент (номер записи из его сессии) видит его сразу,
+            // панель менеджера с реплики - после следующей копии
+            LocalDateTime start = LocalDateTime.now().plusDays(3).truncatedTo(ChronoUnit.HOURS);
+            Rental rental = rentalService.createRentalRequest(carId, client.getId(), start, start.plusDays(2));
+            long clientLastWrite = ReplicaRouting.requiredPosition();
+            assertTrue(clientLastWrite > routing.appliedPosition());
+
+            ReplicaRouting.beginRequest(0);
+            assertTrue(rentalService.getManagerRentalBoard(manager.getId()).pendingRentals.isEmpty());
+
+            ReplicaRouting.requireApplied(clientLastWrite);
+            assertEquals(rental.getId(), rentalService.getManagerRentalBoard(manager.getId()).pendingRentals.get(0).getId());
+
+            standIn.sync();
+            ReplicaRouting.beginRequest(0);
+            assertEquals(rental.getId(), rentalService.getManagerRentalBoard(manager.getId()).pendingRentals.get(0).getId());
+
+            // Одобрение - тоже в основную базу, реплика получает его с копией
+            rentalService.approveRental(rental.getId(), manager.getId());
+            ReplicaRouting.beginRequest(0);
+            assertEquals(1, rentalService.getManagerRentalBoard(manager.getId()).pendingRentals.size());
+            standIn.sync();
+            assertTrue(rentalService.getManagerRentalBoard(manager.getId()).pendingRentals.isEmpty());
+        }
+    }
+
+    @Test
+    public void testSearchIndexLoadsFromPrimaryWhileReplicaLags() throws Exception {
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            UserService userService = context.getBean(UserService.class);
+            CarService carService = context.getBean(CarService.class);
+            CarSearchIndex searchIndex = context.getBean(CarSearchIndex.class);
+            ReplicaRouting routing = context.getBean(ReplicaRouting.class);
+            ReplicaRouting.beginRequest(0);
+
+            // Индекс сброшен, автомобиль добавлен, пока индекс не загружен: реплика его еще не получила
+            User manager = userService.registerManager("index-manager@rental.com", "pass", "Менеджер Индекса", "+7502");
+            searchIndex.invalidate();
+            Car car = new Car("Lagging", "L1", 2024, 900.0, "Бензин", "Автомат", "Седан");
+            car.setVin("LAGGING0000000001");
+            Long carId = carService.addCar(car, manager).getId();
+            long managerLastWrite = ReplicaRouting.requiredPosition();
+            CarFilterDTO filters = new CarFilterDTO();
+            filters.setBrand("Lagging");
+
+            // Первым ищет другой пользователь: чтение каталога - с реплики, но индекс загружается с основной базы
+            ReplicaRouting.beginRequest(0);
+            long replicaReads = routing.snapshot().replicaReads();
+            assertTrue(carService.searchCars(filters).cars().isEmpty());
+            assertEquals(replicaReads + 1, routing.snapshot().replicaReads());
+
+            // Автор записи сразу находит свой автомобиль в уже загруженном индексе
+            ReplicaRouting.requireApplied(managerLastWrite);
+            assertEquals(List.of(carId), carService.searchCars(filters).cars().stream().map(Car::getId).toList());
+        }
+    }
+
+    @Test
+    public void testOnlyCommittedChangesAdvanceWritePosition() {
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarRepository carRepository = context.getBean(CarRepository.class);
+            ReplicaRouting routing = context.getBean(ReplicaRouting.class);
+            TransactionTemplate transaction = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+            ReplicaRouting.beginRequest(0);
+            long committed = routing.committedPosition();
+
+            // Транзакция не readOnly, но только читает - не запись
+            transaction.executeWithoutResult(status -> carRepository.findByBrand("Nothing"));
+            assertEquals(committed, routing.committedPosition());
+
+            // Откаченное изменение - не запись
+            transaction.executeWithoutResult(status -> {
+                Car car = new Car("Rollback", "R0", 2020, 100.0, "Бензин", "Автомат", "Седан");
+                car.setVin("ROLLBACK000000001");
+                carRepository.saveAndFlush(car);
+                status.setRollbackOnly();
+            });
+            assertEquals(committed, routing.committedPosition());
+            assertEquals(0, ReplicaRouting.requiredPosition());
+
+            transaction.executeWithoutResult(status -> {
+                Car car = new Car("Commit", "C0", 2020, 100.0, "Бензин", "Автомат", "Седан");
+                car.setVin("COMMIT00000000001");
+                carRepository.save(car);
+            });
+            assertEquals(committed + 1, routing.committedPosition());
+            assertEquals(committed + 1, ReplicaRouting.requiredPosition());
+
+            // Запись вне запроса (фоновый поток) получает номер, но не остается в потоке
+            ReplicaRouting.clearRequired();
+            transaction.executeWithoutResult(status -> {
+                Car car = new Car("Background", "B0", 2020, 100.0, "Бензин", "Автомат", "Седан");
+                car.setVin("BACKGROUND0000001");
+                carRepository.save(car);
+            });
+            assertEquals(committed + 2, routing.committedPosition());
+            assertEquals(0, ReplicaRouting.requiredPosition());
+        }
+    }
+
+    private static void restore(String key, String previous) {
+        if (previous == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, previous);
+        }
+    }
+}
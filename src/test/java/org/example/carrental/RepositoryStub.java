@@ -0,0 +1,32 @@
+package org.example.carrental;
+
+import org.example.carrental.service.PrimaryReads;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.lang.reflect.Proxy;
+import java.util.function.Supplier;
+
+// Заглушка репозитория для тестов кэшей в памяти: отвечает только на один запрос,
+// на любой другой метод - UnsupportedOperationException
+final class RepositoryStub {
+
+    private RepositoryStub() {
+    }
+
+    static <R> R answering(Class<R> repositoryType, String methodName, Supplier<?> answer) {
+        return repositoryType.cast(Proxy.newProxyInstance(
+                repositoryType.getClassLoader(),
+                new Class<?>[]{repositoryType},
+                (proxy, method, args) -> {
+                    if (method.getName().equals(methodName)) {
+                        return answer.get();
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                }));
+    }
+
+    // Загрузка кэша напрямую из заглушки, без отдельной транзакции
+    static PrimaryReads directReads() {
+        return new PrimaryReads(TransactionOperations.withoutTransaction());
+    }
+}
@@ -0,0 +1,123 @@
+package org.example.carrental;
+
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.RequestMetrics;
+import org.example.carrental.config.RequestMetricsFilter;
+import org.example.carrental.config.SqlStatementInspector;
+import org.example.carrental.config.WebConfig;
+import org.example.carrental.dto.SessionUser;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.User;
+import org.example.carrental.entity.UserRole;
+import org.example.carrental.repository.UserRepository;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class RequestMetricsTest {
+
+    @Test
+    public void testRequestsAreRecordedPerHandlerWithSql() throws Exception {
+        String previousToken = System.setProperty("metrics.token", "scrape-secret");
+        try (var context = new AnnotationConfigWebApplicationContext()) {
+            context.register(DatabaseConfig.class, WebConfig.class);
+            context.setServletContext(new MockServletContext());
+            context.refresh();
+
+            UserService userService = context.getBean(UserService.class);
+            CarService carService = context.getBean(CarService.class);
+            User manager = userService.registerManager("metrics-manager@rental.com", "pass", "Менеджер Метрик", "+7300");
+            for (int i = 0; i < 3; i++) {
+                Car car = new Car("Metrix", "M" + i, 2022, 500.0, "Бензин", "Автомат", "Седан");
+                car.setVin("METRIX" + i);
+                carService.addCar(car, manager);
+            }
+
+            RequestMetrics metrics = context.getBean(RequestMetrics.class);
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup(context)
+                    .addFilters(new RequestMetricsFilter(() -> metrics))
+                    .build();
+
+            // Разные марки - один ряд метрик с шаблоном адреса
+            mvc.perform(get("/api/cars/search/brand/Metrix")).andExpect(status().isOk());
+            mvc.perform(get("/api/cars/search/brand/Nothing")).andExpect(status().isOk());
+
+            RequestMetrics.HandlerSnapshot search = metrics.snapshot().get("GET /api/cars/search/brand/{brand}");
+            assertNotNull(search, metrics.snapshot().keySet().toString());
+            assertEquals(2, search.requests());
+            assertTrue(search.statements() >= 2, search.toString());
+            assertTrue(search.rows() >= 3, search.toString());
+            assertTrue(search.jdbcNanos() > 0, search.toString());
+            assertEquals(0, search.overBudget());
+
+            // Метрики - только администратору, в формате Prometheus
+            mvc.perform(get("/admin/metrics")).andExpect(status().isForbidden());
+            User adminUser = context.getBean(UserRepository.class)
+                    .save(new User("metrics-admin@rental.com", "pass", "Админ Метрик", UserRole.ADMIN));
+            SessionUser admin = userService.toSessionUser(adminUser);
+            String body = mvc.perform(get("/admin/metrics").sessionAttr("user", admin))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            assertTrue(body.contains("# TYPE carrental_http_request_duration_seconds summary"), body);
+            assertTrue(body.contains("carrental_http_request_duration_seconds_count{handler=\"GET /api/cars/search/brand/{brand}\"} 2"), body);
+            assertTrue(body.contains("carrental_http_request_sql_statements_total{handler=\"GET /api/cars/search/brand/{brand}\"}"), body);
+
+            // Сборщик метрик - по токену без сессии
+            mvc.perform(get("/admin/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer scrape-secreT"))
+                    .andExpect(status().isForbidden());
+            mvc.perform(get("/admin/metrics").header(HttpHeaders.AUTHORIZATION, "Bearer scrape-secret"))
+                    .andExpect(status().isOk());
+        } finally {
+            if (previousToken == null) {
+                System.clearProperty("metrics.token");
+            } else {
+                System.setProperty("metrics.token", previousToken);
+            }
+        }
+    }
+
+    @Test
+    public void testRequestOverSqlBudgetIsCounted() {
+        RequestMetrics metrics = new RequestMetrics(2);
+        SqlStatementInspector inspector = new SqlStatementInspector();
+
+        RequestMetrics.RequestSql sql = metrics.begin();
+        assertNull(metrics.begin(), "вложенный запрос не начинает новый замер");
+        inspector.inspect("select 1");
+        inspector.inspect("select 2");
+        metrics.end(sql, "GET /ok", 200, TimeUnit.MILLISECONDS.toNanos(3));
+
+        sql = metrics.begin();
+        for (int i = 0; i < 3; i++) {
+            inspector.inspect("select " + i);
+        }
+        metrics.end(sql, "GET /n-plus-one", 500, TimeUnit.MILLISECONDS.toNanos(40));
+
+        // Вне запроса SQL не считается
+        inspector.inspect("select 3");
+
+        RequestMetrics.HandlerSnapshot ok = metrics.snapshot().get("GET /ok");
+        RequestMetrics.HandlerSnapshot slow = metrics.snapshot().get("GET /n-plus-one");
+        assertEquals(2, ok.statements());
+        assertEquals(0, ok.overBudget());
+        assertEquals(0, ok.errors());
+        assertEquals(3, slow.statements());
+        assertEquals(1, slow.overBudget());
+        assertEquals(1, slow.errors());
+        // Перцентиль завышен не больше чем на 1/32
+        assertTrue(slow.quantileMicros()[0] >= 40_000 && slow.quantileMicros()[0] <= 40_000 * 33 / 32,
+                String.valueOf(slow.quantileMicros()[0]));
+        assertTrue(metrics.prometheus().contains("carrental_http_request_sql_budget_exceeded_total{handler=\"GET /n-plus-one\"} 1"));
+    }
+}
@@ -0,0 +1,68 @@
+package org.example.carrental;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.HibernateCacheMetrics;
+import org.example.carrental.entity.Car;
+import org.example.carrental.entity.User;
+import org.example.carrental.service.CarService;
+import org.example.carrental.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SecondLevelCacheTest {
+
+    @Test
+    public void testRepeatedReadsHitCacheAndUpdatesAreVisible() {
+        try (var context = new AnnotationConfigApplicationContext(DatabaseConfig.class)) {
+            CarService carService = context.getBean(CarService.class);
+            UserService userService = context.getBean(UserService.class);
+            Statistics statistics = context.getBean(EntityManagerFactory.class)
+                    .unwrap(SessionFactory.class).getStatistics();
+
+            User manager = userService.registerManager("cache-manager@rental.com", "pass", "Менеджер Кэша", "+7700");
+            Car car = new Car("Cache", "Hit", 2024, 600.0, "Бензин", "Автомат", "Седан");
+            car.setVin("CACHE000000000001");
+            Long carId = carService.addCar(car, manager).getId();
+
+            // Автомобиль по id: после первого чтения - без обращения к базе
+            carService.getCarById(carId);
+            statistics.clear();
+            for (int i = 0; i < 5; i++) {
+                assertEquals("Hit", carService.getCarById(carId).getModel());
+            }
+            assertEquals(0, statistics.getPrepareStatementCount());
+            assertEquals(5, statistics.getDomainDataRegionStatistics("car").getHitCount());
+
+            // Пользователь по email: кэш запросов + кэш сущностей
+            userService.findByEmail("cache-manager@rental.com");
+            statistics.clear();
+            for (int i = 0; i < 5; i++) {
+                assertEquals("Менеджер Кэша", userService.findByEmail("cache-manager@rental.com").getFullName());
+            }
+            assertEquals(0, statistics.getPrepareStatementCount());
+            assertEquals(5, statistics.getQueryCacheHitCount());
+
+            // Изменения через сервисы сразу видны при чтении из кэша
+            carService.updateCarAvailability(carId, false);
+            assertFalse(carService.getCarById(carId).getAvailable());
+            carService.updateCarPhoto(carId, "/images/cars/cache.jpg");
+            assertEquals("/images/cars/cache.jpg", carService.getCarById(carId).getImageUrl());
+            assertFalse(carService.getCarById(carId).getAvailable());
+
+            userService.updateProfile(manager.getId(), "Переименованный Менеджер", "+7701", null);
+            assertEquals("Переименованный Менеджер", userService.findByEmail("cache-manager@rental.com").getFullName());
+            assertEquals("+7701", userService.getUserById(manager.getId()).getPhone());
+
+            HibernateCacheMetrics.Snapshot snapshot = context.getBean(HibernateCacheMetrics.class).snapshot();
+            assertTrue(snapshot.statisticsEnabled());
+            assertTrue(snapshot.regions().get("car").hits() > 0, snapshot.toString());
+            assertTrue(snapshot.regions().get("car").size() > 0, snapshot.toString());
+            assertTrue(snapshot.regions().get("query").hits() > 0, snapshot.toString());
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package org.example.carrental;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.WebConfig;
+import org.example.carrental.dto.SessionUser;
+import org.example.carrental.entity.User;
+import org.example.carrental.service.UserService;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpSession;
+import org.springframework.mock.web.MockServletContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public class SessionUserTest {
+
+    @Test
+    public void testSessionSnapshotIsReusedUntilUserChanges() throws Exception {
+        try (var context = new AnnotationConfigWebApplicationContext()) {
+            context.register(DatabaseConfig.class, WebConfig.class);
+            context.setServletContext(new MockServletContext());
+            context.refresh();
+
+            UserService userService = context.getBean(UserService.class);
+            User client = userService.registerClient("session-client@rental.com", "pass", "Клиент Сессии",
+                    "+7800", "SS0000001");
+            MockMvc mvc = MockMvcBuilders.webAppContextSetup(context).build();
+            Statistics statistics = context.getBean(EntityManagerFactory.class)
+                    .unwrap(SessionFactory.class).getStatistics();
+
+            // Вход кладет в сессию снимок, а не сущность
+            MockHttpSession session = new MockHttpSession();
+            mvc.perform(post("/login").session(session)
+                            .param("email", "session-client@rental.com")
+                            .param("password", "pass"))
+                    .andExpect(status().is3xxRedirection());
+            SessionUser loggedIn = (SessionUser) session.getAttribute("user");
+            assertEquals(client.getId(), loggedIn.getId());
+            assertTrue(loggedIn.isClient());
+
+            // Пользователь не менялся: запросы не читают его из базы, снимок тот же
+            statistics.clear();
+            mvc.perform(get("/rentals/my-rentals").session(session)).andExpect(status().isOk());
+            mvc.perform(get("/").session(session)).andExpect(status().isOk());
+            assertEquals(0, statistics.getEntityStatistics(User.class.getName()).getLoadCount());
+            for (String query : statistics.getQueries()) {
+                assertFalse(query.contains("email"), "поиск пользователя по email: " + query);
+            }
+            assertSame(loggedIn, session.getAttribute("user"));
+
+            // После изменения профиля следующий запрос получает свежий снимок, затем снова переиспользует его
+            userService.updateProfile(client.getId(), "Переименованный Клиент", "+7801", null);
+            mvc.perform(get("/").session(session)).andExpect(status().isOk());
+            SessionUser refreshed = (SessionUser) session.getAttribute("user");
+            assertNotSame(loggedIn, refreshed);
+            assertEquals("Переименованный Клиент", refreshed.getFullName());
+            assertEquals(loggedIn.getVersion() + 1, refreshed.getVersion());
+
+            mvc.perform(get("/").session(session)).andExpect(status().isOk());
+            assertSame(refreshed, session.getAttribute("user"));
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.example.carrental;
+
+import org.apache.catalina.startup.Tomcat;
+import org.example.Main;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.WebConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Отдача фото и статики встроенным Tomcat: кэширование в браузере, 304, диапазоны.
+// Большие файлы уходят через sendfile, маленькие - через FileChannel.transferTo
+public class StaticAssetTest {
+
+    @TempDir
+    Path uploadDir;
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    public void testPhotosAreServedWithValidatorsAndRanges() throws Exception {
+        byte[] photo = new byte[300_000];
+        new Random(17).nextBytes(photo);
+        String sha256 = HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(photo));
+        Path cars = Files.createDirectories(uploadDir.resolve("images/cars"));
+        Files.write(cars.resolve(sha256 + ".png"), photo);
+        Files.writeString(cars.resolve(sha256 + ".png.variants"), "320");
+        Files.write(cars.resolve("legacy.png"), Arrays.copyOf(photo, 1000));
+
+        String previousUploadDir = System.setProperty("upload.dir", uploadDir.toString());
+        String previousBaseDir = System.setProperty("server.base-dir", baseDir.toString());
+        try (var context = new AnnotationConfigWebApplicationContext()) {
+            context.register(DatabaseConfig.class, WebConfig.class);
+            Tomcat tomcat = Main.startServer(context, 0, false);
+            try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build()) {
+                String base = "http://localhost:" + tomcat.getConnector().getLocalPort();
+                String url = base + "/uploads/images/cars/" + sha256 + ".png";
+
+                // Хэш в имени: ETag из имени, кэш на год
+                HttpResponse<byte[]> full = send(client, get(url));
+                assertEquals(200, full.statusCode());
+                assertArrayEquals(photo, full.body());
+                assertEquals('"' + sha256 + '"', header(full, "ETag"));
+                assertEquals("public, max-age=31536000, immutable", header(full, "Cache-Control"));
+                assertEquals("bytes", header(full, "Accept-Ranges"));
+                assertEquals("image/png", header(full, "Content-Type").split(";")[0]);
+
+                // Повторный показ: 304 без тела
+                HttpResponse<byte[]> cached = send(client, get(url).header("If-None-Match", header(full, "ETag")));
+                assertEquals(304, cached.statusCode());
+                assertEquals(0, cached.body().length);
+
+                // Диапазоны
+                HttpResponse<byte[]> middle = send(client, get(url).header("Range", "bytes=100000-199999"));
+                assertEquals(206, middle.statusCode());
+                assertEquals("bytes 100000-199999/300000", header(middle, "Content-Range"));
+                assertArrayEquals(Arrays.copyOfRange(photo, 100_000, 200_000), middle.body());
+                HttpResponse<byte[]> tail = send(client, get(url).header("Range", "bytes=-50"));
+                assertArrayEquals(Arrays.copyOfRange(photo, photo.length - 50, photo.length), tail.body());
+                HttpResponse<byte[]> outside = send(client, get(url).header("Range", "bytes=300000-"));
+                assertEquals(416, outside.statusCode());
+                assertEquals("bytes */300000", header(outside, "Content-Range"));
+                // Файл сменился (другой ETag в If-Range) - целиком
+                HttpResponse<byte[]> changed = send(client, get(url)
+                        .header("Range", "bytes=0-9").header("If-Range", "\"other\""));
+                assertEquals(200, changed.statusCode());
+                assertEquals(photo.length, changed.body().length);
+
+                HttpResponse<byte[]> head = send(client, HttpRequest.newBuilder(URI.create(url))
+                        .method("HEAD", HttpRequest.BodyPublishers.noBody()));
+                assertEquals("300000", header(head, "Content-Length"));
+
+                // Без хэша в имени: ETag по содержимому, браузер перепроверяет
+                String legacyUrl = base + "/uploads/images/cars/legacy.png";
+                HttpResponse<byte[]> legacy = send(client, get(legacyUrl));
+                assertEquals(200, legacy.statusCode());
+                assertArrayEquals(Arrays.copyOf(photo, 1000), legacy.body());
+                assertTrue(header(legacy, "ETag").matches("\"[0-9a-f]{32}\""));
+                assertEquals("no-cache", header(legacy, "Cache-Control"));
+                assertEquals(304, send(client, get(legacyUrl)
+                        .header("If-Modified-Since", header(legacy, "Last-Modified"))).statusCode());
+
+                // Служебные файлы не отдаются
+                assertEquals(404, send(client, get(url + ".variants")).statusCode());
+
+                // Статика из classpath
+                HttpResponse<byte[]> bundled = send(client, get(base + "/images/cars/bmw-x5.jpg"));
+                assertEquals(200, bundled.statusCode());
+                assertEquals(136_009, bundled.body().length);
+                assertEquals("no-cache", header(bundled, "Cache-Control"));
+                assertEquals(304, send(client, get(base + "/images/cars/bmw-x5.jpg")
+                        .header("If-None-Match", header(bundled, "ETag"))).statusCode());
+            } finally {
+                tomcat.stop();
+                tomcat.destroy();
+            }
+        } finally {
+            restore("upload.dir", previousUploadDir);
+            restore("server.base-dir", previousBaseDir);
+        }
+    }
+
+    private static HttpRequest.Builder get(String url) {
+        return HttpRequest.newBuilder(URI.create(url));
+    }
+
+    private static HttpResponse<byte[]> send(HttpClient client, HttpRequest.Builder request) throws Exception {
+        return client.send(request.build(), HttpResponse.BodyHandlers.ofByteArray());
+    }
+
+    private static String header(HttpResponse<?> response, String name) {
+        return response.headers().firstValue(name).orElse(null);
+    }
+
+    private static void restore(String key, String previous) {
+        if (previous == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, previous);
+        }
+    }
+}
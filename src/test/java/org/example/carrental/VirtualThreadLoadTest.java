@@ -0,0 +1,203 @@
+package org.example.carrental;
+
+import org.apache.catalina.startup.Tomcat;
+import org.example.Main;
+import org.example.carrental.config.ConnectionPoolMetrics;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.WebConfig;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// Нагрузка на встроенный Tomcat: обычные потоки (пул server.max-threads) против виртуальных.
+// Половина запросов держит соединение с базой DB_LATENCY_MS (как запрос к удаленной базе),
+// половина не обращается к базе. Пул соединений одного размера в обоих режимах.
+// С обычными потоками все потоки заняты ожиданием базы и быстрые запросы стоят в очереди за ними;
+// с виртуальными быстрые запросы обслуживаются сразу, а запросы к базе ждут на семафоре BoundedDataSource
+public class VirtualThreadLoadTest {
+
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadLoadTest.class);
+
+    private static final int CLIENTS = 400;
+    private static final int REQUESTS_PER_CLIENT = 10;
+    private static final int PLATFORM_THREADS = 100;
+    private static final long DB_LATENCY_MS = 10;
+
+    @TempDir
+    Path baseDir;
+
+    @Test
+    public void testVirtualThreadsKeepFastRequestsFastUnderDatabaseLoad() throws Exception {
+        String previousBaseDir = System.setProperty("server.base-dir", baseDir.toString());
+        String previousMaxThreads = System.setProperty("server.max-threads", String.valueOf(PLATFORM_THREADS));
+        try {
+            LoadResult platform = runLoad(false);
+            LoadResult virtual = runLoad(true);
+
+            platform.report("platform");
+            virtual.report("virtual");
+
+            for (LoadResult result : List.of(platform, virtual)) {
+                assertEquals(0, result.errors(), "все запросы выполнены");
+                assertEquals(0, result.pool().connectionTimeouts());
+                assertEquals(0, result.pool().permitTimeouts());
+            }
+            // Виртуальные потоки: перед пулом ждут на семафоре, а не внутри пула
+            assertTrue(virtual.maxAwaitingPermit() > 0);
+            assertTrue(virtual.maxAwaitingPermit() > virtual.maxAwaitingConnection(),
+                    "ждали семафор: " + virtual.maxAwaitingPermit() + ", в пуле: " + virtual.maxAwaitingConnection());
+            // Быстрые запросы не ждут освобождения потока
+            assertTrue(virtual.percentile(virtual.fast(), 50) < platform.percentile(platform.fast(), 50),
+                    "без базы p50: virtual " + virtual.percentile(virtual.fast(), 50) + " мс, platform "
+                            + platform.percentile(platform.fast(), 50) + " мс");
+        } finally {
+            restore("server.base-dir", previousBaseDir);
+            restore("server.max-threads", previousMaxThreads);
+        }
+    }
+
+    private LoadResult runLoad(boolean virtualThreads) throws Exception {
+        try (var context = new AnnotationConfigWebApplicationContext()) {
+            context.register(DatabaseConfig.class, WebConfig.class, BenchController.class);
+            Tomcat tomcat = Main.startServer(context, 0, virtualThreads);
+            ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+            try (HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+                 ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+                String base = "http://localhost:" + tomcat.getConnector().getLocalPort() + "/bench/";
+                // Первый запрос поднимает контекст Spring
+                send(client, base + "db");
+
+                ConnectionPoolMetrics metrics = context.getBean(ConnectionPoolMetrics.class);
+                AtomicInteger maxAwaitingPermit = new AtomicInteger();
+                AtomicInteger maxAwaitingConnection = new AtomicInteger();
+                sampler.scheduleAtFixedRate(() -> {
+                    ConnectionPoolMetrics.Snapshot snapshot = metrics.snapshot();
+                    maxAwaitingPermit.accumulateAndGet(snapshot.threadsAwaitingPermit(), Math::max);
+                    maxAwaitingConnection.accumulateAndGet(snapshot.threadsAwaitingConnection(), Math::max);
+                }, 0, 5, TimeUnit.MILLISECONDS);
+
+                List<Long> slow = Collections.synchronizedList(new ArrayList<>());
+                List<Long> fast = Collections.synchronizedList(new ArrayList<>());
+                AtomicInteger errors = new AtomicInteger();
+                long started = System.nanoTime();
+                List<Future<?>> futures = new ArrayList<>();
+                for (int c = 0; c < CLIENTS; c++) {
+                    int clientId = c;
+                    futures.add(clients.submit(() -> {
+                        for (int i = 0; i < REQUESTS_PER_CLIENT; i++) {
+                            boolean database = (clientId + i) % 2 == 0;
+                            long begin = System.nanoTime();
+                            int status = send(client, base + (database ? "db" : "fast"));
+                            long elapsed = System.nanoTime() - begin;
+                            if (status != 200) {
+                                errors.incrementAndGet();
+                            }
+                            (database ? slow : fast).add(elapsed);
+                        }
+                        return null;
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                long totalNanos = System.nanoTime() - started;
+                sampler.shutdownNow();
+
+                return new LoadResult(sorted(slow), sorted(fast), errors.get(), totalNanos,
+                        maxAwaitingPermit.get(), maxAwaitingConnection.get(), metrics.snapshot());
+            } finally {
+                sampler.shutdownNow();
+                tomcat.stop();
+                tomcat.destroy();
+            }
+        }
+    }
+
+    private static int send(HttpClient client, String url) throws Exception {
+        return client.send(HttpRequest.newBuilder(URI.create(url)).build(), HttpResponse.BodyHandlers.discarding())
+                .statusCode();
+    }
+
+    private static long[] sorted(List<Long> values) {
+        return values.stream().mapToLong(Long::longValue).sorted().toArray();
+    }
+
+    private static void restore(String key, String previous) {
+        if (previous == null) {
+            System.clearProperty(key);
+        } else {
+            System.setProperty(key, previous);
+        }
+    }
+
+    private record LoadResult(long[] slow, long[] fast, int errors, long totalNanos,
+                              int maxAwaitingPermit, int maxAwaitingConnection,
+                              ConnectionPoolMetrics.Snapshot pool) {
+
+        long percentile(long[] sorted, int percent) {
+            return TimeUnit.NANOSECONDS.toMillis(sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)]);
+        }
+
+        void report(String mode) {
+            log.atInfo()
+                    .addKeyValue("mode", mode)
+                    .addKeyValue("clients", CLIENTS)
+                    .addKeyValue("requestsPerSecond", Math.round((slow.length + fast.length) * 1e9 / totalNanos))
+                    .addKeyValue("dbP50Ms", percentile(slow, 50))
+                    .addKeyValue("dbP99Ms", percentile(slow, 99))
+                    .addKeyValue("fastP50Ms", percentile(fast, 50))
+                    .addKeyValue("fastP99Ms", percentile(fast, 99))
+                    .addKeyValue("maxAwaitingPermit", maxAwaitingPermit)
+                    .addKeyValue("maxAwaitingConnection", maxAwaitingConnection)
+                    .log("Нагрузка на Tomcat");
+        }
+    }
+
+    // Запрос к базе: соединение занято DB_LATENCY_MS. Быстрый запрос: без базы
+    @RestController
+    public static class BenchController {
+
+        @Autowired
+        private DataSource dataSource;
+
+        @GetMapping("/bench/db")
+        public String database() throws Exception {
+            try (Connection connection = dataSource.getConnection();
+                 ResultSet resultSet = connection.createStatement().executeQuery("SELECT COUNT(*) FROM cars")) {
+                resultSet.next();
+                Thread.sleep(DB_LATENCY_MS);
+                return String.valueOf(resultSet.getLong(1));
+            }
+        }
+
+        @GetMapping("/bench/fast")
+        public String fast() {
+            return "ok";
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package org.example.carrental.load;
+
+import org.example.carrental.config.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// Статистика одного адреса: гистограмма задержек (LatencyHistogram) и счетчики ошибок по видам
+final class EndpointStats {
+
+    private final String endpoint;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final Map<String, LongAdder> errors = new ConcurrentSkipListMap<>();
+
+    EndpointStats(String endpoint) {
+        this.endpoint = endpoint;
+    }
+
+    // Запрос выполнен за micros; error - вид ошибки или null
+    void record(long micros, String error) {
+        latency.record(micros);
+        if (error != null) {
+            error(error);
+        }
+    }
+
+    // Ошибка, выяснившаяся после ответа (например, сообщение об ошибке на следующей странице)
+    void error(String error) {
+        errors.computeIfAbsent(error, key -> new LongAdder()).increment();
+    }
+
+    LoadHarness.EndpointReport report(double seconds) {
+        long count = latency.count();
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        errors.forEach((error, counter) -> histogram.put(error, counter.sum()));
+        return new LoadHarness.EndpointReport(endpoint, count, count / seconds,
+                millis(latency.percentileMicros(50)), millis(latency.percentileMicros(95)),
+                millis(latency.percentileMicros(99)), millis(latency.maxMicros()),
+                histogram.values().stream().mapToLong(Long::longValue).sum(), histogram);
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+}
@@ -0,0 +1,253 @@
+package org.example.carrental.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.apache.catalina.LifecycleException;
+import org.apache.catalina.startup.Tomcat;
+import org.example.Main;
+import org.example.carrental.config.DatabaseConfig;
+import org.example.carrental.config.WebConfig;
+import org.springframework.web.context.support.AnnotationConfigWebApplicationContext;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+// Нагрузочный прогон сценариев пользователей (UserJourneys) по HTTP.
+// Открытая модель: сценарии прибывают пуассоновским потоком с заданной частотой независимо от того,
+// успевает ли сервер, каждый - в своем виртуальном потоке. Медленный сервер копит очередь,
+// а не снижает нагрузку, как в закрытой модели с фиксированным числом клиентов.
+// Без url сервер поднимается в этом же процессе (Main.startServer) с профилем dataset.
+// Запуск: mvn -P load test-compile exec:exec -Dload.args="rate=50 duration=60" (см. pom.xml)
+public class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        Options options = Options.parse(args);
+        Report report = run(options);
+        report.print(System.out);
+        if (options.report() != null) {
+            report.write(options.report());
+            System.out.println("Отчет: " + options.report().toAbsolutePath());
+        }
+    }
+
+    public static Report run(Options options) throws Exception {
+        if (options.url() != null) {
+            return run(options, URI.create(options.url()), options.clients(), options.managers());
+        }
+        try (var context = new AnnotationConfigWebApplicationContext()) {
+            context.register(DatabaseConfig.class, WebConfig.class);
+            if (context.getEnvironment().getActiveProfiles().length == 0) {
+                context.getEnvironment().setActiveProfiles("dataset");
+            }
+            boolean virtualThreads = "virtual".equalsIgnoreCase(System.getProperty("server.threads", "platform"));
+            Tomcat tomcat = Main.startServer(context, 0, virtualThreads);
+            try {
+                URI base = URI.create("http://localhost:" + tomcat.getConnector().getLocalPort() + "/");
+                // Первый запрос поднимает контекст Spring и генерирует набор данных
+                awaitStartup(base);
+                int clients = options.clients() > 0 ? options.clients()
+                        : context.getEnvironment().getProperty("dataset.clients", Integer.class, 10000);
+                int managers = options.managers() > 0 ? options.managers()
+                        : context.getEnvironment().getProperty("dataset.managers", Integer.class, 20);
+                return run(options, base, clients, managers);
+            } finally {
+                stop(tomcat);
+            }
+        }
+    }
+
+    private static Report run(Options options, URI base, int clients, int managers) throws InterruptedException {
+        long warmup = TimeUnit.SECONDS.toNanos(options.warmupSeconds());
+        long duration = TimeUnit.SECONDS.toNanos(options.durationSeconds());
+        Map<UserJourneys.Journey, LongAdder> journeys = new EnumMap<>(UserJourneys.Journey.class);
+        for (UserJourneys.Journey journey : UserJourneys.Journey.values()) {
+            journeys.put(journey, new LongAdder());
+        }
+        LongAdder dropped = new LongAdder();
+        AtomicInteger inFlight = new AtomicInteger();
+        int maxInFlight = 0;
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+             HttpClient client = HttpClient.newBuilder()
+                     .version(HttpClient.Version.HTTP_1_1)
+                     .followRedirects(HttpClient.Redirect.NEVER)
+                     .connectTimeout(Duration.ofSeconds(options.timeoutSeconds()))
+                     .executor(executor)
+                     .build()) {
+            long start = System.nanoTime();
+            long recordFrom = start + warmup;
+            long end = recordFrom + duration;
+            UserJourneys users = new UserJourneys(client, base, Duration.ofSeconds(options.timeoutSeconds()),
+                    clients, managers, recordFrom);
+            SplittableRandom random = new SplittableRandom(options.seed());
+            double intervalNanos = TimeUnit.SECONDS.toNanos(1) / options.rate();
+            int totalWeight = options.browse() + options.book() + options.approve();
+
+            // Сценарии ждут своего завершения в journeysExecutor.close() - после конца расписания
+            try (ExecutorService journeysExecutor = Executors.newVirtualThreadPerTaskExecutor()) {
+                long arrival = start;
+                while (true) {
+                    // Экспоненциальные интервалы между прибытиями - пуассоновский поток
+                    arrival += (long) (-Math.log(1 - random.nextDouble()) * intervalNanos);
+                    if (arrival - end >= 0) {
+                        break;
+                    }
+                    long wait = arrival - System.nanoTime();
+                    if (wait > 0) {
+                        LockSupport.parkNanos(wait);
+                    }
+                    int pick = random.nextInt(totalWeight);
+                    UserJourneys.Journey journey = pick < options.browse() ? UserJourneys.Journey.BROWSE
+                            : pick < options.browse() + options.book() ? UserJourneys.Journey.BOOK
+                            : UserJourneys.Journey.APPROVE;
+                    // Ограничение на случай, если сервер перестал отвечать: сверх него сценарии не запускаются
+                    int running = inFlight.incrementAndGet();
+                    if (running > options.maxInFlight()) {
+                        inFlight.decrementAndGet();
+                        dropped.increment();
+                        continue;
+                    }
+                    maxInFlight = Math.max(maxInFlight, running);
+                    if (arrival - recordFrom >= 0) {
+                        journeys.get(journey).increment();
+                    }
+                    long scheduled = arrival;
+                    journeysExecutor.execute(() -> {
+                        try {
+                            users.run(journey, scheduled);
+                        } finally {
+                            inFlight.decrementAndGet();
+                        }
+                    });
+                }
+            }
+
+            double seconds = options.durationSeconds();
+            List<EndpointReport> endpoints = new ArrayList<>();
+            for (EndpointStats stats : users.stats().values()) {
+                endpoints.add(stats.report(seconds));
+            }
+            Map<String, Long> started = new LinkedHashMap<>();
+            journeys.forEach((journey, count) -> started.put(journey.name().toLowerCase(), count.sum()));
+            return new Report(base.toString(), options.rate(), options.durationSeconds(), started,
+                    dropped.sum(), maxInFlight, endpoints);
+        }
+    }
+
+    private static void awaitStartup(URI base) throws IOException, InterruptedException {
+        try (HttpClient client = HttpClient.newHttpClient()) {
+            HttpResponse<Void> response = client.send(HttpRequest.newBuilder(base)
+                    .timeout(Duration.ofMinutes(10)).build(), HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() != 200) {
+                throw new RuntimeException("Сервер не запустился: HTTP " + response.statusCode());
+            }
+        }
+    }
+
+    private static void stop(Tomcat tomcat) throws LifecycleException {
+        tomcat.stop();
+        tomcat.destroy();
+    }
+
+    // Параметры прогона (имя=значение): url (без него - сервер в этом процессе), rate - сценариев в секунду,
+    // duration и warmup в секундах, mix - веса browse/book/approve, clients и managers - число учетных
+    // записей набора, timeout запроса в секундах, max-in-flight, seed, report - файл отчета JSON
+    public record Options(String url, double rate, int durationSeconds, int warmupSeconds, int browse, int book,
+                          int approve, int clients, int managers, int timeoutSeconds, int maxInFlight, long seed,
+                          Path report) {
+
+        public static Options parse(String... args) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String arg : args) {
+                int separator = arg.indexOf('=');
+                if (separator <= 0) {
+                    throw new RuntimeException("Ожидается параметр=значение: " + arg);
+                }
+                values.put(arg.substring(0, separator), arg.substring(separator + 1));
+            }
+            String[] mix = values.getOrDefault("mix", "60/30/10").split("/");
+            if (mix.length != 3) {
+                throw new RuntimeException("mix: три веса browse/book/approve, например 60/30/10");
+            }
+            Options options = new Options(values.remove("url"),
+                    Double.parseDouble(values.getOrDefault("rate", "20")),
+                    Integer.parseInt(values.getOrDefault("duration", "60")),
+                    Integer.parseInt(values.getOrDefault("warmup", "10")),
+                    Integer.parseInt(mix[0]), Integer.parseInt(mix[1]), Integer.parseInt(mix[2]),
+                    Integer.parseInt(values.getOrDefault("clients", "0")),
+                    Integer.parseInt(values.getOrDefault("managers", "0")),
+                    Integer.parseInt(values.getOrDefault("timeout", "10")),
+                    Integer.parseInt(values.getOrDefault("max-in-flight", "10000")),
+                    Long.parseLong(values.getOrDefault("seed", "42")),
+                    values.containsKey("report") ? Path.of(values.get("report")) : null);
+            for (String key : List.of("rate", "duration", "warmup", "mix", "clients", "managers", "timeout",
+                    "max-in-flight", "seed", "report")) {
+                values.remove(key);
+            }
+            if (!values.isEmpty()) {
+                throw new RuntimeException("Неизвестные параметры: " + values.keySet());
+            }
+            if (options.url() != null && (options.clients() <= 0 || options.managers() <= 0)) {
+                throw new RuntimeException("С url нужны clients и managers: число учетных записей набора на сервере");
+            }
+            if (options.rate() <= 0 || options.durationSeconds() <= 0 || options.browse() + options.book()
+                    + options.approve() <= 0) {
+                throw new RuntimeException("rate, duration и сумма mix должны быть больше нуля");
+            }
+            return options;
+        }
+    }
+
+    public record EndpointReport(String endpoint, long requests, double throughput, double p50Ms, double p95Ms,
+                                 double p99Ms, double maxMs, long errors, Map<String, Long> errorHistogram) {
+    }
+
+    public record Report(String url, double rate, int durationSeconds, Map<String, Long> journeys,
+                         long droppedJourneys, int maxInFlight, List<EndpointReport> endpoints) {
+
+        public EndpointReport endpoint(String endpoint) {
+            return endpoints.stream().filter(report -> report.endpoint().equals(endpoint)).findFirst()
+                    .orElseThrow(() -> new RuntimeException("Нет адреса в отчете: " + endpoint));
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%s: %.1f сценариев/с, %d с, сценарии %s, отброшено %d, одновременно (макс) %d%n",
+                    url, rate, durationSeconds, journeys, droppedJourneys, maxInFlight);
+            out.printf("%-34s %8s %9s %9s %9s %9s %9s %7s%n",
+                    "адрес", "запросов", "запр/с", "p50 мс", "p95 мс", "p99 мс", "макс мс", "ошибок");
+            for (EndpointReport endpoint : endpoints) {
+                out.printf("%-34s %8d %9.1f %9.2f %9.2f %9.2f %9.2f %7d%n", endpoint.endpoint(),
+                        endpoint.requests(), endpoint.throughput(), endpoint.p50Ms(), endpoint.p95Ms(),
+                        endpoint.p99Ms(), endpoint.maxMs(), endpoint.errors());
+                endpoint.errorHistogram().forEach((error, count) ->
+                        out.printf("    %-30s %8d%n", error, count));
+            }
+        }
+
+        public void write(Path file) throws IOException {
+            if (file.getParent() != null) {
+                Files.createDirectories(file.getParent());
+            }
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(file.toFile(), this);
+        }
+    }
+}
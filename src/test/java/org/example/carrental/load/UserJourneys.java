@@ -0,0 +1,274 @@
+package org.example.carrental.load;
+
+import org.example.carrental.service.DatasetGenerator;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Сценарии пользователей поверх HttpClient - те же запросы, что отправляет браузер.
+// У каждого сценария своя сессия (cookie JSESSIONID); редиректы не выполняются автоматически:
+// ответ каждого запроса проверяется и учитывается в статистике своего адреса.
+// Учетные записи - из синтетического набора (профиль dataset): clientN/managerN@dataset.carrental.ru
+final class UserJourneys {
+
+    enum Journey { BROWSE, BOOK, APPROVE }
+
+    static final String CATALOG = "GET /cars";
+    static final String CAR = "GET /cars/{id}";
+    static final String LOGIN = "POST /login";
+    static final String BOOKING_PAGE = "GET /rentals/book/{id}";
+    static final String BOOK = "POST /rentals/book";
+    static final String DASHBOARD = "GET /manager/dashboard";
+    static final String RENTAL = "GET /manager/rentals/{id}";
+    static final String APPROVE = "POST /manager/rentals/{id}/approve";
+    static final String RENTALS = "GET /manager/rentals";
+    static final List<String> ENDPOINTS = List.of(CATALOG, CAR, LOGIN, BOOKING_PAGE, BOOK,
+            DASHBOARD, RENTAL, APPROVE, RENTALS);
+
+    private static final Pattern CAR_LINK = Pattern.compile("href=\"/cars/(\\d+)\"");
+    private static final Pattern PENDING_LINK = Pattern.compile(
+            "href=\"/manager/rentals/(\\d+)\"[^>]*>Обработать");
+    // Бронирования - после периода аренд набора (он заканчивается через 90 дней), чтобы реже попадать на занятые даты
+    private static final int BOOKING_FROM_DAYS = 100;
+    private static final int BOOKING_WINDOW_DAYS = 365;
+
+    private final HttpClient client;
+    private final URI base;
+    private final Duration timeout;
+    private final int clients;
+    private final int managers;
+    private final long recordFrom;
+    private final Map<String, EndpointStats> stats = new LinkedHashMap<>();
+
+    // recordFrom (System.nanoTime) - конец разогрева: более ранние запросы в статистику не попадают
+    UserJourneys(HttpClient client, URI base, Duration timeout, int clients, int managers, long recordFrom) {
+        this.client = client;
+        this.base = base;
+        this.timeout = timeout;
+        this.clients = clients;
+        this.managers = managers;
+        this.recordFrom = recordFrom;
+        for (String endpoint : ENDPOINTS) {
+            stats.put(endpoint, new EndpointStats(endpoint));
+        }
+    }
+
+    Map<String, EndpointStats> stats() {
+        return stats;
+    }
+
+    // arrival - момент прибытия по расписанию: задержка первого запроса считается от него,
+    // поэтому отставание генератора нагрузки не прячет очередь на сервере
+    void run(Journey journey, long arrival) {
+        Session session = new Session(arrival);
+        switch (journey) {
+            case BROWSE -> browse(session);
+            case BOOK -> book(session);
+            case APPROVE -> approve(session);
+        }
+    }
+
+    // Каталог с фильтрами и карточка одного из найденных автомобилей
+    private void browse(Session session) {
+        Long carId = findCar(session, randomFilters());
+        if (carId != null) {
+            step(session, CAR, get("/cars/" + carId), UserJourneys::ok);
+        }
+    }
+
+    // Вход клиента, выбор свободного автомобиля, страница бронирования и заявка на случайные даты
+    private void book(Session session) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (!login(session, "client" + random.nextInt(clients))) {
+            return;
+        }
+        Long carId = findCar(session, "available=true&" + randomFilters());
+        if (carId == null
+                || step(session, CAR, get("/cars/" + carId), UserJourneys::ok) == null
+                || step(session, BOOKING_PAGE, get("/rentals/book/" + carId), UserJourneys::ok) == null) {
+            return;
+        }
+        LocalDateTime start = LocalDate.now()
+                .plusDays(BOOKING_FROM_DAYS + random.nextInt(BOOKING_WINDOW_DAYS)).atTime(10, 0);
+        LocalDateTime end = start.plusDays(1 + random.nextInt(5));
+        step(session, BOOK, post("/rentals/book", "carId=" + carId + "&startDate=" + start + "&endDate=" + end),
+                response -> {
+                    String path = redirectPath(response);
+                    if (path.startsWith("/rentals/confirmation/")) {
+                        return null;
+                    }
+                    return path.startsWith("/login") ? "session_lost"
+                            : response.statusCode() == 302 ? "booking_error" : "HTTP " + response.statusCode();
+                });
+    }
+
+    // Вход менеджера, одна из заявок на панели, ее карточка, одобрение и список аренд с результатом
+    private void approve(Session session) {
+        if (!login(session, "manager" + ThreadLocalRandom.current().nextInt(managers))) {
+            return;
+        }
+        HttpResponse<String> dashboard = step(session, DASHBOARD, get("/manager/dashboard"), UserJourneys::ok);
+        if (dashboard == null) {
+            return;
+        }
+        List<Long> pending = ids(PENDING_LINK, dashboard.body());
+        if (pending.isEmpty()) {
+            return;
+        }
+        Long rentalId = pending.get(ThreadLocalRandom.current().nextInt(pending.size()));
+        if (step(session, RENTAL, get("/manager/rentals/" + rentalId), UserJourneys::ok) == null
+                || step(session, APPROVE, post("/manager/rentals/" + rentalId + "/approve", ""),
+                        response -> redirect(response, "/manager/rentals")) == null) {
+            return;
+        }
+        // Результат одобрения - сообщение на странице, куда ведет редирект
+        HttpResponse<String> rentals = step(session, RENTALS, get("/manager/rentals"), UserJourneys::ok);
+        if (rentals != null && rentals.body().contains("alert-danger")) {
+            stats.get(APPROVE).error("approve_error");
+        }
+    }
+
+    private boolean login(Session session, String account) {
+        String form = "email=" + URLEncoder.encode(account + DatasetGenerator.EMAIL_DOMAIN, StandardCharsets.UTF_8)
+                + "&password=" + URLEncoder.encode(DatasetGenerator.PASSWORD, StandardCharsets.UTF_8);
+        return step(session, LOGIN, post("/login", form), response ->
+                response.statusCode() == 200 ? "login_failed" : redirect(response, "/")) != null;
+    }
+
+    private Long findCar(Session session, String query) {
+        HttpResponse<String> catalog = step(session, CATALOG, get("/cars?" + query), UserJourneys::ok);
+        if (catalog == null) {
+            return null;
+        }
+        List<Long> cars = ids(CAR_LINK, catalog.body());
+        return cars.isEmpty() ? null : cars.get(ThreadLocalRandom.current().nextInt(cars.size()));
+    }
+
+    // Сочетания фильтров каталога: марка, тип кузова, цена, год
+    private static String randomFilters() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<String> brands = DatasetGenerator.brands();
+        List<String> bodyTypes = DatasetGenerator.bodyTypes();
+        List<String> filters = new ArrayList<>();
+        if (random.nextInt(2) == 0) {
+            filters.add("brand=" + encode(brands.get(random.nextInt(brands.size()))));
+        }
+        if (random.nextInt(3) == 0) {
+            filters.add("bodyType=" + encode(bodyTypes.get(random.nextInt(bodyTypes.size()))));
+        }
+        if (random.nextInt(3) == 0) {
+            int minPrice = 300 + 100 * random.nextInt(5);
+            filters.add("minPrice=" + minPrice + "&maxPrice=" + (minPrice + 300));
+        }
+        if (random.nextInt(4) == 0) {
+            filters.add("minYear=" + (2015 + random.nextInt(8)));
+        }
+        return String.join("&", filters);
+    }
+
+    // Выполнить запрос и учесть его: check возвращает вид ошибки или null. При ошибке - null
+    private HttpResponse<String> step(Session session, String endpoint, HttpRequest.Builder request,
+                                      Function<HttpResponse<String>, String> check) {
+        if (session.cookie != null) {
+            request.header("Cookie", session.cookie);
+        }
+        long start = session.arrival != 0 ? session.arrival : System.nanoTime();
+        session.arrival = 0;
+        HttpResponse<String> response = null;
+        String error;
+        try {
+            response = client.send(request.timeout(timeout).build(), HttpResponse.BodyHandlers.ofString());
+            error = response.statusCode() >= 400 ? "HTTP " + response.statusCode() : check.apply(response);
+            for (String cookie : response.headers().allValues("Set-Cookie")) {
+                if (cookie.startsWith("JSESSIONID=")) {
+                    int end = cookie.indexOf(';');
+                    session.cookie = end < 0 ? cookie : cookie.substring(0, end);
+                }
+            }
+        } catch (HttpTimeoutException e) {
+            error = "timeout";
+        } catch (IOException e) {
+            error = e.getClass().getSimpleName();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "interrupted";
+        }
+        if (start - recordFrom >= 0) {
+            stats.get(endpoint).record((System.nanoTime() - start) / 1000, error);
+        }
+        return error == null ? response : null;
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(base.resolve(path)).GET();
+    }
+
+    private HttpRequest.Builder post(String path, String form) {
+        return HttpRequest.newBuilder(base.resolve(path))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(HttpRequest.BodyPublishers.ofString(form));
+    }
+
+    private static String ok(HttpResponse<String> response) {
+        if (response.statusCode() == 200) {
+            return null;
+        }
+        return redirectPath(response).startsWith("/login") ? "session_lost" : "HTTP " + response.statusCode();
+    }
+
+    private static String redirect(HttpResponse<String> response, String path) {
+        if (response.statusCode() == 302 && redirectPath(response).equals(path)) {
+            return null;
+        }
+        return redirectPath(response).startsWith("/login") ? "session_lost" : "HTTP " + response.statusCode();
+    }
+
+    // Путь из Location без ;jsessionid=... (Tomcat дописывает его, пока сессия не подтверждена cookie)
+    private static String redirectPath(HttpResponse<String> response) {
+        return response.headers().firstValue("Location")
+                .map(location -> URI.create(location).getPath())
+                .map(path -> path.split(";", 2)[0])
+                .orElse("");
+    }
+
+    private static List<Long> ids(Pattern link, String html) {
+        Set<Long> ids = new LinkedHashSet<>();
+        Matcher matcher = link.matcher(html);
+        while (matcher.find()) {
+            ids.add(Long.valueOf(matcher.group(1)));
+        }
+        return new ArrayList<>(ids);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static final class Session {
+        private long arrival;
+        private String cookie;
+
+        private Session(long arrival) {
+            this.arrival = arrival;
+        }
+    }
+}